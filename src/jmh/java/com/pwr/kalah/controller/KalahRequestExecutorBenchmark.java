@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.service.KalahCluster;
+import com.pwr.kalah.service.KalahEventLog;
+import com.pwr.kalah.service.KalahGameEvents;
+import com.pwr.kalah.service.KalahGameIdAllocator;
+import com.pwr.kalah.service.KalahGameService;
+import com.pwr.kalah.service.KalahGameServiceImpl;
+import com.pwr.kalah.service.KalahGameStore;
+import com.pwr.kalah.service.KalahMetrics;
+import com.pwr.kalah.service.KalahSnapshotter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the move requests of slow clients on the Tomcat default pool of 200 platform threads
+ * and on virtual threads (Java 21). Every request holds its thread for the client delay, then makes a move
+ * in one of a few games, so the requests also contend for the game locks.
+ * <p>
+ * The memory of the threads is compared with the GC profiler and the thread stacks, e.g.
+ * {@code -Djmh.args="KalahRequestExecutorBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahRequestExecutorBenchmark {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games";
+    private static final int REQUESTS = 10_000;
+    private static final int GAMES = 64;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1"})
+    public int clientDelayMillis;
+
+    private ExecutorService executor;
+    private KalahGameStore store;
+    private KalahGameService gameService;
+    private final long[] gameIds = new long[GAMES];
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(threads)
+                ? KalahVirtualThreadConfiguration.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        store = new KalahGameStore(100_000, Duration.ofMinutes(30), Duration.ofMinutes(30), Duration.ofMinutes(1));
+        gameService = new KalahGameServiceImpl(store, new KalahComputerPlayer(64, Duration.ofMillis(100), 1024, 1, null),
+                new KalahEventLog("", DataSize.ofMegabytes(64), true, Duration.ofMinutes(1), store),
+                new KalahSnapshotter("", Duration.ofMinutes(5)), new KalahGameEvents(),
+                new KalahMetrics(new SimpleMeterRegistry(), store),
+                new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+                new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64), KalahBoardType.ARRAY, 1024, 0);
+        for (int i = 0; i < GAMES; i++) {
+            gameIds[i] = gameService.createGame(REQUEST_URI).getGameId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void moveRequests() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(clientDelayMillis);
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    gameService.makeMove(gameIds[random.nextInt(GAMES)], 1 + random.nextInt(14));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahParallelSearch} benchmarks: searched nodes per second of a fixed time search of the initial position,
+ * reported as the secondary result "nodes"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahParallelSearchBenchmark {
+
+    private static final long MOVE_TIME_MILLIS = 200;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private KalahPosition position;
+    private KalahTranspositionTable table;
+    private ExecutorService executor;
+    private KalahParallelSearch search;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SearchCounters {
+        public long nodes;
+    }
+
+    @Setup
+    public void setUp() {
+        position = KalahPosition.initial();
+        table = new KalahTranspositionTable(1 << 20);
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1) : null;
+        search = new KalahParallelSearch(threads, 64, table, null, executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public KalahSearchResult search(SearchCounters counters) {
+        table.clear();
+        KalahSearchResult result = search.search(position, MOVE_TIME_MILLIS);
+        counters.nodes += result.getNodes();
+        return result;
+    }
+}
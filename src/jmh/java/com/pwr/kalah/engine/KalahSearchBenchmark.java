@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahAlphaBetaSearch} benchmarks: a fixed depth search of the initial position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahSearchBenchmark {
+
+    private static final long NO_TIME_LIMIT = 60_000;
+
+    @Param({"12"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean transpositionTable;
+
+    private KalahPosition position;
+    private KalahTranspositionTable table;
+
+    @Setup
+    public void setUp() {
+        position = KalahPosition.initial();
+        table = transpositionTable ? new KalahTranspositionTable(1 << 16) : null;
+    }
+
+    /**
+     * Every search starts with an empty table, a clear table costs much less than a search
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    @Benchmark
+    public KalahSearchResult search() {
+        return new KalahAlphaBetaSearch(depth, table).search(position, NO_TIME_LIMIT);
+    }
+}
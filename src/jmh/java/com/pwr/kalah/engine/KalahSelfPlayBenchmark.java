@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahSelfPlay} benchmarks: random games played per second, reported as the secondary result "games"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahSelfPlayBenchmark {
+
+    private static final long GAMES = 100_000;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"random", "greedy"})
+    public String policy;
+
+    private long seed;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class GameCounters {
+        public long games;
+    }
+
+    @Benchmark
+    public KalahSelfPlayStats play(GameCounters counters) {
+        KalahSelfPlay.Policy selfPlayPolicy = KalahSelfPlay.policy(policy);
+        KalahSelfPlayStats stats = KalahSelfPlay.play(GAMES, KalahGeometry.STANDARD, selfPlayPolicy, selfPlayPolicy,
+                threads, seed++);
+        counters.games += stats.getGames();
+        return stats;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahBoard} move engine benchmarks, run for every {@link KalahBoardType}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahBoardBenchmark {
+
+    private static final int RECORDED_GAMES = 1_024;
+
+    @Param({"MAP", "ARRAY"})
+    public KalahBoardType boardType;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // Recorded random legal games, each game is a sequence of pits ended by 0
+    private int[] recordedMoves;
+    private int recordedMove;
+
+    private KalahBoard board;
+    private KalahBoard playoutBoard;
+    private KalahBoard middleGameBoard;
+
+    @Setup
+    public void setUp() {
+        recordedMoves = recordGames(RECORDED_GAMES);
+        board = newBoard();
+        playoutBoard = newBoard();
+        middleGameBoard = newBoard();
+        for (int i = 0; i < 10; i++) {
+            middleGameBoard.makeNextMove(randomLegalPit(middleGameBoard));
+        }
+    }
+
+    /**
+     * A single move of one of the recorded random legal games
+     */
+    @Benchmark
+    public MoveResult makeNextMove() {
+        int pit = recordedMoves[recordedMove++];
+        if (pit == 0) {
+            // the game is over, replay the next one
+            board.initGameField();
+            if (recordedMove == recordedMoves.length) {
+                recordedMove = 0;
+            }
+            pit = recordedMoves[recordedMove++];
+        }
+        return board.makeNextMove(pit);
+    }
+
+    /**
+     * A complete game with random legal moves
+     */
+    @Benchmark
+    public void randomPlayout(Blackhole blackhole) {
+        playoutBoard.initGameField();
+        MoveResult result;
+        do {
+            result = playoutBoard.makeNextMove(randomLegalPit(playoutBoard));
+        } while (result != MoveResult.GAME_OVER);
+        blackhole.consume(playoutBoard.getPitStones(KalahGeometry.STANDARD.getPits()));
+    }
+
+    /**
+     * The board snapshot taken for every move response
+     */
+    @Benchmark
+    public KalahBoardSnapshot getStatus() {
+        return middleGameBoard.getStatus();
+    }
+
+    private KalahBoard newBoard() {
+        KalahBoard newBoard = boardType.createBoard();
+        newBoard.initGameField();
+        return newBoard;
+    }
+
+    private int[] recordGames(int games) {
+        int[] moves = new int[games * 64];
+        int count = 0;
+        KalahBoard recordingBoard = KalahBoardType.ARRAY.createBoard();
+        for (int game = 0; game < games; game++) {
+            recordingBoard.initGameField();
+            MoveResult result;
+            do {
+                int pit = randomLegalPit(recordingBoard);
+                result = recordingBoard.makeNextMove(pit);
+                if (count + 1 >= moves.length) {
+                    moves = Arrays.copyOf(moves, moves.length * 2);
+                }
+                moves[count++] = pit;
+            } while (result != MoveResult.GAME_OVER);
+            moves[count++] = 0;
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    private int randomLegalPit(KalahBoard gameBoard) {
+        KalahGeometry geometry = gameBoard.getGeometry();
+        int firstPit = geometry.getFirstPit(gameBoard.getCurrentPlayer());
+        int pit;
+        do {
+            pit = firstPit + random.nextInt(geometry.getPitsPerPlayer());
+        } while (gameBoard.getPitStones(pit) == 0);
+        return pit;
+    }
+}
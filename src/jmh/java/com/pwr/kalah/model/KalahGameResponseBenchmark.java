@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.pwr.kalah.view.KalahView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahGameResponse} JSON serialization benchmarks, configured the same way as the web service
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KalahGameResponseBenchmark {
+
+    private KalahGame game;
+    private ObjectWriter newGameWriter;
+    private ObjectWriter gameMoveWriter;
+
+    @Setup
+    public void setUp() {
+        game = new KalahGame(1234L);
+        game.makeNextMove(3);
+        ObjectMapper objectMapper = JsonMapper.builder().enable(JsonWriteFeature.WRITE_NUMBERS_AS_STRINGS).build();
+        newGameWriter = objectMapper.writerWithView(KalahView.NewGame.class);
+        gameMoveWriter = objectMapper.writerWithView(KalahView.GameMove.class);
+    }
+
+    /**
+     * Response of POST /games
+     */
+    @Benchmark
+    public byte[] newGameResponse() throws Exception {
+        return newGameWriter.writeValueAsBytes(game.getResponse());
+    }
+
+    /**
+     * Response of PUT /games/{gameId}/pits/{pitId}, including the board snapshot
+     */
+    @Benchmark
+    public byte[] gameMoveResponse() throws Exception {
+        return gameMoveWriter.writeValueAsBytes(game.getResponse(MoveResult.OK));
+    }
+}
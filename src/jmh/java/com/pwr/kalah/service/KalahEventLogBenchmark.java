@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link KalahEventLog} latency of a durable move event, sampled to see the p99 the log adds to a move request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class KalahEventLogBenchmark {
+
+    @Param({"true", "false"})
+    public boolean fsync;
+
+    private final AtomicLong gameIds = new AtomicLong();
+    private Path directory;
+    private KalahEventLog eventLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("kalah-log");
+        KalahGameStore store = new KalahGameStore(1_000, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(1));
+        eventLog = new KalahEventLog(directory.toString(), DataSize.ofMegabytes(64), fsync, Duration.ofMinutes(1), store);
+        eventLog.recover(new KalahEventLog.Listener() {
+            @Override
+            public void onCreate(long gameId, String gameUri, KalahGeometry geometry) {
+            }
+
+            @Override
+            public void onMove(long gameId, int sequence, int pit) {
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        eventLog.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void appendMove() {
+        eventLog.awaitDurable(eventLog.appendMove(gameIds.incrementAndGet(), 1, 1));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Game id allocation by 32 threads: the {@link KalahGameIdAllocator} block leases against the single
+ * {@link AtomicLong} counter the game service used before. The threads only contend when they run on
+ * separate cores, so the difference is measured on a machine with at least as many cores as threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class KalahGameIdBenchmark {
+
+    @Param({"SEQUENCE", "SNOWFLAKE"})
+    public KalahGameIdAllocator.Mode mode;
+
+    @Param({"64"})
+    public int blockSize;
+
+    private final AtomicLong counter = new AtomicLong(1);
+    private KalahGameIdAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        allocator = new KalahGameIdAllocator(mode, blockSize);
+    }
+
+    /**
+     * All the threads increment one counter, every allocation writes the shared cache line
+     */
+    @Benchmark
+    public long atomicCounter() {
+        return counter.getAndIncrement();
+    }
+
+    /**
+     * The threads take the numbers of their leased blocks, one in a block size allocations leases a new block
+     */
+    @Benchmark
+    public long leasedBlocks() {
+        return allocator.next();
+    }
+}
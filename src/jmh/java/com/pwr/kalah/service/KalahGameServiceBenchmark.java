@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KalahGameServiceImpl} benchmarks with all the benchmark threads sharing one service.
+ * <p>
+ * The service and its store are created for every iteration, with a maximum size no iteration reaches, so the game
+ * creation is measured without the eviction of the games created by the earlier iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class KalahGameServiceBenchmark {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games";
+
+    @Param({"MAP", "ARRAY"})
+    public KalahBoardType boardType;
+
+    private KalahGameStore store;
+    private KalahGameService gameService;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        store = new KalahGameStore(Integer.MAX_VALUE, Duration.ofMinutes(30), Duration.ofMinutes(1),
+                Duration.ofSeconds(10));
+        gameService = new KalahGameServiceImpl(store, new KalahComputerPlayer(64, Duration.ofMillis(100), 1024, 1, null),
+                new KalahEventLog("", DataSize.ofMegabytes(64), true, Duration.ofMinutes(1), store),
+                new KalahSnapshotter("", Duration.ofMinutes(5)), new KalahGameEvents(),
+                new KalahMetrics(new SimpleMeterRegistry(), store),
+                new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+                new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64), boardType, 1024, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        store.stopEviction();
+    }
+
+    /**
+     * Concurrent game creation, all threads share the game id counter and the store
+     */
+    @Benchmark
+    public KalahGame createGame() {
+        return gameService.createGame(REQUEST_URI);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link KalahSnapshotter} benchmarks of writing and loading a snapshot of the given number of games
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class KalahSnapshotBenchmark {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games/";
+
+    @Param({"1000000"})
+    public int games;
+
+    private final Lock lock = new ReentrantLock();
+    private final List<KalahGame> snapshotGames = new ArrayList<>();
+    private Path directory;
+    private KalahSnapshotter snapshotter;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("kalah-snapshot");
+        snapshotter = new KalahSnapshotter(directory.toString(), Duration.ofMinutes(5));
+        for (long gameId = 1; gameId <= games; gameId++) {
+            KalahGame game = new KalahGame(gameId, REQUEST_URI + gameId);
+            game.makeNextMove(1 + (int) (gameId % 6));
+            snapshotGames.add(game);
+        }
+        snapshotter.write(snapshotGames, gameId -> lock, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long write() {
+        return snapshotter.write(snapshotGames, gameId -> lock, 1);
+    }
+
+    @Benchmark
+    public long load() {
+        List<KalahGame> loaded = new ArrayList<>(games);
+        return snapshotter.load(KalahBoardType.ARRAY, loaded::add);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.pwr.kalah.service.KalahCluster;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Endpoints the {@link KalahCluster} nodes call on each other: the heartbeat ping and the games moved to their
+ * new owner. Served only when the cluster is enabled, on the servlet stack.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("!'${kalah.cluster.nodes:}'.trim().isEmpty()")
+public class KalahClusterController {
+
+    private final KalahCluster cluster;
+
+    public KalahClusterController(KalahCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @GetMapping(path = KalahCluster.PING_PATH)
+    public ResponseEntity<Void> ping() {
+        // a leaving node is dropped from the rings of the other nodes while it hands off its games
+        return ResponseEntity.status(cluster.isLeaving() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK).build();
+    }
+
+    @PostMapping(path = KalahCluster.GAMES_PATH, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> receiveGames(@RequestBody byte[] games) {
+        cluster.receiveGames(ByteBuffer.wrap(games));
+        return ResponseEntity.ok().build();
+    }
+}
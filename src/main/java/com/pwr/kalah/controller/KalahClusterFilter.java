@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.pwr.kalah.model.KalahBatchMoveResponse;
+import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.service.KalahCluster;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards the requests of the games owned by other {@link KalahCluster} nodes to their owners, on the servlet
+ * stack.
+ * <p>
+ * The requests of one game are sent to its owner as they are and the owner's response is copied back. A batch
+ * of moves in many games is split by the owners, the parts are made on their nodes and the responses are merged
+ * in the order of the request; the games of a part which failed get an error response each, as the other parts
+ * are applied already. A watcher of a game is redirected to the owner's WebSocket. A forwarded request
+ * is always served locally.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("!'${kalah.cluster.nodes:}'.trim().isEmpty()")
+public class KalahClusterFilter extends OncePerRequestFilter {
+
+    private static final String GAMES_PREFIX = "/games/";
+    private static final String BATCH_PATH = "/games/moves";
+    private static final TypeReference<LinkedHashMap<Long, int[]>> BATCHES_TYPE =
+            new TypeReference<LinkedHashMap<Long, int[]>>() {
+            };
+
+    private final KalahCluster cluster;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchMoves;
+
+    public KalahClusterFilter(KalahCluster cluster, ObjectMapper objectMapper,
+                              @Value("${kalah.batch.max-moves:10000}") int maxBatchMoves) {
+        this.cluster = cluster;
+        this.objectMapper = objectMapper;
+        this.maxBatchMoves = maxBatchMoves;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(GAMES_PREFIX) || request.getHeader(KalahCluster.FORWARDED_HEADER) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (path.equals(BATCH_PATH) && "PUT".equals(request.getMethod())) {
+            makeBatchMoves(request, response, chain);
+            return;
+        }
+        long gameId = parseGameId(path);
+        if (gameId < 0 || cluster.isLocal(gameId)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int owner = cluster.getOwner(gameId);
+        if ("GET".equals(request.getMethod())) {
+            response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+            response.setHeader(HttpHeaders.LOCATION,
+                    cluster.getNodeUri(owner).resolve(pathAndQuery(request)).toString());
+            return;
+        }
+        try {
+            HttpResponse<byte[]> ownerResponse = cluster.forward(owner, request.getMethod(), pathAndQuery(request),
+                    request.getContentType(), request.getInputStream().readAllBytes());
+            copy(ownerResponse, response);
+        } catch (IOException e) {
+            nodeUnavailable(response);
+        }
+    }
+
+    /**
+     * Split a batch of moves in many games by the owners of the games, the batches of this node are made
+     * by the controller
+     */
+    private void makeBatchMoves(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        Map<Long, int[]> moves;
+        try {
+            moves = objectMapper.readValue(body, BATCHES_TYPE);
+        } catch (IOException e) {
+            moves = null;
+        }
+        // the controller rejects an invalid request as a whole
+        if (moves == null || KalahGameController.validateBatches(moves.values(), maxBatchMoves) != null) {
+            chain.doFilter(new BodyRequest(request, body), response);
+            return;
+        }
+
+        // the owners are kept, so the responses are merged as they were split even if the ring changes meanwhile
+        int[] owners = new int[moves.size()];
+        Map<Integer, Map<Long, int[]>> nodeMoves = new LinkedHashMap<>();
+        int index = 0;
+        for (Map.Entry<Long, int[]> entry : moves.entrySet()) {
+            owners[index] = cluster.getOwner(entry.getKey());
+            nodeMoves.computeIfAbsent(owners[index++], node -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        if (nodeMoves.size() == 1 && nodeMoves.containsKey(cluster.getNodeId())) {
+            chain.doFilter(new BodyRequest(request, body), response);
+            return;
+        }
+
+        // the parts are applied independently, a part which fails gets an error response for each of its games
+        Map<Integer, Iterator<JsonNode>> nodeResponses = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Map<Long, int[]>> entry : nodeMoves.entrySet()) {
+            byte[] nodeBody = objectMapper.writeValueAsBytes(entry.getValue());
+            int status;
+            byte[] responseBody;
+            if (entry.getKey() == cluster.getNodeId()) {
+                ContentCachingResponseWrapper localResponse = new ContentCachingResponseWrapper(response);
+                chain.doFilter(new BodyRequest(request, nodeBody), localResponse);
+                status = localResponse.getStatus();
+                responseBody = localResponse.getContentAsByteArray();
+            } else {
+                try {
+                    HttpResponse<byte[]> ownerResponse = cluster.forward(entry.getKey(), request.getMethod(),
+                            BATCH_PATH, MediaType.APPLICATION_JSON_VALUE, nodeBody);
+                    status = ownerResponse.statusCode();
+                    responseBody = ownerResponse.body();
+                } catch (IOException e) {
+                    status = HttpStatus.SERVICE_UNAVAILABLE.value();
+                    responseBody = null;
+                }
+            }
+            nodeResponses.put(entry.getKey(), status == HttpStatus.OK.value()
+                    ? objectMapper.readTree(responseBody).elements()
+                    : errorResponses(entry.getValue().keySet(), responseBody));
+        }
+
+        ArrayNode merged = objectMapper.createArrayNode();
+        for (int owner : owners) {
+            merged.add(nodeResponses.get(owner).next());
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), merged);
+    }
+
+    /**
+     * Build the batch responses of the games of a part which was not applied
+     *
+     * @param gameIds      games of the part
+     * @param responseBody error response of the node, null if the node is unavailable
+     * @return error responses in the order of the games
+     */
+    private Iterator<JsonNode> errorResponses(Collection<Long> gameIds, byte[] responseBody) {
+        String message = KalahErrorMessages.NODE_UNAVAILABLE;
+        try {
+            JsonNode error = responseBody == null ? null : objectMapper.readTree(responseBody).get("message");
+            if (error != null && error.isTextual()) {
+                message = error.textValue();
+            }
+        } catch (IOException e) {
+            // not a JSON error response
+        }
+        List<JsonNode> responses = new ArrayList<>(gameIds.size());
+        for (Long gameId : gameIds) {
+            responses.add(objectMapper.valueToTree(KalahBatchMoveResponse.error(gameId, message)));
+        }
+        return responses.iterator();
+    }
+
+    /**
+     * Parse the game id of a path under {@code /games/}
+     *
+     * @return game ID, or -1 if the path does not start with a game id
+     */
+    private static long parseGameId(String path) {
+        int end = path.indexOf('/', GAMES_PREFIX.length());
+        String gameId = path.substring(GAMES_PREFIX.length(), end < 0 ? path.length() : end);
+        if (gameId.isEmpty() || gameId.length() > 19) {
+            return -1;
+        }
+        for (int i = 0; i < gameId.length(); i++) {
+            if (!Character.isDigit(gameId.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(gameId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String pathAndQuery(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+    }
+
+    private static void copy(HttpResponse<byte[]> ownerResponse, HttpServletResponse response) throws IOException {
+        response.setStatus(ownerResponse.statusCode());
+        ownerResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(response::setContentType);
+        response.getOutputStream().write(ownerResponse.body());
+    }
+
+    private void nodeUnavailable(HttpServletResponse response) throws IOException {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("message", KalahErrorMessages.NODE_UNAVAILABLE);
+        body.put("error", HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    /**
+     * Request with a body which has been read already
+     */
+    private static final class BodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("The body has been read already");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+    }
+}
@@ -17,50 +17,269 @@
 package com.pwr.kalah.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.KalahErrorMessages;
 import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGameHistory;
 import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.Player;
 import com.pwr.kalah.service.KalahGameService;
+import com.pwr.kalah.service.KalahMetrics;
 import com.pwr.kalah.view.KalahView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
-import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * {@link KalahGame} RESTful Web Service controller
+ * {@link KalahGame} RESTful Web Service controller of the servlet stack, {@link KalahGameHandler} serves the same
+ * endpoints on the reactive stack
  */
 @RestController
 @Validated
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class KalahGameController {
 
     private final KalahGameService gameService;
+    private final KalahMetrics metrics;
+    private final int maxBatchMoves;
 
-    public KalahGameController(KalahGameService gameService) {
+    public KalahGameController(KalahGameService gameService, KalahMetrics metrics,
+                               @Value("${kalah.batch.max-moves:10000}") int maxBatchMoves) {
         this.gameService = gameService;
+        this.metrics = metrics;
+        this.maxBatchMoves = maxBatchMoves;
     }
 
     @PostMapping(path = "/games")
     @JsonView(KalahView.NewGame.class)
-    public ResponseEntity<KalahGameResponse> createGame(HttpServletRequest request) {
-        KalahGame newGame = gameService.createGame(request.getRequestURL().toString());
-        return ResponseEntity.created(URI.create(newGame.getGameUri())).body(newGame.getResponse());
+    public ResponseEntity<?> createGame(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "6") int pits,
+            @RequestParam(defaultValue = "6") int stones) {
+        long start = System.nanoTime();
+        try {
+            KalahGeometry geometry = geometryOf(pits, stones);
+            if (geometry == null) {
+                metrics.countError(KalahMetrics.ErrorType.INVALID_GEOMETRY);
+                return ResponseEntity.badRequest()
+                        .body(errorResponse(KalahErrorMessages.INVALID_GEOMETRY, request.getRequestURI()));
+            }
+            KalahGame newGame = gameService.createGame(request.getRequestURL().toString(), geometry);
+            // the game URI is already an absolute URI, it is not parsed again for the header
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.LOCATION, newGame.getGameUri())
+                    .body(newGame.getResponse());
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.CREATE_GAME, start);
+        }
     }
 
     @PutMapping(path = "/games/{gameId}/pits/{pitId}")
     @JsonView(KalahView.GameMove.class)
-    public ResponseEntity<KalahGameResponse> makeMove(
+    public ResponseEntity<?> makeMove(
+            HttpServletRequest request,
             @PathVariable @Digits(integer=19, fraction=0) @Min(1) @Max(Long.MAX_VALUE) Long gameId,
-            @PathVariable @Digits(integer=2, fraction=0) @Min(1) @Max(14) int pitId) {
-        KalahGame existingGame = gameService.makeMove(gameId, pitId);
-        return ResponseEntity.ok(existingGame.getResponse());
+            @PathVariable @Digits(integer=2, fraction=0) @Min(1) @Max(KalahGeometry.MAX_PITS) int pitId) {
+        long start = System.nanoTime();
+        try {
+            return toMoveResponse(gameService.makeMove(gameId, pitId), request.getRequestURI());
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.MOVE, start);
+        }
+    }
+
+    @PutMapping(path = "/games/{gameId}/ai-move")
+    @JsonView(KalahView.GameMove.class)
+    public ResponseEntity<?> makeComputerMove(
+            HttpServletRequest request,
+            @PathVariable @Digits(integer=19, fraction=0) @Min(1) @Max(Long.MAX_VALUE) Long gameId) {
+        long start = System.nanoTime();
+        try {
+            return toMoveResponse(gameService.makeComputerMove(gameId), request.getRequestURI());
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.COMPUTER_MOVE, start);
+        }
+    }
+
+    @PutMapping(path = "/games/{gameId}/moves")
+    public ResponseEntity<?> makeMoves(
+            HttpServletRequest request,
+            @PathVariable @Digits(integer=19, fraction=0) @Min(1) @Max(Long.MAX_VALUE) Long gameId,
+            @RequestBody int[] pits) {
+        long start = System.nanoTime();
+        try {
+            KalahMetrics.ErrorType error = validateBatches(Collections.singletonList(pits), maxBatchMoves);
+            if (error != null) {
+                metrics.countError(error);
+                return ResponseEntity.badRequest()
+                        .body(errorResponse(batchErrorMessage(error, maxBatchMoves), request.getRequestURI()));
+            }
+            return ResponseEntity.ok(gameService.makeMoves(gameId, pits));
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.BATCH_MOVES, start);
+        }
+    }
+
+    @GetMapping(path = "/games/{gameId}/history")
+    public ResponseEntity<KalahGameHistory> getHistory(
+            @PathVariable @Digits(integer=19, fraction=0) @Min(1) @Max(Long.MAX_VALUE) Long gameId) {
+        long start = System.nanoTime();
+        try {
+            return ResponseEntity.ok(gameService.getHistory(gameId));
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.HISTORY, start);
+        }
+    }
+
+    @GetMapping(path = "/games/{gameId}/history/{ply}")
+    @JsonView(KalahView.GameMove.class)
+    public ResponseEntity<KalahGameResponse> getResponse(
+            @PathVariable @Digits(integer=19, fraction=0) @Min(1) @Max(Long.MAX_VALUE) Long gameId,
+            @PathVariable @Digits(integer=9, fraction=0) @Min(0) int ply) {
+        long start = System.nanoTime();
+        try {
+            return ResponseEntity.ok(gameService.getResponse(gameId, ply));
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.REPLAY, start);
+        }
+    }
+
+    @PutMapping(path = "/games/moves")
+    public ResponseEntity<?> makeMoves(HttpServletRequest request, @RequestBody Map<Long, int[]> moves) {
+        long start = System.nanoTime();
+        try {
+            KalahMetrics.ErrorType error = validateBatches(moves.values(), maxBatchMoves);
+            if (error != null) {
+                metrics.countError(error);
+                return ResponseEntity.badRequest()
+                        .body(errorResponse(batchErrorMessage(error, maxBatchMoves), request.getRequestURI()));
+            }
+            return ResponseEntity.ok(gameService.makeMoves(moves));
+        } finally {
+            metrics.recordRequest(KalahMetrics.Request.BATCH_MOVES, start);
+        }
+    }
+
+    /**
+     * Map the move result to the REST response
+     *
+     * @param response the move result and the game state
+     * @param path     request path
+     * @return "OK" response with the game state, or "Bad Request" if the move was not made
+     */
+    private static ResponseEntity<?> toMoveResponse(KalahGameResponse response, String path) {
+        String error = moveErrorMessage(response);
+        return error == null
+                ? ResponseEntity.ok(response)
+                : ResponseEntity.badRequest().body(errorResponse(error, path));
+    }
+
+    /**
+     * Get the error message of a move which was not made
+     *
+     * @param response the move result and the game state
+     * @return error message, or null if the move was made
+     */
+    static String moveErrorMessage(KalahGameResponse response) {
+        switch (response.getMoveResult()) {
+            case INVALID:
+                return KalahErrorMessages.INVALID_MOVE;
+            case GAME_OVER:
+                return String.format(KalahErrorMessages.GAME_OVER,
+                        response.getScore(Player.FIRST), response.getScore(Player.SECOND));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check the batches of moves before they are made
+     *
+     * @param batches  pit numbers of the batches
+     * @param maxMoves maximum number of moves in all the batches
+     * @return the error, or null if the batches are valid
+     */
+    static KalahMetrics.ErrorType validateBatches(Collection<int[]> batches, int maxMoves) {
+        int moves = 0;
+        for (int[] pits : batches) {
+            if (pits == null) {
+                return KalahMetrics.ErrorType.NON_NUMERIC_VALUE;
+            }
+            for (int pit : pits) {
+                if (pit < 1 || pit > KalahGeometry.MAX_PITS) {
+                    return KalahMetrics.ErrorType.NON_NUMERIC_VALUE;
+                }
+            }
+            moves += pits.length;
+        }
+        return moves > maxMoves ? KalahMetrics.ErrorType.TOO_MANY_MOVES : null;
+    }
+
+    /**
+     * Get the geometry of a new game
+     *
+     * @param pits   number of pits of every player
+     * @param stones number of stones in every pit
+     * @return geometry, or null if the numbers are out of their ranges
+     */
+    static KalahGeometry geometryOf(int pits, int stones) {
+        try {
+            return KalahGeometry.of(pits, stones);
+        } catch (KalahGameException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the error message of batches of moves which are not made
+     *
+     * @param error    error found by {@link #validateBatches(Collection, int)}
+     * @param maxMoves maximum number of moves in all the batches
+     * @return error message
+     */
+    static String batchErrorMessage(KalahMetrics.ErrorType error, int maxMoves) {
+        return error == KalahMetrics.ErrorType.TOO_MANY_MOVES
+                ? String.format(KalahErrorMessages.TOO_MANY_MOVES, maxMoves)
+                : KalahErrorMessages.NON_NUMERIC_VALUE;
+    }
+
+    /**
+     * Build "Bad Request" response body with the attributes of the Spring Boot error body, which the requests
+     * rejected with a {@link KalahGameException} get
+     *
+     * @param message error message
+     * @param path    request path
+     * @return response body
+     */
+    static Map<String, Object> errorResponse(String message, String path) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("timestamp", new Date());
+        response.put("status", HttpStatus.BAD_REQUEST.value());
+        response.put("error", HttpStatus.BAD_REQUEST.getReasonPhrase());
+        response.put("message", message);
+        response.put("path", path);
+        return response;
     }
 
 }
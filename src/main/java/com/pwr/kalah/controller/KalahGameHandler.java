@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.service.KalahGameService;
+import com.pwr.kalah.service.KalahMetrics;
+import com.pwr.kalah.view.KalahView;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2CodecSupport;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link KalahGame} RESTful Web Service handler of the reactive stack, with the same endpoints and JSON
+ * as {@link KalahGameController}.
+ * <p>
+ * The service calls take the move locks of the games, and may wait for the event log, the computer player or
+ * the batch threads, so they never run on the event loop threads but always on the bounded elastic scheduler.
+ * The requests are timed until their response is ready, the body is written afterwards.
+ */
+public class KalahGameHandler {
+
+    private static final ParameterizedTypeReference<Map<Long, int[]>> BATCHES_TYPE =
+            new ParameterizedTypeReference<Map<Long, int[]>>() {
+            };
+
+    private static final int DEFAULT_GEOMETRY_VALUE = 6;
+
+    private final KalahGameService gameService;
+    private final Scheduler blockingScheduler = Schedulers.boundedElastic();
+    private final int maxBatchMoves;
+    private final KalahMetrics metrics;
+
+    /**
+     * Handler constructor
+     *
+     * @param gameService   game service shared with the servlet stack
+     * @param maxBatchMoves maximum number of moves in one batch request
+     * @param metrics       game metrics shared with the servlet stack
+     */
+    public KalahGameHandler(KalahGameService gameService, int maxBatchMoves, KalahMetrics metrics) {
+        this.gameService = gameService;
+        this.maxBatchMoves = maxBatchMoves;
+        this.metrics = metrics;
+    }
+
+    public Mono<ServerResponse> createGame(ServerRequest request) {
+        long start = System.nanoTime();
+        int pits = request.queryParam("pits").map(KalahGameHandler::parseGeometryValue)
+                .orElse(DEFAULT_GEOMETRY_VALUE);
+        int stones = request.queryParam("stones").map(KalahGameHandler::parseGeometryValue)
+                .orElse(DEFAULT_GEOMETRY_VALUE);
+        if (pits < 0 || stones < 0) {
+            return nonNumericValue(request);
+        }
+        KalahGeometry geometry = KalahGameController.geometryOf(pits, stones);
+        if (geometry == null) {
+            metrics.countError(KalahMetrics.ErrorType.INVALID_GEOMETRY);
+            return badRequest(request, KalahErrorMessages.INVALID_GEOMETRY);
+        }
+        String requestUri = UriComponentsBuilder.fromUri(request.uri()).replaceQuery(null).build().toUriString();
+        return Mono.fromCallable(() -> gameService.createGame(requestUri, geometry))
+                .subscribeOn(blockingScheduler)
+                .flatMap(newGame -> ServerResponse.status(HttpStatus.CREATED)
+                        .header(HttpHeaders.LOCATION, newGame.getGameUri())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .hint(Jackson2CodecSupport.JSON_VIEW_HINT, KalahView.NewGame.class)
+                        .bodyValue(newGame.getResponse()))
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.CREATE_GAME, start));
+    }
+
+    public Mono<ServerResponse> makeMove(ServerRequest request) {
+        long start = System.nanoTime();
+        long gameId = parseGameId(request.pathVariable("gameId"));
+        int pitId = parseNumber(request.pathVariable("pitId"), KalahGeometry.MAX_PITS);
+        if (gameId < 0 || pitId < 0) {
+            return nonNumericValue(request);
+        }
+        return Mono.fromCallable(() -> gameService.makeMove(gameId, pitId))
+                .subscribeOn(blockingScheduler)
+                .flatMap(response -> toMoveResponse(request, response))
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.MOVE, start));
+    }
+
+    public Mono<ServerResponse> makeComputerMove(ServerRequest request) {
+        long start = System.nanoTime();
+        long gameId = parseGameId(request.pathVariable("gameId"));
+        if (gameId < 0) {
+            return nonNumericValue(request);
+        }
+        return Mono.fromCallable(() -> gameService.makeComputerMove(gameId))
+                .subscribeOn(blockingScheduler)
+                .flatMap(response -> toMoveResponse(request, response))
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.COMPUTER_MOVE, start));
+    }
+
+    public Mono<ServerResponse> makeMoves(ServerRequest request) {
+        long start = System.nanoTime();
+        long gameId = parseGameId(request.pathVariable("gameId"));
+        if (gameId < 0) {
+            return nonNumericValue(request);
+        }
+        return request.bodyToMono(int[].class)
+                .flatMap(pits -> {
+                    KalahMetrics.ErrorType error = KalahGameController.validateBatches(
+                            Collections.singletonList(pits), maxBatchMoves);
+                    if (error != null) {
+                        return batchError(request, error);
+                    }
+                    return Mono.fromCallable(() -> gameService.makeMoves(gameId, pits))
+                            .subscribeOn(blockingScheduler)
+                            .flatMap(KalahGameHandler::ok);
+                })
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.BATCH_MOVES, start));
+    }
+
+    public Mono<ServerResponse> makeBatchMoves(ServerRequest request) {
+        long start = System.nanoTime();
+        return request.bodyToMono(BATCHES_TYPE)
+                .flatMap(moves -> {
+                    KalahMetrics.ErrorType error = KalahGameController.validateBatches(moves.values(), maxBatchMoves);
+                    if (error != null) {
+                        return batchError(request, error);
+                    }
+                    return Mono.fromCallable(() -> gameService.makeMoves(moves))
+                            .subscribeOn(blockingScheduler)
+                            .flatMap(KalahGameHandler::ok);
+                })
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.BATCH_MOVES, start));
+    }
+
+    public Mono<ServerResponse> getHistory(ServerRequest request) {
+        long start = System.nanoTime();
+        long gameId = parseGameId(request.pathVariable("gameId"));
+        if (gameId < 0) {
+            return nonNumericValue(request);
+        }
+        return Mono.fromCallable(() -> gameService.getHistory(gameId))
+                .subscribeOn(blockingScheduler)
+                .flatMap(KalahGameHandler::ok)
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.HISTORY, start));
+    }
+
+    public Mono<ServerResponse> getResponse(ServerRequest request) {
+        long start = System.nanoTime();
+        long gameId = parseGameId(request.pathVariable("gameId"));
+        int ply = parsePly(request.pathVariable("ply"));
+        if (gameId < 0 || ply < 0) {
+            return nonNumericValue(request);
+        }
+        return Mono.fromCallable(() -> gameService.getResponse(gameId, ply))
+                .subscribeOn(blockingScheduler)
+                .flatMap(response -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .hint(Jackson2CodecSupport.JSON_VIEW_HINT, KalahView.GameMove.class)
+                        .bodyValue(response))
+                .doFinally(signal -> metrics.recordRequest(KalahMetrics.Request.REPLAY, start));
+    }
+
+    private Mono<ServerResponse> nonNumericValue(ServerRequest request) {
+        metrics.countError(KalahMetrics.ErrorType.NON_NUMERIC_VALUE);
+        return badRequest(request, KalahErrorMessages.NON_NUMERIC_VALUE);
+    }
+
+    private Mono<ServerResponse> batchError(ServerRequest request, KalahMetrics.ErrorType error) {
+        metrics.countError(error);
+        return badRequest(request, KalahGameController.batchErrorMessage(error, maxBatchMoves));
+    }
+
+    private static Mono<ServerResponse> ok(Object body) {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    private static Mono<ServerResponse> toMoveResponse(ServerRequest request, KalahGameResponse response) {
+        String error = KalahGameController.moveErrorMessage(response);
+        if (error != null) {
+            return badRequest(request, error);
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .hint(Jackson2CodecSupport.JSON_VIEW_HINT, KalahView.GameMove.class)
+                .bodyValue(response);
+    }
+
+    private static Mono<ServerResponse> badRequest(ServerRequest request, String message) {
+        return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(KalahGameController.errorResponse(message, request.path()));
+    }
+
+    /**
+     * Parse a positive number of up to 2 digits
+     *
+     * @return the number, or -1 if it is not valid or greater than the maximum
+     */
+    private static int parseNumber(String value, int max) {
+        if (value.isEmpty() || value.length() > 2 || !isDigits(value)) {
+            return -1;
+        }
+        int number = Integer.parseInt(value);
+        return number >= 1 && number <= max ? number : -1;
+    }
+
+    /**
+     * Parse a number of pits or stones of up to 2 digits, its range is checked by the geometry
+     *
+     * @return the number, or -1 if it is not valid
+     */
+    private static int parseGeometryValue(String value) {
+        if (value.isEmpty() || value.length() > 2 || !isDigits(value)) {
+            return -1;
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Parse a ply of up to 9 digits, 0 is the initial board
+     *
+     * @return the ply, or -1 if it is not valid
+     */
+    private static int parsePly(String value) {
+        if (value.isEmpty() || value.length() > 9 || !isDigits(value)) {
+            return -1;
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Parse a positive game ID of up to 19 digits
+     *
+     * @return the game ID, or -1 if it is not valid
+     */
+    static long parseGameId(String value) {
+        if (value.isEmpty() || value.length() > 19 || !isDigits(value)) {
+            return -1;
+        }
+        try {
+            long gameId = Long.parseLong(value);
+            return gameId >= 1 ? gameId : -1;
+        } catch (NumberFormatException e) {
+            // 19 digits above the maximum long value
+            return -1;
+        }
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
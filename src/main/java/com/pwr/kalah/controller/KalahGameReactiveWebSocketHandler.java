@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.service.KalahGameEvents;
+import com.pwr.kalah.service.KalahGameService;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+/**
+ * WebSocket of the live updates of a game on the reactive stack, with the same messages as
+ * {@link KalahGameWebSocketHandler}.
+ * <p>
+ * The updates are buffered in a bounded queue and sent with the backpressure of the session, a client which falls
+ * behind by more than the queue size is disconnected with the same status as on the servlet stack.
+ */
+public class KalahGameReactiveWebSocketHandler implements WebSocketHandler {
+
+    // org.springframework.web.socket.CloseStatus.SESSION_NOT_RELIABLE, which has no reactive constant
+    private static final CloseStatus SESSION_NOT_RELIABLE = new CloseStatus(4500);
+
+    private final KalahGameService gameService;
+    private final KalahGameUpdateWriter updateWriter;
+    private final int queueSize;
+
+    public KalahGameReactiveWebSocketHandler(KalahGameService gameService, KalahGameUpdateWriter updateWriter,
+                                             int queueSize) {
+        this.gameService = gameService;
+        this.updateWriter = updateWriter;
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        long gameId = KalahGameUpdateWriter.getGameId(session.getHandshakeInfo().getUri());
+        if (gameId < 0) {
+            return session.close(CloseStatus.BAD_DATA.withReason(KalahErrorMessages.NON_NUMERIC_VALUE));
+        }
+
+        // the updates of a game are emitted under its move lock, so they are never emitted concurrently
+        Sinks.Many<Object> updates = Sinks.many().unicast().onBackpressureBuffer(Queues.get(queueSize).get());
+        KalahGameEvents.Listener listener = new KalahGameEvents.Listener() {
+            @Override
+            public void onState(KalahGameResponse response) {
+                emit(response);
+            }
+
+            @Override
+            public void onUpdate(KalahBoardDelta delta) {
+                emit(delta);
+            }
+
+            private void emit(Object update) {
+                if (updates.tryEmitNext(update).isFailure()) {
+                    updates.tryEmitError(Exceptions.failWithOverflow());
+                }
+            }
+        };
+        Mono<Void> send = session.send(updates.asFlux().map(update -> session.textMessage(write(update))))
+                .onErrorResume(Exceptions::isOverflow, e -> session.close(SESSION_NOT_RELIABLE));
+        // watching takes the move lock of the game, which a batch of moves may hold, so not on the event loop
+        return Mono.fromRunnable(() -> gameService.watchGame(gameId, listener))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.firstWithSignal(send, session.receive().then())
+                        .doFinally(signal -> gameService.unwatchGame(gameId, listener)))
+                .onErrorResume(KalahGameException.class,
+                        e -> session.close(CloseStatus.BAD_DATA.withReason(e.getMessage())));
+    }
+
+    private String write(Object update) {
+        try {
+            return updateWriter.write(update);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Game update is not written", e);
+        }
+    }
+}
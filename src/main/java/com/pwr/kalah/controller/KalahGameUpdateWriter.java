@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.view.KalahView;
+import org.springframework.web.util.UriTemplate;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * JSON of the game updates sent to the watchers: the full game state as the move endpoints return it,
+ * then a {@link KalahBoardDelta} of every move
+ */
+final class KalahGameUpdateWriter {
+
+    static final String PATH = "/games/*/updates";
+
+    private static final UriTemplate PATH_TEMPLATE = new UriTemplate("/games/{gameId}/updates");
+
+    private final ObjectWriter stateWriter;
+    private final ObjectWriter deltaWriter;
+
+    KalahGameUpdateWriter(ObjectMapper objectMapper) {
+        stateWriter = objectMapper.writerWithView(KalahView.GameMove.class);
+        deltaWriter = objectMapper.writer();
+    }
+
+    /**
+     * Write a game state or a board delta
+     *
+     * @param update {@link KalahGameResponse} or {@link KalahBoardDelta}
+     * @return JSON text
+     */
+    String write(Object update) throws JsonProcessingException {
+        return update instanceof KalahGameResponse ? stateWriter.writeValueAsString(update)
+                : deltaWriter.writeValueAsString(update);
+    }
+
+    /**
+     * Get the watched game ID from the WebSocket URI
+     *
+     * @param uri WebSocket URI
+     * @return game ID, or -1 if it is not valid
+     */
+    static long getGameId(URI uri) {
+        if (uri == null || !PATH_TEMPLATE.matches(uri.getPath())) {
+            return -1;
+        }
+        Map<String, String> variables = PATH_TEMPLATE.match(uri.getPath());
+        return KalahGameHandler.parseGameId(variables.get("gameId"));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.service.KalahGameEvents;
+import com.pwr.kalah.service.KalahGameService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket of the live updates of a game on the servlet stack, {@code /games/{gameId}/updates}.
+ * <p>
+ * A watcher gets the full game state, then a {@link KalahBoardDelta} after every move. The updates of a session
+ * are queued and sent on the sender executor, so a slow client never blocks the moves, and a session has one sender
+ * task at a time. A client which falls behind by more than the queue size is disconnected with
+ * {@link CloseStatus#SESSION_NOT_RELIABLE}: dropping a delta would leave its board wrong, and it gets the full
+ * state again when it reconnects.
+ */
+public class KalahGameWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahGameWebSocketHandler.class);
+
+    private static final String WATCHER_ATTRIBUTE = KalahGameWebSocketHandler.class.getName() + ".watcher";
+
+    private final KalahGameService gameService;
+    private final KalahGameUpdateWriter updateWriter;
+    private final Executor senderExecutor;
+    private final int queueSize;
+
+    public KalahGameWebSocketHandler(KalahGameService gameService, KalahGameUpdateWriter updateWriter,
+                                     Executor senderExecutor, int queueSize) {
+        this.gameService = gameService;
+        this.updateWriter = updateWriter;
+        this.senderExecutor = senderExecutor;
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        long gameId = KalahGameUpdateWriter.getGameId(session.getUri());
+        if (gameId < 0) {
+            session.close(CloseStatus.BAD_DATA.withReason(KalahErrorMessages.NON_NUMERIC_VALUE));
+            return;
+        }
+        Watcher watcher = new Watcher(gameId, session);
+        session.getAttributes().put(WATCHER_ATTRIBUTE, watcher);
+        try {
+            gameService.watchGame(gameId, watcher);
+        } catch (KalahGameException e) {
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Watcher watcher = (Watcher) session.getAttributes().get(WATCHER_ATTRIBUTE);
+        if (watcher != null) {
+            gameService.unwatchGame(watcher.gameId, watcher);
+        }
+    }
+
+    /**
+     * Queue of the updates of one session, drained by one sender task at a time
+     */
+    private final class Watcher implements KalahGameEvents.Listener {
+
+        private final long gameId;
+        private final WebSocketSession session;
+        private final Queue<Object> updates = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean overflow;
+
+        Watcher(long gameId, WebSocketSession session) {
+            this.gameId = gameId;
+            this.session = session;
+        }
+
+        @Override
+        public void onState(KalahGameResponse response) {
+            queue(response);
+        }
+
+        @Override
+        public void onUpdate(KalahBoardDelta delta) {
+            queue(delta);
+        }
+
+        private void queue(Object update) {
+            if (queued.incrementAndGet() > queueSize) {
+                overflow = true;
+            } else {
+                updates.add(update);
+            }
+            if (sending.compareAndSet(false, true)) {
+                senderExecutor.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                do {
+                    Object update;
+                    // the overflow is checked before every update, the queue may overflow while one is sent
+                    while (!overflow && (update = updates.poll()) != null) {
+                        session.sendMessage(new TextMessage(updateWriter.write(update)));
+                        queued.decrementAndGet();
+                    }
+                    if (overflow) {
+                        updates.clear();
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                        return;
+                    }
+                    sending.set(false);
+                    // an update or an overflow after the last poll, but before the flag was reset
+                } while ((overflow || !updates.isEmpty()) && sending.compareAndSet(false, true));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Game {} update is not sent to the session {}", gameId, session.getId(), e);
+                updates.clear();
+                try {
+                    session.close(CloseStatus.SERVER_ERROR);
+                } catch (IOException closeException) {
+                    LOGGER.debug("Session {} is not closed", session.getId(), closeException);
+                }
+            }
+        }
+    }
+}
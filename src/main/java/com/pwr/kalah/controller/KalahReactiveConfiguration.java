@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pwr.kalah.service.KalahGameService;
+import com.pwr.kalah.service.KalahMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+
+import java.util.Collections;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+
+/**
+ * Reactive variant of the API on WebFlux and Netty, enabled with {@code spring.main.web-application-type=reactive}
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class KalahReactiveConfiguration implements WebFluxConfigurer {
+
+    /**
+     * Netty server, Tomcat would be chosen otherwise because it is on the class path for the servlet stack
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * WebSocket upgrade of Netty, the Tomcat one would be detected on the class path otherwise
+     */
+    @Override
+    public WebSocketService getWebSocketService() {
+        return new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy());
+    }
+
+    @Bean
+    public KalahGameHandler kalahGameHandler(KalahGameService gameService, KalahMetrics metrics,
+                                             @Value("${kalah.batch.max-moves:10000}") int maxBatchMoves) {
+        return new KalahGameHandler(gameService, maxBatchMoves, metrics);
+    }
+
+    /**
+     * Live game updates WebSocket, mapped before the annotated controllers
+     */
+    @Bean
+    public HandlerMapping kalahGameUpdatesMapping(KalahGameService gameService, ObjectMapper objectMapper,
+                                                  @Value("${kalah.updates.queue-size:64}") int queueSize) {
+        WebSocketHandler handler = new KalahGameReactiveWebSocketHandler(gameService,
+                new KalahGameUpdateWriter(objectMapper), queueSize);
+        return new SimpleUrlHandlerMapping(Collections.singletonMap(KalahGameUpdateWriter.PATH, handler), -1);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> kalahGameRoutes(KalahGameHandler handler) {
+        return RouterFunctions.route(POST("/games"), handler::createGame)
+                .andRoute(PUT("/games/{gameId}/pits/{pitId}"), handler::makeMove)
+                .andRoute(PUT("/games/{gameId}/ai-move"), handler::makeComputerMove)
+                .andRoute(PUT("/games/{gameId}/moves"), handler::makeMoves)
+                .andRoute(PUT("/games/moves"), handler::makeBatchMoves)
+                .andRoute(GET("/games/{gameId}/history"), handler::getHistory)
+                .andRoute(GET("/games/{gameId}/history/{ply}"), handler::getResponse);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pwr.kalah.service.KalahGameService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live game updates WebSocket of the servlet stack
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableWebSocket
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class KalahWebSocketConfiguration implements WebSocketConfigurer {
+
+    private final AtomicInteger senderThreadNumber = new AtomicInteger();
+
+    // A sender thread is blocked by a slow session until the send timeout of the container at most, and every
+    // session queues one sender task at a time, so a fixed pool serves any number of sessions
+    private final ExecutorService senderExecutor;
+
+    private final KalahGameWebSocketHandler handler;
+
+    public KalahWebSocketConfiguration(KalahGameService gameService, ObjectMapper objectMapper,
+                                       @Value("${kalah.updates.queue-size:64}") int queueSize,
+                                       @Value("${kalah.updates.sender-threads:16}") int senderThreads) {
+        senderExecutor = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "kalah-game-updates-" + senderThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        handler = new KalahGameWebSocketHandler(gameService, new KalahGameUpdateWriter(objectMapper), senderExecutor,
+                queueSize);
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(handler, KalahGameUpdateWriter.PATH);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senderExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computer opponent which picks a move with the alpha-beta (negamax) search over {@link KalahPosition}.
+ * <p>
+ * The search is iteratively deepened until the time budget is spent, the maximum depth is reached
+ * or the whole game tree is solved. The result of the last completed iteration is returned, and its best
+ * move is searched first in the next one. The position is scored with the difference between the Kalah
+ * stones of the player to move and of his opponent, which is the exact result of a finished game.
+ * <p>
+ * The searched positions are kept in an optional {@link KalahTranspositionTable}, which gives the best move
+ * to try first and cuts the search of the positions which were already searched deep enough. The positions
+ * with few stones left are scored exactly by an optional {@link KalahTablebase} without a search.
+ * <p>
+ * Every ply has its own preallocated position, a move is copied from the parent position and made
+ * on the copy, so the search does not allocate. An instance must be used by one thread at a time,
+ * but the transposition table can be shared. The searches of {@link KalahParallelSearch} differ by their
+ * variant: the odd variants try the moves in another order and every variant starts at another depth.
+ */
+public class KalahAlphaBetaSearch {
+
+    static final int INFINITY = 1_000;
+
+    // The clock is read once per this number of visited positions
+    private static final int TIME_CHECK_INTERVAL = 4_096;
+
+    private final int maxDepth;
+    private final KalahTranspositionTable table;
+    private final KalahTablebase tablebase;
+    private final int variant;
+    private final KalahPosition[] positions;
+
+    private volatile boolean stopped;
+    private long deadline;
+    private boolean timeout;
+    private boolean depthLimitReached;
+    private long nodes;
+
+    /**
+     * Create the search without a transposition table
+     *
+     * @param maxDepth maximum search depth in plies
+     */
+    public KalahAlphaBetaSearch(int maxDepth) {
+        this(maxDepth, null);
+    }
+
+    /**
+     * Create the search
+     *
+     * @param maxDepth maximum search depth in plies
+     * @param table    transposition table, or null
+     */
+    public KalahAlphaBetaSearch(int maxDepth, KalahTranspositionTable table) {
+        this(maxDepth, table, 0);
+    }
+
+    /**
+     * Create one of the parallel searches
+     *
+     * @param maxDepth maximum search depth in plies
+     * @param table    transposition table, or null
+     * @param variant  search number, 0 is the regular search
+     */
+    public KalahAlphaBetaSearch(int maxDepth, KalahTranspositionTable table, int variant) {
+        this(maxDepth, table, null, variant);
+    }
+
+    /**
+     * Create one of the parallel searches with an endgame tablebase
+     *
+     * @param maxDepth  maximum search depth in plies
+     * @param table     transposition table, or null
+     * @param tablebase endgame tablebase, or null
+     * @param variant   search number, 0 is the regular search
+     */
+    public KalahAlphaBetaSearch(int maxDepth, KalahTranspositionTable table, KalahTablebase tablebase, int variant) {
+        if (maxDepth < 1 || maxDepth >= KalahTranspositionTable.SOLVED_DEPTH) {
+            throw new IllegalArgumentException("Search depth should be from 1 to " + (KalahTranspositionTable.SOLVED_DEPTH - 1));
+        }
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.tablebase = tablebase;
+        this.variant = variant;
+        positions = new KalahPosition[maxDepth + 1];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new KalahPosition();
+        }
+    }
+
+    /**
+     * Find the best move of the player to move
+     *
+     * @param root             position to search, the game should not be over
+     * @param timeBudgetMillis time limit of the search
+     * @return the best move found
+     */
+    public KalahSearchResult search(KalahPosition root, long timeBudgetMillis) {
+        if (root.isGameOver()) {
+            throw new IllegalArgumentException("The game is over, there is no move to search");
+        }
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        timeout = false;
+        nodes = 0;
+        positions[0].copyFrom(root);
+
+        int bestPit = firstLegalMove(root);
+        int bestScore = evaluate(root);
+        int completedDepth = 0;
+        int firstPit = root.getGeometry().getFirstPit(root.getCurrentPlayer());
+        int pitsPerPlayer = root.getGeometry().getPitsPerPlayer();
+        for (int depth = Math.min(1 + variant % 3, maxDepth); depth <= maxDepth && !stopped; depth++) {
+            depthLimitReached = false;
+            int iterationBestPit = 0;
+            int alpha = -INFINITY;
+            for (int move = 0; move <= pitsPerPlayer && !timeout; move++) {
+                int pit = orderedMove(root, firstPit, bestPit, move);
+                if (pit == 0) {
+                    continue;
+                }
+                int score = searchMove(0, pit, depth, alpha, INFINITY);
+                if (!timeout && score > alpha) {
+                    alpha = score;
+                    iterationBestPit = pit;
+                }
+            }
+            if (timeout) {
+                break;
+            }
+            bestPit = iterationBestPit;
+            bestScore = alpha;
+            completedDepth = depth;
+            if (!depthLimitReached) {
+                // the whole game tree was searched, deeper iterations would give the same result
+                break;
+            }
+        }
+        return new KalahSearchResult(bestPit, bestScore, completedDepth, nodes);
+    }
+
+    /**
+     * Stop the search as soon as possible, it returns the result of the last completed iteration
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Get the pit of the given move number: the preferred move first, then the pits from the Kalah side,
+     * which give another turn more often (or from the other side for the odd variants)
+     *
+     * @return pit number, or 0 if the move should be skipped
+     */
+    private int orderedMove(KalahPosition position, int firstPit, int preferredPit, int move) {
+        int pit;
+        if (move == 0) {
+            pit = preferredPit;
+        } else {
+            pit = variant % 2 == 0 ? firstPit + position.getGeometry().getPitsPerPlayer() - move : firstPit + move - 1;
+        }
+        if (pit == 0 || (move > 0 && pit == preferredPit) || position.getPitStones(pit) == 0) {
+            return 0;
+        }
+        return pit;
+    }
+
+    /**
+     * Make the move on the position of the next ply and search it
+     *
+     * @return the score of the move for the player who makes it
+     */
+    private int searchMove(int ply, int pit, int depth, int alpha, int beta) {
+        KalahPosition position = positions[ply];
+        KalahPosition child = positions[ply + 1];
+        child.copyFrom(position);
+        child.play(pit);
+        if (child.getCurrentPlayer() == position.getCurrentPlayer()) {
+            // another turn of the same player
+            return alphaBeta(ply + 1, depth - 1, alpha, beta);
+        }
+        return -alphaBeta(ply + 1, depth - 1, -beta, -alpha);
+    }
+
+    private int alphaBeta(int ply, int depth, int alpha, int beta) {
+        if (++nodes % TIME_CHECK_INTERVAL == 0 && (stopped || System.nanoTime() > deadline)) {
+            timeout = true;
+        }
+        if (timeout) {
+            return 0;
+        }
+        KalahPosition position = positions[ply];
+        if (position.isGameOver()) {
+            return evaluate(position);
+        }
+        if (tablebase != null && tablebase.contains(position)) {
+            return tablebase.getScore(position);
+        }
+        if (depth == 0) {
+            depthLimitReached = true;
+            return evaluate(position);
+        }
+
+        long hash = 0;
+        int preferredPit = 0;
+        if (table != null) {
+            hash = KalahZobrist.hash(position);
+            long entry = table.probe(hash);
+            if (entry != 0) {
+                preferredPit = KalahTranspositionTable.getBestPit(entry);
+                if (isCutByEntry(entry, depth, alpha, beta)) {
+                    return KalahTranspositionTable.getScore(entry);
+                }
+            }
+        }
+
+        // track whether this subtree reaches the depth limit, a subtree which does not is solved
+        boolean depthLimitReachedBefore = depthLimitReached;
+        depthLimitReached = false;
+
+        int originalAlpha = alpha;
+        KalahGeometry geometry = position.getGeometry();
+        int firstPit = geometry.getFirstPit(position.getCurrentPlayer());
+        int pitsPerPlayer = geometry.getPitsPerPlayer();
+        int bestScore = -INFINITY;
+        int bestPit = 0;
+        for (int move = 0; move <= pitsPerPlayer; move++) {
+            int pit = orderedMove(position, firstPit, preferredPit, move);
+            if (pit == 0) {
+                continue;
+            }
+            int score = searchMove(ply, pit, depth, alpha, beta);
+            if (score > bestScore) {
+                bestScore = score;
+                bestPit = pit;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        boolean solved = !depthLimitReached;
+        depthLimitReached |= depthLimitReachedBefore;
+        if (table != null && !timeout) {
+            int bound = bestScore <= originalAlpha ? KalahTranspositionTable.UPPER_BOUND
+                    : bestScore >= beta ? KalahTranspositionTable.LOWER_BOUND : KalahTranspositionTable.EXACT;
+            table.store(hash, solved ? KalahTranspositionTable.SOLVED_DEPTH : depth, bound, bestScore, bestPit);
+        }
+        return bestScore;
+    }
+
+    /**
+     * Checks if the stored entry is deep enough and its score is enough to return it without a search
+     */
+    private boolean isCutByEntry(long entry, int depth, int alpha, int beta) {
+        int entryDepth = KalahTranspositionTable.getDepth(entry);
+        if (entryDepth < depth) {
+            return false;
+        }
+        int score = KalahTranspositionTable.getScore(entry);
+        int bound = KalahTranspositionTable.getBound(entry);
+        boolean cut = bound == KalahTranspositionTable.EXACT
+                || bound == KalahTranspositionTable.LOWER_BOUND && score >= beta
+                || bound == KalahTranspositionTable.UPPER_BOUND && score <= alpha;
+        if (cut && entryDepth != KalahTranspositionTable.SOLVED_DEPTH) {
+            depthLimitReached = true;
+        }
+        return cut;
+    }
+
+    static int evaluate(KalahPosition position) {
+        Player player = position.getCurrentPlayer();
+        Player opponent = player == Player.FIRST ? Player.SECOND : Player.FIRST;
+        return position.getKalahStones(player) - position.getKalahStones(opponent);
+    }
+
+    private static int firstLegalMove(KalahPosition position) {
+        int firstPit = position.getGeometry().getFirstPit(position.getCurrentPlayer());
+        for (int pit = firstPit; pit < firstPit + position.getGeometry().getPitsPerPlayer(); pit++) {
+            if (position.isLegalMove(pit)) {
+                return pit;
+            }
+        }
+        throw new IllegalStateException("No legal moves");
+    }
+}
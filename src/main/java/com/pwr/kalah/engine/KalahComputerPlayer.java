@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahBoard;
+import com.pwr.kalah.model.KalahPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Computer opponent which chooses the moves of a game with {@link KalahParallelSearch}.
+ * All the searches share one {@link KalahTranspositionTable}, the helper searches of all the games
+ * run on one pool of daemon threads. The endgame positions are looked up in an optional {@link KalahTablebase}.
+ * <p>
+ * With the {@link KalahSearchAlgorithm#MCTS} algorithm the moves are chosen by a pool of {@link KalahMonteCarloSearch}
+ * trees which share the memory budget. A move is searched with the idle tree of its game if there is one, so
+ * the consecutive moves of a game continue its tree, otherwise with the least recently used tree.
+ */
+@Component
+public class KalahComputerPlayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahComputerPlayer.class);
+
+    private final long moveTimeMillis;
+    private final KalahTranspositionTable transpositionTable;
+    private final KalahParallelSearch search;
+    private final ExecutorService helperExecutor;
+    // idle Monte Carlo trees, the most recently used last, null with the alpha-beta search
+    private final Deque<KalahMonteCarloSearch> idleTrees;
+    private final ReentrantLock treesLock = new ReentrantLock();
+    private final Condition treeReleased = treesLock.newCondition();
+
+    /**
+     * Create the computer player with the alpha-beta search
+     */
+    public KalahComputerPlayer(int maxDepth, Duration moveTime, int transpositionTableSize, int searchThreads,
+                               String tablebasePath) {
+        this(maxDepth, moveTime, transpositionTableSize, searchThreads, tablebasePath, KalahSearchAlgorithm.ALPHA_BETA,
+                DataSize.ofMegabytes(64), 1);
+    }
+
+    @Autowired
+    public KalahComputerPlayer(@Value("${kalah.ai.max-depth:64}") int maxDepth,
+                               @Value("${kalah.ai.move-time:100ms}") Duration moveTime,
+                               @Value("${kalah.ai.transposition-table-size:1048576}") int transpositionTableSize,
+                               @Value("${kalah.ai.search-threads:1}") int searchThreads,
+                               @Value("${kalah.ai.tablebase-path:}") String tablebasePath,
+                               @Value("${kalah.ai.algorithm:ALPHA_BETA}") KalahSearchAlgorithm algorithm,
+                               @Value("${kalah.ai.mcts.memory:64MB}") DataSize treeMemory,
+                               @Value("${kalah.ai.mcts.trees:4}") int trees) {
+        this.moveTimeMillis = moveTime.toMillis();
+        this.helperExecutor = searchThreads > 1 ? newHelperExecutor(searchThreads - 1) : null;
+        if (algorithm == KalahSearchAlgorithm.MCTS) {
+            if (trees < 1) {
+                throw new IllegalArgumentException("The number of the search trees should be positive");
+            }
+            this.transpositionTable = null;
+            this.search = null;
+            this.idleTrees = new ArrayDeque<>(trees);
+            for (int i = 0; i < trees; i++) {
+                idleTrees.add(new KalahMonteCarloSearch(searchThreads, treeMemory.toBytes() / trees, helperExecutor));
+            }
+        } else {
+            this.transpositionTable = new KalahTranspositionTable(transpositionTableSize);
+            this.search = new KalahParallelSearch(searchThreads, maxDepth, transpositionTable,
+                    openTablebase(tablebasePath), helperExecutor);
+            this.idleTrees = null;
+        }
+    }
+
+    private static KalahTablebase openTablebase(String tablebasePath) {
+        if (tablebasePath == null || tablebasePath.isEmpty()) {
+            return null;
+        }
+        try {
+            KalahTablebase tablebase = KalahTablebase.open(Paths.get(tablebasePath));
+            LOGGER.info("Endgame tablebase with up to {} stones loaded from {}", tablebase.getMaxStones(), tablebasePath);
+            return tablebase;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not load the endgame tablebase " + tablebasePath, e);
+        }
+    }
+
+    private static ExecutorService newHelperExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "kalah-search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (helperExecutor != null) {
+            helperExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Choose the move of the current player
+     *
+     * @param board game board, the game should not be over
+     * @return pit number to move from
+     */
+    public int chooseMove(KalahBoard board) {
+        return chooseMove(KalahPosition.of(board));
+    }
+
+    /**
+     * Choose the move of the current player in a copy of a board, the game may be locked only while it is copied
+     *
+     * @param position game position, the game should not be over
+     * @return pit number to move from
+     */
+    public int chooseMove(KalahPosition position) {
+        if (idleTrees != null) {
+            return chooseMonteCarloMove(position);
+        }
+        transpositionTable.newSearch();
+        KalahSearchResult result = search.search(position, moveTimeMillis);
+        LOGGER.debug("Computer player move: {}, transposition table hit rate {}", result,
+                transpositionTable.getHitRate());
+        return result.getBestPit();
+    }
+
+    private int chooseMonteCarloMove(KalahPosition position) {
+        KalahMonteCarloSearch tree = takeTree(position);
+        try {
+            KalahSearchResult result = tree.search(position, moveTimeMillis);
+            LOGGER.debug("Computer player move: {}, tree of {} nodes", result, tree.getSize());
+            return result.getBestPit();
+        } finally {
+            treesLock.lock();
+            try {
+                idleTrees.addLast(tree);
+                treeReleased.signal();
+            } finally {
+                treesLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Take the idle tree of the game of the position, or the least recently used one
+     */
+    private KalahMonteCarloSearch takeTree(KalahPosition position) {
+        treesLock.lock();
+        try {
+            while (idleTrees.isEmpty()) {
+                treeReleased.awaitUninterruptibly();
+            }
+            for (Iterator<KalahMonteCarloSearch> trees = idleTrees.descendingIterator(); trees.hasNext(); ) {
+                KalahMonteCarloSearch tree = trees.next();
+                if (tree.isReusable(position)) {
+                    trees.remove();
+                    return tree;
+                }
+            }
+            return idleTrees.pollFirst();
+        } finally {
+            treesLock.unlock();
+        }
+    }
+
+    /**
+     * Get the transposition table of the alpha-beta search
+     *
+     * @return transposition table, or null with the Monte Carlo tree search
+     */
+    public KalahTranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Helper search submitted to an executor, which the searching thread waits for when its own search is over.
+ * <p>
+ * A helper which has not started by then is cancelled, so the search does not wait for the executor to get
+ * to it, and it never starts after the search has returned. A started helper is waited for until a deadline.
+ *
+ * @param <T> result of the helper
+ */
+final class KalahHelperTask<T> {
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Future<T> future;
+
+    KalahHelperTask(ExecutorService executor, Callable<T> search) {
+        future = executor.submit(() -> started.compareAndSet(false, true) ? search.call() : null);
+    }
+
+    /**
+     * Cancel the helper if it has not started, or wait for its result, a failed helper does not fail the search
+     *
+     * @param deadline {@link System#nanoTime()} to wait for a started helper until
+     * @return helper result, or null if the helper has not started, failed or not finished in time
+     */
+    T await(long deadline) {
+        if (started.compareAndSet(false, true)) {
+            future.cancel(false);
+            return null;
+        }
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+}
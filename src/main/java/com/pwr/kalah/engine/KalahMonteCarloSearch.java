@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monte Carlo tree search of one game, with the tree kept between the moves.
+ * <p>
+ * The nodes live in an arena of primitive arrays of a fixed capacity, a node is an index and the children
+ * of a node are allocated next to each other. A node is only a move, the positions are replayed from the root
+ * while the tree is descended. The children are selected with UCT, the leaves are expanded on their second
+ * visit and evaluated with a random playout.
+ * <p>
+ * The calling thread and the helper threads run the playouts in parallel. The tree is only changed under
+ * the tree lock, the playouts run outside of it: a thread descending the tree counts a visit of every node on
+ * its path at once, as a virtual loss, so the other threads spread over other paths, and adds the result when
+ * its playout is over. A helper which the executor has not started when the calling thread is done is cancelled,
+ * and a started helper is waited for a short time at most; the next search waits for its last playout.
+ * <p>
+ * The arena has a second space of the same capacity. When the arena fills, the new playouts wait until the
+ * running ones are over, then the nodes reachable from the root are copied to the other space breadth first
+ * up to a half of the capacity, so the deepest nodes are recycled. The next search of the same game copies
+ * the subtree of its position in the same way, and continues with the statistics of the previous searches.
+ * <p>
+ * A search is not thread-safe, one tree searches one game at a time.
+ */
+public class KalahMonteCarloSearch {
+
+    /**
+     * Memory of one node in both arena spaces and the copying queue
+     */
+    public static final int BYTES_PER_NODE = 32;
+
+    private static final int MIN_CAPACITY = 256;
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int NOT_EXPANDED = -1;
+
+    // Plies searched for the new root among the descendants of the previous one
+    private static final int MAX_REUSE_DEPTH = 6;
+
+    // Time a helper has to return after the deadline, it finishes its last playout
+    private static final long HELPER_STOP_MILLIS = 100;
+
+    private final int threads;
+    private final int capacity;
+    private final ExecutorService executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition playoutsOver = lock.newCondition();
+    private final int[] queue;
+    private final Worker[] workers;
+    private final KalahPosition[] reusePositions = new KalahPosition[MAX_REUSE_DEPTH + 1];
+    private final KalahPosition rootPosition = new KalahPosition();
+
+    private Arena nodes;
+    private Arena spare;
+    private int size;
+    private boolean hasRoot;
+    private int playouts;
+    private boolean recycleRequested;
+    private long recycles;
+    private long reuses;
+
+    /**
+     * Create the search of a game
+     *
+     * @param threads     number of the playout threads including the calling one
+     * @param memoryBytes memory of the tree, {@link #BYTES_PER_NODE} per node
+     * @param executor    executor of the helper threads, unused if there is only one thread
+     */
+    public KalahMonteCarloSearch(int threads, long memoryBytes, ExecutorService executor) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of the search threads should be positive");
+        }
+        long nodeCapacity = memoryBytes / BYTES_PER_NODE;
+        if (nodeCapacity < MIN_CAPACITY || nodeCapacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The tree memory should be from " + MIN_CAPACITY * BYTES_PER_NODE
+                    + " bytes to " + (long) Integer.MAX_VALUE * BYTES_PER_NODE + " bytes");
+        }
+        this.threads = threads;
+        this.capacity = (int) nodeCapacity;
+        this.executor = executor;
+        nodes = new Arena(capacity);
+        spare = new Arena(capacity);
+        queue = new int[capacity];
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (int i = 0; i < reusePositions.length; i++) {
+            reusePositions[i] = new KalahPosition();
+        }
+    }
+
+    /**
+     * Find the best move of the player to move, the tree of the previous search is reused if the position
+     * follows its root
+     *
+     * @param root             position to search, the game should not be over
+     * @param timeBudgetMillis time limit of the search
+     * @return the most visited move, the score is the expected result of the player to move in per mille
+     * (1000 is a win), the depth is the length of the most visited line and the nodes are the playouts
+     */
+    public KalahSearchResult search(KalahPosition root, long timeBudgetMillis) {
+        if (root.isGameOver()) {
+            throw new IllegalArgumentException("The game is over, there is no move to search");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        awaitPlayouts();
+        setRoot(root);
+        if (nodes.childCount[0] == 1) {
+            // the only legal move
+            return new KalahSearchResult(nodes.move[nodes.firstChild[0]], 0, 0, 0);
+        }
+
+        List<KalahHelperTask<Long>> helperResults = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            Worker helper = workers[i];
+            helperResults.add(new KalahHelperTask<>(executor, () -> helper.run(deadline)));
+        }
+        long playoutCount = workers[0].run(deadline);
+        long helperDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HELPER_STOP_MILLIS);
+        for (KalahHelperTask<Long> helperResult : helperResults) {
+            Long helperPlayouts = helperResult.await(helperDeadline);
+            playoutCount += helperPlayouts == null ? 0 : helperPlayouts;
+        }
+        return getResult(playoutCount);
+    }
+
+    /**
+     * Get the number of the nodes in the tree
+     *
+     * @return nodes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of times the arena filled and its deepest nodes were recycled
+     *
+     * @return recycles
+     */
+    public long getRecycles() {
+        return recycles;
+    }
+
+    /**
+     * Get the number of searches which continued the tree of the previous search
+     *
+     * @return reuses
+     */
+    public long getReuses() {
+        return reuses;
+    }
+
+    /**
+     * Check if the position is the root of the tree or follows it within a few plies, so a search of it
+     * would reuse the tree
+     *
+     * @param position position of the game
+     * @return result of checking
+     */
+    public boolean isReusable(KalahPosition position) {
+        return findNode(position) >= 0;
+    }
+
+    /**
+     * Wait until the playouts of a helper which has returned late from the previous search are over, the tree
+     * is only changed by one search at a time
+     */
+    private void awaitPlayouts() {
+        lock.lock();
+        try {
+            while (playouts > 0) {
+                playoutsOver.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Make the node of the position the root of the tree, or start a new tree
+     */
+    private void setRoot(KalahPosition root) {
+        int node = findNode(root);
+        if (node < 0) {
+            size = 1;
+            nodes.clear(0);
+        } else {
+            if (node > 0) {
+                compact(node);
+            }
+            reuses++;
+        }
+        hasRoot = true;
+        rootPosition.copyFrom(root);
+        if (nodes.firstChild[0] == NOT_EXPANDED) {
+            // the root of a new tree, a recycled tree has room for the children
+            expand(0, rootPosition);
+        }
+    }
+
+    /**
+     * Find the node of the position among the root and its descendants
+     *
+     * @return node, or -1 if the position is not in the tree
+     */
+    private int findNode(KalahPosition position) {
+        if (!hasRoot) {
+            return -1;
+        }
+        reusePositions[0].copyFrom(rootPosition);
+        return findNode(0, 0, position);
+    }
+
+    private int findNode(int node, int depth, KalahPosition position) {
+        KalahPosition nodePosition = reusePositions[depth];
+        if (isSamePosition(nodePosition, position)) {
+            return node;
+        }
+        if (depth == MAX_REUSE_DEPTH || nodes.firstChild[node] == NOT_EXPANDED) {
+            return -1;
+        }
+        KalahPosition child = reusePositions[depth + 1];
+        int firstChild = nodes.firstChild[node];
+        for (int i = firstChild; i < firstChild + nodes.childCount[node]; i++) {
+            child.copyFrom(nodePosition);
+            child.play(nodes.move[i]);
+            int found = findNode(i, depth + 1, position);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSamePosition(KalahPosition a, KalahPosition b) {
+        if (a.getGeometry() != b.getGeometry() || a.getCurrentPlayer() != b.getCurrentPlayer()) {
+            return false;
+        }
+        for (int pit = 1; pit <= a.getGeometry().getPits(); pit++) {
+            if (a.getPitStones(pit) != b.getPitStones(pit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Allocate the children of a leaf, must be called under the tree lock or by the searching thread alone
+     *
+     * @return true if the leaf is expanded, false if the arena is full
+     */
+    private boolean expand(int node, KalahPosition position) {
+        int firstPit = position.getGeometry().getFirstPit(position.getCurrentPlayer());
+        int pitsPerPlayer = position.getGeometry().getPitsPerPlayer();
+        int count = 0;
+        for (int pit = firstPit; pit < firstPit + pitsPerPlayer; pit++) {
+            if (position.isLegalMove(pit)) {
+                count++;
+            }
+        }
+        if (size + count > capacity) {
+            return false;
+        }
+        int child = size;
+        nodes.firstChild[node] = child;
+        nodes.childCount[node] = (byte) count;
+        for (int pit = firstPit; pit < firstPit + pitsPerPlayer; pit++) {
+            if (position.isLegalMove(pit)) {
+                nodes.clear(child);
+                nodes.move[child++] = (byte) pit;
+            }
+        }
+        size = child;
+        return true;
+    }
+
+    /**
+     * Copy the subtree of the node to the other arena space breadth first, up to a half of the capacity,
+     * the node becomes the root. Must be called when no playout is running.
+     */
+    private void compact(int root) {
+        int limit = capacity / 2;
+        Arena target = spare;
+        target.copy(0, nodes, root);
+        queue[0] = root;
+        int copied = 1;
+        boolean full = false;
+        for (int i = 0; i < copied; i++) {
+            int first = nodes.firstChild[queue[i]];
+            int count = nodes.childCount[queue[i]];
+            if (first == NOT_EXPANDED || full || copied + count > limit) {
+                // the children of this node and of all the following ones are recycled
+                full |= first != NOT_EXPANDED;
+                target.firstChild[i] = NOT_EXPANDED;
+                target.childCount[i] = 0;
+                continue;
+            }
+            target.firstChild[i] = copied;
+            target.childCount[i] = (byte) count;
+            for (int child = first; child < first + count; child++) {
+                target.copy(copied, nodes, child);
+                queue[copied++] = child;
+            }
+        }
+        spare = nodes;
+        nodes = target;
+        size = copied;
+    }
+
+    /**
+     * Get the most visited move of the root
+     */
+    private KalahSearchResult getResult(long playoutCount) {
+        int best = mostVisitedChild(0);
+        int depth = 0;
+        for (int node = best; node != NOT_EXPANDED; node = mostVisitedChild(node)) {
+            depth++;
+        }
+        int score = nodes.visits[best] == 0 ? 500 : Math.round(1000 * nodes.value[best] / nodes.visits[best]);
+        return new KalahSearchResult(nodes.move[best], score, depth, playoutCount);
+    }
+
+    private int mostVisitedChild(int node) {
+        int first = nodes.firstChild[node];
+        if (first == NOT_EXPANDED) {
+            return NOT_EXPANDED;
+        }
+        int best = first;
+        for (int child = first + 1; child < first + nodes.childCount[node]; child++) {
+            if (nodes.visits[child] > nodes.visits[best]) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The nodes of one arena space
+     */
+    private static final class Arena {
+
+        // index of the first child, or NOT_EXPANDED
+        private final int[] firstChild;
+        private final byte[] childCount;
+        // pit of the move which leads to the node
+        private final byte[] move;
+        // playouts through the node, including the running ones
+        private final int[] visits;
+        // sum of the playout results for the player who made the move, 1 for a win and 0.5 for a draw
+        private final float[] value;
+
+        private Arena(int capacity) {
+            firstChild = new int[capacity];
+            childCount = new byte[capacity];
+            move = new byte[capacity];
+            visits = new int[capacity];
+            value = new float[capacity];
+        }
+
+        private void clear(int node) {
+            firstChild[node] = NOT_EXPANDED;
+            childCount[node] = 0;
+            visits[node] = 0;
+            value[node] = 0;
+        }
+
+        private void copy(int node, Arena from, int fromNode) {
+            move[node] = from.move[fromNode];
+            visits[node] = from.visits[fromNode];
+            value[node] = from.value[fromNode];
+        }
+    }
+
+    /**
+     * Playout thread state, reused by the searches
+     */
+    private final class Worker {
+
+        private final KalahPosition position = new KalahPosition();
+        private final SplittableRandom random;
+        private int[] path = new int[64];
+        private Player[] movers = new Player[64];
+        private int pathLength;
+
+        private Worker(int number) {
+            random = new SplittableRandom(0x9E3779B97F4A7C15L * (number + 1));
+        }
+
+        private long run(long deadline) {
+            long count = 0;
+            while (System.nanoTime() < deadline) {
+                playout();
+                count++;
+            }
+            return count;
+        }
+
+        private void playout() {
+            lock.lock();
+            try {
+                while (recycleRequested) {
+                    if (playouts == 0) {
+                        compact(0);
+                        recycles++;
+                        recycleRequested = false;
+                    } else {
+                        playoutsOver.awaitUninterruptibly();
+                    }
+                }
+                select();
+                playouts++;
+            } finally {
+                lock.unlock();
+            }
+
+            while (!position.isGameOver()) {
+                position.play(KalahSelfPlay.RANDOM.chooseMove(position, random));
+            }
+            int difference = position.getKalahStones(Player.FIRST) - position.getKalahStones(Player.SECOND);
+
+            lock.lock();
+            try {
+                for (int i = 0; i < pathLength; i++) {
+                    int moverDifference = movers[i] == Player.FIRST ? difference : -difference;
+                    nodes.value[path[i]] += moverDifference > 0 ? 1 : moverDifference == 0 ? 0.5f : 0;
+                }
+                if (--playouts == 0) {
+                    playoutsOver.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Descend from the root to a leaf, expanding it on its second visit, and count the visits
+         */
+        private void select() {
+            position.copyFrom(rootPosition);
+            pathLength = 0;
+            int node = 0;
+            nodes.visits[0]++;
+            while (nodes.firstChild[node] != NOT_EXPANDED) {
+                node = descend(selectChild(node));
+            }
+            if (nodes.visits[node] > 1 && !position.isGameOver()) {
+                if (expand(node, position)) {
+                    descend(nodes.firstChild[node]);
+                } else {
+                    recycleRequested = true;
+                }
+            }
+        }
+
+        private int descend(int child) {
+            if (pathLength == path.length) {
+                path = Arrays.copyOf(path, pathLength * 2);
+                movers = Arrays.copyOf(movers, pathLength * 2);
+            }
+            path[pathLength] = child;
+            movers[pathLength++] = position.getCurrentPlayer();
+            position.play(nodes.move[child]);
+            nodes.visits[child]++;
+            return child;
+        }
+
+        private int selectChild(int node) {
+            int first = nodes.firstChild[node];
+            double logVisits = Math.log(nodes.visits[node]);
+            int best = first;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + nodes.childCount[node]; child++) {
+                int visits = nodes.visits[child];
+                if (visits == 0) {
+                    return child;
+                }
+                double score = nodes.value[child] / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parallel game tree search with the "lazy SMP" scheme.
+ * <p>
+ * The calling thread and the helper threads run independent {@link KalahAlphaBetaSearch} searches of
+ * the same position, which only communicate through the shared {@link KalahTranspositionTable}: the
+ * helpers start at other depths and order the moves differently, so they fill the table with the
+ * positions the main search needs next. The helpers are stopped as soon as the main search finishes
+ * and the result of the deepest completed iteration is returned. A helper which the executor has not started
+ * by then is cancelled, and a stopped helper is waited for a short time at most.
+ */
+public class KalahParallelSearch {
+
+    // Time a stopped helper has to return its result, it checks the stop flag every few nodes
+    private static final long HELPER_STOP_MILLIS = 100;
+
+    private final int threads;
+    private final int maxDepth;
+    private final KalahTranspositionTable table;
+    private final KalahTablebase tablebase;
+    private final ExecutorService executor;
+
+    /**
+     * Create a parallel search
+     *
+     * @param threads   number of the searching threads including the calling one
+     * @param maxDepth  maximum search depth in plies
+     * @param table     shared transposition table
+     * @param tablebase endgame tablebase, or null
+     * @param executor  executor of the helper searches, unused if there is only one thread
+     */
+    public KalahParallelSearch(int threads, int maxDepth, KalahTranspositionTable table, KalahTablebase tablebase,
+                               ExecutorService executor) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of the search threads should be positive");
+        }
+        if (table == null) {
+            throw new IllegalArgumentException("The parallel search needs a transposition table");
+        }
+        this.threads = threads;
+        this.maxDepth = maxDepth;
+        this.table = table;
+        this.tablebase = tablebase;
+        this.executor = executor;
+    }
+
+    /**
+     * Find the best move of the player to move
+     *
+     * @param root             position to search, the game should not be over
+     * @param timeBudgetMillis time limit of the search
+     * @return the best move found, the nodes are counted over all the threads
+     */
+    public KalahSearchResult search(KalahPosition root, long timeBudgetMillis) {
+        KalahAlphaBetaSearch mainSearch = new KalahAlphaBetaSearch(maxDepth, table, tablebase, 0);
+        if (threads == 1) {
+            return mainSearch.search(root, timeBudgetMillis);
+        }
+
+        List<KalahAlphaBetaSearch> helpers = new ArrayList<>(threads - 1);
+        List<KalahHelperTask<KalahSearchResult>> helperResults = new ArrayList<>(threads - 1);
+        for (int variant = 1; variant < threads; variant++) {
+            KalahAlphaBetaSearch helper = new KalahAlphaBetaSearch(maxDepth, table, tablebase, variant);
+            helpers.add(helper);
+            helperResults.add(new KalahHelperTask<>(executor, () -> helper.search(root, timeBudgetMillis)));
+        }
+
+        KalahSearchResult best;
+        try {
+            best = mainSearch.search(root, timeBudgetMillis);
+        } finally {
+            helpers.forEach(KalahAlphaBetaSearch::stop);
+        }
+
+        long nodes = best.getNodes();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HELPER_STOP_MILLIS);
+        for (KalahHelperTask<KalahSearchResult> helperResult : helperResults) {
+            KalahSearchResult result = helperResult.await(deadline);
+            if (result == null) {
+                continue;
+            }
+            nodes += result.getNodes();
+            if (result.getDepth() > best.getDepth()) {
+                best = result;
+            }
+        }
+        return new KalahSearchResult(best.getBestPit(), best.getScore(), best.getDepth(), nodes);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+/**
+ * Search algorithms of the {@link KalahComputerPlayer}, selectable with the {@code kalah.ai.algorithm} property
+ */
+public enum KalahSearchAlgorithm {
+
+    /**
+     * Alpha-beta search with iterative deepening, see {@link KalahParallelSearch}
+     */
+    ALPHA_BETA,
+
+    /**
+     * Monte Carlo tree search with the tree kept between the moves of a game, see {@link KalahMonteCarloSearch}
+     */
+    MCTS
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+/**
+ * The outcome of a game tree search
+ */
+public class KalahSearchResult {
+
+    private final int bestPit;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+
+    public KalahSearchResult(int bestPit, int score, int depth, long nodes) {
+        this.bestPit = bestPit;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the pit to move from
+     *
+     * @return pit number
+     */
+    public int getBestPit() {
+        return bestPit;
+    }
+
+    /**
+     * Get the expected difference between the Kalah stones of the player to move and of his opponent
+     *
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the depth of the last completed search iteration
+     *
+     * @return depth in plies
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the number of visited positions
+     *
+     * @return nodes count
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return "pit " + bestPit + ", score " + score + ", depth " + depth + ", nodes " + nodes;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.MoveResult;
+import com.pwr.kalah.model.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless self-play of many games on all the cores, for balancing and training.
+ * <p>
+ * The games are split into fixed chunks of a fork-join task tree. A chunk plays its games one after another
+ * on one reusable {@link KalahPosition} without going through the game service, and counts them in its own
+ * {@link KalahSelfPlayStats}, which are merged when the tasks are joined. Every chunk has its own random
+ * generator seeded from the game seed and the number of its first game, so the same seed gives the same
+ * statistics with any number of threads.
+ * <p>
+ * Usage: {@code java -cp kalah-0.0.1-SNAPSHOT.jar -Dloader.main=com.pwr.kalah.engine.KalahSelfPlay
+ * org.springframework.boot.loader.PropertiesLauncher <games> [first policy] [second policy] [pits] [stones]
+ * [threads] [seed]}, where a policy is {@code random}, {@code greedy} or {@code search:<depth>}
+ */
+public final class KalahSelfPlay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahSelfPlay.class);
+
+    // Games of one task, small enough to balance the threads, large enough to make the task overhead negligible
+    private static final int CHUNK_GAMES = 1_024;
+
+    private static final long SEARCH_TIME_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Chooses the moves of a player. A policy is called by many threads at once.
+     */
+    @FunctionalInterface
+    public interface Policy {
+
+        /**
+         * Choose a legal move of the player to move
+         *
+         * @param position position of the game, which is not over, must not be changed
+         * @param random   random generator of the calling task
+         * @return pit number
+         */
+        int chooseMove(KalahPosition position, SplittableRandom random);
+    }
+
+    /**
+     * Play a uniformly random legal move
+     */
+    public static final Policy RANDOM = KalahSelfPlay::chooseRandomMove;
+
+    /**
+     * Play the move which puts the most stones in the own Kalah, preferring an extra turn, a random one of the best
+     */
+    public static final Policy GREEDY = new Policy() {
+
+        private final ThreadLocal<KalahPosition> child = ThreadLocal.withInitial(KalahPosition::new);
+
+        @Override
+        public int chooseMove(KalahPosition position, SplittableRandom random) {
+            KalahPosition next = child.get();
+            Player player = position.getCurrentPlayer();
+            int firstPit = position.getGeometry().getFirstPit(player);
+            int bestPit = 0;
+            int bestGain = -1;
+            int ties = 0;
+            for (int pit = firstPit; pit < firstPit + position.getGeometry().getPitsPerPlayer(); pit++) {
+                if (!position.isLegalMove(pit)) {
+                    continue;
+                }
+                next.copyFrom(position);
+                MoveResult moveResult = next.play(pit);
+                // an extra turn is worth more than any number of stones
+                int gain = next.getKalahStones(player) - position.getKalahStones(player)
+                        + (moveResult == MoveResult.EXTRA_TURN ? KalahGeometry.MAX_PITS * KalahGeometry.MAX_STONES_PER_PIT : 0);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestPit = pit;
+                    ties = 1;
+                } else if (gain == bestGain && random.nextInt(++ties) == 0) {
+                    bestPit = pit;
+                }
+            }
+            return bestPit;
+        }
+    };
+
+    private KalahSelfPlay() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 7) {
+            throw new IllegalArgumentException("Usage: KalahSelfPlay <games> [first policy] [second policy] [pits] "
+                    + "[stones] [threads] [seed]");
+        }
+        long games = Long.parseLong(args[0]);
+        Policy first = args.length > 1 ? policy(args[1]) : RANDOM;
+        Policy second = args.length > 2 ? policy(args[2]) : first;
+        int pits = args.length > 3 ? Integer.parseInt(args[3]) : KalahGeometry.STANDARD.getPitsPerPlayer();
+        int stones = args.length > 4 ? Integer.parseInt(args[4]) : KalahGeometry.STANDARD.getStonesPerPit();
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : System.nanoTime();
+
+        long start = System.nanoTime();
+        KalahSelfPlayStats stats = play(games, KalahGeometry.of(pits, stones), first, second, threads, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LOGGER.info("{}", stats);
+        LOGGER.info(String.format(Locale.ROOT, "Played in %.2f s, %.0f games/s, seed %d", seconds,
+                stats.getGames() / seconds, seed));
+    }
+
+    /**
+     * Get a policy by its command line name
+     *
+     * @param name {@code random}, {@code greedy} or {@code search:<depth>}
+     * @return policy
+     */
+    public static Policy policy(String name) {
+        if ("random".equals(name)) {
+            return RANDOM;
+        }
+        if ("greedy".equals(name)) {
+            return GREEDY;
+        }
+        if (name.startsWith("search:")) {
+            return search(Integer.parseInt(name.substring("search:".length())));
+        }
+        throw new IllegalArgumentException("Unknown policy " + name + ", expected random, greedy or search:<depth>");
+    }
+
+    /**
+     * Play the best move found by the alpha-beta search of the given depth, every thread has its own search
+     *
+     * @param depth search depth in plies
+     * @return policy
+     */
+    public static Policy search(int depth) {
+        // checks the depth before the games are played
+        new KalahAlphaBetaSearch(depth);
+        ThreadLocal<KalahAlphaBetaSearch> searches = ThreadLocal.withInitial(() -> new KalahAlphaBetaSearch(depth));
+        return (position, random) -> searches.get().search(position, SEARCH_TIME_MILLIS).getBestPit();
+    }
+
+    /**
+     * Play games from the initial position, the first player always moves first
+     *
+     * @param games    number of games
+     * @param geometry board geometry
+     * @param first    policy of the first player
+     * @param second   policy of the second player
+     * @param threads  number of threads
+     * @param seed     seed of the random generators
+     * @return statistics of the games
+     */
+    public static KalahSelfPlayStats play(long games, KalahGeometry geometry, Policy first, Policy second, int threads,
+                                          long seed) {
+        if (games < 0 || threads < 1) {
+            throw new IllegalArgumentException("The number of games should not be negative and of threads positive");
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new SelfPlayTask(KalahPosition.initial(geometry), first, second, seed, 0, games));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play one game
+     *
+     * @param position reusable position, reset to the initial one
+     * @param initial  initial position
+     * @param first    policy of the first player
+     * @param second   policy of the second player
+     * @param random   random generator
+     * @param stats    statistics the game is counted in
+     */
+    static void playGame(KalahPosition position, KalahPosition initial, Policy first, Policy second,
+                         SplittableRandom random, KalahSelfPlayStats stats) {
+        position.copyFrom(initial);
+        while (!position.isGameOver()) {
+            Policy policy = position.getCurrentPlayer() == Player.FIRST ? first : second;
+            int pit = policy.chooseMove(position, random);
+            if (!position.isLegalMove(pit)) {
+                throw new IllegalStateException("The policy chose the illegal move " + pit + " in " + position);
+            }
+            stats.addMove(position.play(pit));
+        }
+        int difference = position.getKalahStones(Player.FIRST) - position.getKalahStones(Player.SECOND);
+        stats.addGame(difference > 0 ? Player.FIRST : difference < 0 ? Player.SECOND : null);
+    }
+
+    private static int chooseRandomMove(KalahPosition position, SplittableRandom random) {
+        int firstPit = position.getGeometry().getFirstPit(position.getCurrentPlayer());
+        int pitsPerPlayer = position.getGeometry().getPitsPerPlayer();
+        int legalMoves = 0;
+        for (int pit = firstPit; pit < firstPit + pitsPerPlayer; pit++) {
+            if (position.isLegalMove(pit)) {
+                legalMoves++;
+            }
+        }
+        int move = random.nextInt(legalMoves);
+        for (int pit = firstPit; ; pit++) {
+            if (position.isLegalMove(pit) && move-- == 0) {
+                return pit;
+            }
+        }
+    }
+
+    /**
+     * Plays the games of a range, split in halves down to one chunk
+     */
+    private static final class SelfPlayTask extends RecursiveTask<KalahSelfPlayStats> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient KalahPosition initial;
+        private final transient Policy first;
+        private final transient Policy second;
+        private final long seed;
+        private final long from;
+        private final long to;
+
+        SelfPlayTask(KalahPosition initial, Policy first, Policy second, long seed, long from, long to) {
+            this.initial = initial;
+            this.first = first;
+            this.second = second;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected KalahSelfPlayStats compute() {
+            if (to - from > CHUNK_GAMES) {
+                // split at a chunk boundary, so the chunks and their seeds do not depend on the threads
+                long middle = from + Math.max(1, (to - from) / CHUNK_GAMES / 2) * CHUNK_GAMES;
+                SelfPlayTask right = new SelfPlayTask(initial, first, second, seed, middle, to);
+                right.fork();
+                KalahSelfPlayStats stats = new SelfPlayTask(initial, first, second, seed, from, middle).compute();
+                return stats.merge(right.join());
+            }
+            SplittableRandom random = new SplittableRandom(seed ^ from * 0x9E3779B97F4A7C15L);
+            KalahPosition position = new KalahPosition(initial.getGeometry());
+            KalahSelfPlayStats stats = new KalahSelfPlayStats();
+            for (long game = from; game < to; game++) {
+                playGame(position, initial, first, second, random, stats);
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.MoveResult;
+import com.pwr.kalah.model.Player;
+
+import java.util.Locale;
+
+/**
+ * Aggregate statistics of the games played by {@link KalahSelfPlay}.
+ * <p>
+ * The counters are not thread-safe: every task counts its own games and the results are merged when the tasks
+ * are joined.
+ */
+public final class KalahSelfPlayStats {
+
+    private long games;
+    private long firstMoverWins;
+    private long secondMoverWins;
+    private long moves;
+    private long captures;
+    private long extraTurns;
+
+    /**
+     * Count a move
+     *
+     * @param moveResult the outcome of the move
+     */
+    void addMove(MoveResult moveResult) {
+        moves++;
+        if (moveResult == MoveResult.CAPTURE) {
+            captures++;
+        } else if (moveResult == MoveResult.EXTRA_TURN) {
+            extraTurns++;
+        }
+    }
+
+    /**
+     * Count a finished game
+     *
+     * @param winner the winner, or null for a draw
+     */
+    void addGame(Player winner) {
+        games++;
+        if (winner == Player.FIRST) {
+            firstMoverWins++;
+        } else if (winner == Player.SECOND) {
+            secondMoverWins++;
+        }
+    }
+
+    /**
+     * Add the games counted by another task
+     *
+     * @param other statistics of the other games
+     * @return these statistics
+     */
+    KalahSelfPlayStats merge(KalahSelfPlayStats other) {
+        games += other.games;
+        firstMoverWins += other.firstMoverWins;
+        secondMoverWins += other.secondMoverWins;
+        moves += other.moves;
+        captures += other.captures;
+        extraTurns += other.extraTurns;
+        return this;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getFirstMoverWins() {
+        return firstMoverWins;
+    }
+
+    public long getSecondMoverWins() {
+        return secondMoverWins;
+    }
+
+    public long getDraws() {
+        return games - firstMoverWins - secondMoverWins;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    public long getCaptures() {
+        return captures;
+    }
+
+    public long getExtraTurns() {
+        return extraTurns;
+    }
+
+    public double getFirstMoverWinRate() {
+        return games == 0 ? 0 : (double) firstMoverWins / games;
+    }
+
+    /**
+     * Get the average number of moves of a game, an extra turn is a move of its own
+     *
+     * @return average game length
+     */
+    public double getAverageGameLength() {
+        return games == 0 ? 0 : (double) moves / games;
+    }
+
+    /**
+     * Get the share of the moves which captured stones
+     *
+     * @return capture frequency
+     */
+    public double getCaptureFrequency() {
+        return moves == 0 ? 0 : (double) captures / moves;
+    }
+
+    public String toString() {
+        return String.format(Locale.ROOT, "games: %d, first mover wins: %d (%.2f%%), second mover wins: %d, draws: %d, "
+                        + "average game length: %.2f moves, captures: %.2f%% of moves, extra turns: %.2f%% of moves",
+                games, firstMoverWins, getFirstMoverWinRate() * 100, secondMoverWins, getDraws(),
+                getAverageGameLength(), getCaptureFrequency() * 100, moves == 0 ? 0 : extraTurns * 100.0 / moves);
+    }
+}
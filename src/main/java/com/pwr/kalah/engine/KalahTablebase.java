@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase: exact values of all the positions of the boards with 6 pits per player with at most
+ * {@link #getMaxStones()} stones outside the Kalahs, generated by {@link KalahTablebaseGenerator} and memory-mapped from a file,
+ * so a lookup does not use the heap.
+ * <p>
+ * The stones already put in the Kalahs do not change the rest of the game, so a position is keyed by its
+ * pits and the player to move only. The pits are read from the side of the player to move, which makes the
+ * positions of both players share the entries. The value of a position is the number of the stones the
+ * player to move will put in his Kalah more than his opponent until the end of the game, with the best play
+ * of both players. It is kept in one byte at the rank of the pits among all the ways to put the same number
+ * of stones in 12 pits, after the entries of the positions with fewer stones.
+ * <p>
+ * File layout: the magic number, the maximum number of stones and the values, in the big-endian order.
+ */
+public class KalahTablebase {
+
+    // Larger tablebases do not fit the 2 GB limit of a mapped buffer
+    public static final int MAX_SUPPORTED_STONES = 24;
+
+    static final int MAGIC = 0x4b544231;
+    static final int HEADER_SIZE = 8;
+
+    // The tablebase is built for the boards with 6 pits per player, the number of stones at the start does not matter
+    private static final int PITS_PER_PLAYER = KalahGeometry.STANDARD.getPitsPerPlayer();
+    private static final int PITS = PITS_PER_PLAYER * 2;
+
+    // COMPOSITIONS[parts][stones] is the number of ways to put the stones in the given number of pits
+    private static final int[][] COMPOSITIONS = new int[PITS + 1][MAX_SUPPORTED_STONES + 1];
+
+    // LOWER_RANKS[parts][stones][count] is the number of the ways with fewer than count stones in the first pit
+    private static final int[][][] LOWER_RANKS = new int[PITS + 1][MAX_SUPPORTED_STONES + 1][MAX_SUPPORTED_STONES + 2];
+
+    // LEVEL_OFFSETS[stones] is the index of the first position with the given number of stones
+    private static final int[] LEVEL_OFFSETS = new int[MAX_SUPPORTED_STONES + 2];
+
+    static {
+        COMPOSITIONS[0][0] = 1;
+        for (int parts = 1; parts <= PITS; parts++) {
+            for (int stones = 0; stones <= MAX_SUPPORTED_STONES; stones++) {
+                COMPOSITIONS[parts][stones] = COMPOSITIONS[parts - 1][stones] + (stones > 0 ? COMPOSITIONS[parts][stones - 1] : 0);
+                for (int count = 1; count <= stones + 1; count++) {
+                    LOWER_RANKS[parts][stones][count] = LOWER_RANKS[parts][stones][count - 1]
+                            + COMPOSITIONS[parts - 1][stones - count + 1];
+                }
+            }
+        }
+        for (int stones = 0; stones <= MAX_SUPPORTED_STONES; stones++) {
+            LEVEL_OFFSETS[stones + 1] = LEVEL_OFFSETS[stones] + COMPOSITIONS[PITS][stones];
+        }
+    }
+
+    private final ByteBuffer values;
+    private final int maxStones;
+
+    KalahTablebase(ByteBuffer values, int maxStones) {
+        this.values = values;
+        this.maxStones = maxStones;
+    }
+
+    /**
+     * Map a tablebase file into the memory
+     *
+     * @param path tablebase file
+     * @return tablebase
+     * @throws IOException if the file can not be read or it is not a tablebase
+     */
+    public static KalahTablebase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a Kalah tablebase: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int maxStones = buffer.getInt(Integer.BYTES);
+            if (buffer.getInt(0) != MAGIC || maxStones < 0 || maxStones > MAX_SUPPORTED_STONES
+                    || channel.size() != HEADER_SIZE + (long) size(maxStones)) {
+                throw new IOException("Not a Kalah tablebase: " + path);
+            }
+            return new KalahTablebase(buffer, maxStones);
+        }
+    }
+
+    /**
+     * Get the number of the positions with at most the given number of stones outside the Kalahs
+     *
+     * @param maxStones maximum number of stones
+     * @return number of positions
+     */
+    public static int size(int maxStones) {
+        return LEVEL_OFFSETS[maxStones + 1];
+    }
+
+    public int getMaxStones() {
+        return maxStones;
+    }
+
+    /**
+     * Checks if the tablebase has the value of the given position
+     *
+     * @param position position
+     * @return result of checking
+     */
+    public boolean contains(KalahPosition position) {
+        return position.getGeometry().getPitsPerPlayer() == PITS_PER_PLAYER
+                && position.countPitStones(Player.FIRST) + position.countPitStones(Player.SECOND) <= maxStones;
+    }
+
+    /**
+     * Get the number of the stones the player to move will put in his Kalah more than his opponent
+     * until the end of the game
+     *
+     * @param position position, which the tablebase contains
+     * @return value of the position
+     */
+    public int getValue(KalahPosition position) {
+        return values.get(HEADER_SIZE + index(position));
+    }
+
+    /**
+     * Get the Kalah stones difference of the player to move at the end of the game
+     *
+     * @param position position, which the tablebase contains
+     * @return exact score of the position
+     */
+    public int getScore(KalahPosition position) {
+        return KalahAlphaBetaSearch.evaluate(position) + getValue(position);
+    }
+
+    /**
+     * Get the index of the position: the pits of the player to move come first, followed by the pits
+     * of his opponent
+     */
+    static int index(KalahPosition position) {
+        Player player = position.getCurrentPlayer();
+        KalahGeometry geometry = position.getGeometry();
+        int ownFirstPit = geometry.getFirstPit(player);
+        int opponentFirstPit = geometry.getFirstPit(player == Player.FIRST ? Player.SECOND : Player.FIRST);
+        int stones = position.countPitStones(Player.FIRST) + position.countPitStones(Player.SECOND);
+
+        int index = LEVEL_OFFSETS[stones];
+        int parts = PITS;
+        for (int i = 0; i < PITS - 1; i++) {
+            int pit = i < PITS_PER_PLAYER ? ownFirstPit + i : opponentFirstPit + i - PITS_PER_PLAYER;
+            int count = position.getPitStones(pit);
+            index += LOWER_RANKS[parts][stones][count];
+            stones -= count;
+            parts--;
+        }
+        return index;
+    }
+
+    /**
+     * Put the stones of the position with the given index in the pits of the position, the player to move
+     * is the first one and the Kalahs are empty. The position should have 6 pits per player.
+     */
+    static void fillPosition(int index, KalahPosition position) {
+        int stones = 0;
+        while (LEVEL_OFFSETS[stones + 1] <= index) {
+            stones++;
+        }
+        int rank = index - LEVEL_OFFSETS[stones];
+        position.setCurrentPlayer(Player.FIRST);
+        KalahGeometry geometry = position.getGeometry();
+        position.setPitStones(geometry.getKalahPit(Player.FIRST), 0);
+        position.setPitStones(geometry.getKalahPit(Player.SECOND), 0);
+        int parts = PITS;
+        for (int i = 0; i < PITS; i++) {
+            int pit = i < PITS_PER_PLAYER ? 1 + i : geometry.getFirstPit(Player.SECOND) + i - PITS_PER_PLAYER;
+            int count = stones;
+            if (parts > 1) {
+                count = 0;
+                while (LOWER_RANKS[parts][stones][count + 1] <= rank) {
+                    count++;
+                }
+                rank -= LOWER_RANKS[parts][stones][count];
+            }
+            position.setPitStones(pit, count);
+            stones -= count;
+            parts--;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline generator of {@link KalahTablebase} files.
+ * <p>
+ * The positions are solved in the order of the number of stones outside the Kalahs: a move which puts
+ * a stone in a Kalah or captures leads to a position with fewer stones, which is already solved. Any other
+ * move only moves the stones to the right on the side of the player, so the positions with the same number
+ * of stones never repeat and are solved recursively.
+ * <p>
+ * Usage: {@code java -cp kalah-0.0.1-SNAPSHOT.jar -Dloader.main=com.pwr.kalah.engine.KalahTablebaseGenerator
+ * org.springframework.boot.loader.PropertiesLauncher <file> [max stones]}
+ */
+public class KalahTablebaseGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahTablebaseGenerator.class);
+
+    private static final int DEFAULT_MAX_STONES = 16;
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    private final byte[] values;
+    private final List<KalahPosition> positions = new ArrayList<>();
+
+    private KalahTablebaseGenerator(int maxStones) {
+        values = new byte[KalahTablebase.size(maxStones)];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("Usage: KalahTablebaseGenerator <file> [max stones]");
+        }
+        int maxStones = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_STONES;
+        generate(Paths.get(args[0]), maxStones);
+    }
+
+    /**
+     * Solve all the positions with at most the given number of stones outside the Kalahs and write them
+     * to a tablebase file
+     *
+     * @param path      tablebase file
+     * @param maxStones maximum number of stones
+     * @throws IOException if the file can not be written
+     */
+    public static void generate(Path path, int maxStones) throws IOException {
+        if (maxStones < 0 || maxStones > KalahTablebase.MAX_SUPPORTED_STONES) {
+            throw new IllegalArgumentException("Tablebase stones should be from 0 to " + KalahTablebase.MAX_SUPPORTED_STONES);
+        }
+        long start = System.currentTimeMillis();
+        KalahTablebaseGenerator generator = new KalahTablebaseGenerator(maxStones);
+        generator.solveAll();
+
+        ByteBuffer header = ByteBuffer.allocate(KalahTablebase.HEADER_SIZE);
+        header.putInt(KalahTablebase.MAGIC).putInt(maxStones).flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(generator.values));
+        }
+        LOGGER.info("Tablebase of {} positions with up to {} stones written to {} in {} ms",
+                generator.values.length, maxStones, path, System.currentTimeMillis() - start);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void solveAll() {
+        Arrays.fill(values, UNKNOWN);
+        KalahPosition position = getPosition(0);
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] == UNKNOWN) {
+                KalahTablebase.fillPosition(index, position);
+                solve(0);
+            }
+        }
+    }
+
+    /**
+     * Solve the position of the given recursion depth
+     *
+     * @return value of the position
+     */
+    private int solve(int depth) {
+        KalahPosition position = positions.get(depth);
+        int index = KalahTablebase.index(position);
+        if (values[index] != UNKNOWN) {
+            return values[index];
+        }
+
+        Player player = position.getCurrentPlayer();
+        Player opponent = player == Player.FIRST ? Player.SECOND : Player.FIRST;
+        int value;
+        if (position.isGameOver()) {
+            // the opponent puts the stones left in his pits in his Kalah
+            value = -position.countPitStones(opponent);
+        } else {
+            value = -KalahAlphaBetaSearch.INFINITY;
+            int score = KalahAlphaBetaSearch.evaluate(position);
+            KalahPosition child = getPosition(depth + 1);
+            int firstPit = position.getGeometry().getFirstPit(player);
+            for (int pit = firstPit; pit < firstPit + position.getGeometry().getPitsPerPlayer(); pit++) {
+                if (!position.isLegalMove(pit)) {
+                    continue;
+                }
+                child.copyFrom(position);
+                child.play(pit);
+                int childScore = KalahAlphaBetaSearch.evaluate(child);
+                int childValue = solve(depth + 1);
+                // the child scores are of its player to move, the Kalahs gained by the move are counted here
+                int moveValue = child.getCurrentPlayer() == player
+                        ? childScore - score + childValue
+                        : -childScore - score - childValue;
+                value = Math.max(value, moveValue);
+            }
+        }
+        values[index] = (byte) value;
+        return value;
+    }
+
+    private KalahPosition getPosition(int depth) {
+        while (positions.size() <= depth) {
+            positions.add(new KalahPosition());
+        }
+        return positions.get(depth);
+    }
+}
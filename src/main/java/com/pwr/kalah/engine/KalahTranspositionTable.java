@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size transposition table of searched positions, keyed by the {@link KalahZobrist} hash.
+ * <p>
+ * The entries are kept in a primitive array as two longs: the key XOR the data, and the data, which packs
+ * the score, the bound type, the remaining search depth, the best move and the search generation.
+ * The table is shared by the search threads without locks: an entry which was torn by concurrent
+ * writes does not pass the XOR check and is read as a miss.
+ * <p>
+ * The replacement is depth-preferred: an entry of another position is only replaced when the new search
+ * is at least as deep, or when the entry was stored by an older search.
+ */
+public class KalahTranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // Depth of an entry which was searched to the end of the game
+    public static final int SOLVED_DEPTH = 0xFF;
+
+    private static final long VALID = 1L << 48;
+
+    private final long[] entries;
+    private final int mask;
+    private volatile int generation;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Create the table
+     *
+     * @param size number of entries, rounded up to a power of two
+     */
+    public KalahTranspositionTable(int size) {
+        if (size < 1 || size > 1 << 29) {
+            throw new IllegalArgumentException("Transposition table size should be from 1 to " + (1 << 29));
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new long[capacity * 2];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Start a new search, so the entries of the previous ones are replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public void clear() {
+        Arrays.fill(entries, 0L);
+    }
+
+    /**
+     * Find the entry of a position
+     *
+     * @param hash position hash
+     * @return entry data, or 0 if the position is not in the table
+     */
+    public long probe(long hash) {
+        probes.increment();
+        int index = index(hash);
+        long data = entries[index + 1];
+        if (data != 0 && (entries[index] ^ data) == hash) {
+            hits.increment();
+            return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Store the search result of a position
+     *
+     * @param hash    position hash
+     * @param depth   remaining search depth, or {@link #SOLVED_DEPTH}
+     * @param bound   {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     * @param score   position score
+     * @param bestPit best move, or 0
+     */
+    public void store(long hash, int depth, int bound, int score, int bestPit) {
+        int index = index(hash);
+        long existing = entries[index + 1];
+        int currentGeneration = generation;
+        if (existing != 0 && (entries[index] ^ existing) != hash
+                && getDepth(existing) > depth && getGeneration(existing) == currentGeneration) {
+            // keep the deeper entry of the current search
+            return;
+        }
+        long data = VALID
+                | (long) currentGeneration << 40
+                | (long) (bestPit & 0xFF) << 32
+                | (long) (bound & 0xFF) << 24
+                | (long) (depth & 0xFF) << 16
+                | (score & 0xFFFF);
+        entries[index] = hash ^ data;
+        entries[index + 1] = data;
+        stores.increment();
+    }
+
+    public static int getScore(long data) {
+        return (short) data;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> 24) & 0xFF;
+    }
+
+    public static int getBestPit(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> 40) & 0xFF;
+    }
+
+    public int getSize() {
+        return entries.length / 2;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Get the share of the probes which found their position
+     *
+     * @return hit rate from 0 to 1
+     */
+    public double getHitRate() {
+        long probesCount = probes.sum();
+        return probesCount == 0 ? 0 : (double) hits.sum() / probesCount;
+    }
+
+    private int index(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & mask) * 2;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of {@link KalahPosition}: the hash is the XOR of a random key for the number of stones
+ * of every pit, of the key of the player to move and of the key of the number of pits of the board, so the
+ * positions of different geometries do not collide.
+ */
+public final class KalahZobrist {
+
+    // The number of stones in a game of 6-stone Kalah
+    private static final int MAX_STONES = KalahGeometry.STANDARD.getPitsPerPlayer() * 2 * KalahGeometry.STANDARD.getStonesPerPit();
+
+    private static final long[][] PIT_KEYS = new long[KalahGeometry.MAX_PITS + 1][MAX_STONES + 1];
+    private static final long[] GEOMETRY_KEYS = new long[KalahGeometry.MAX_PITS_PER_PLAYER + 1];
+    private static final long SECOND_PLAYER_KEY;
+
+    static {
+        // a fixed seed gives the same hashes in every run, so a search can be reproduced
+        SplittableRandom random = new SplittableRandom(0x6b616c6168L);
+        for (long[] pitKeys : PIT_KEYS) {
+            for (int stones = 1; stones < pitKeys.length; stones++) {
+                pitKeys[stones] = random.nextLong();
+            }
+        }
+        SECOND_PLAYER_KEY = random.nextLong();
+        for (int pitsPerPlayer = 1; pitsPerPlayer < GEOMETRY_KEYS.length; pitsPerPlayer++) {
+            GEOMETRY_KEYS[pitsPerPlayer] = random.nextLong();
+        }
+    }
+
+    private KalahZobrist() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Compute the hash of a position
+     *
+     * @param position position
+     * @return 64-bit hash
+     */
+    public static long hash(KalahPosition position) {
+        KalahGeometry geometry = position.getGeometry();
+        long hash = GEOMETRY_KEYS[geometry.getPitsPerPlayer()];
+        if (position.getCurrentPlayer() == Player.SECOND) {
+            hash ^= SECOND_PLAYER_KEY;
+        }
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            int stones = position.getPitStones(pit);
+            hash ^= stones <= MAX_STONES ? PIT_KEYS[pit][stones] : mix(pit * 0x9E3779B97F4A7C15L + stones);
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 finalizer, only used for the boards with more stones than a regular game
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -17,6 +17,8 @@
 package com.pwr.kalah.exception;
 
 import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.service.KalahMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -29,11 +31,19 @@ import javax.validation.ConstraintViolationException;
 import java.util.HashMap;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class KalahExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private final KalahMetrics metrics;
+
+    public KalahExceptionHandler(KalahMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @ExceptionHandler({MethodArgumentTypeMismatchException.class, ConstraintViolationException.class})
     @ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = KalahErrorMessages.NON_NUMERIC_VALUE)
     public ResponseEntity<HashMap<String, String>>  handleKalahGameExceptions(Exception e) {
+        metrics.countError(KalahMetrics.ErrorType.NON_NUMERIC_VALUE);
         HashMap<String, String> response = new HashMap<>();
         response.put("message", e.getMessage());
         response.put("error", e.getClass().getSimpleName());
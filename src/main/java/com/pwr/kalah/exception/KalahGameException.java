@@ -22,11 +22,13 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 /**
  * This class gives us the possibility to throw customized error "Bad Request" (status code 400) exception
  * instead of the default error "Internal Server Error" (status code 500) exception.
+ * <p>
+ * The exception is caused by the client input only, so it does not capture the stack trace.
  */
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class KalahGameException extends RuntimeException {
 
     public KalahGameException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
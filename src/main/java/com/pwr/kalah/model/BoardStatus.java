@@ -16,7 +16,7 @@
 
 package com.pwr.kalah.model;
 
-enum BoardStatus {
+public enum BoardStatus {
     INITIAL,
     STARTED,
     FINISHED
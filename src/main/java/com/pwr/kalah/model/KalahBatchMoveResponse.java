@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch of moves made in one game: the result of every move in the batch order and the game
+ * state after the last move, or the error message if the batch was not applied
+ */
+@JsonPropertyOrder({"id", "uri", "results", "status", "message"})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class KalahBatchMoveResponse {
+
+    private final Long gameId;
+    private final String gameUri;
+    private final List<MoveResult> results;
+    private final Map<Integer, Integer> status;
+    private final String message;
+
+    private KalahBatchMoveResponse(Long gameId, String gameUri, List<MoveResult> results,
+                                   Map<Integer, Integer> status, String message) {
+        this.gameId = gameId;
+        this.gameUri = gameUri;
+        this.results = results;
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * Batch applied to the game
+     *
+     * @param response game state after the last move
+     * @param results  move results in the batch order
+     * @return batch response
+     */
+    public static KalahBatchMoveResponse of(KalahGameResponse response, List<MoveResult> results) {
+        return new KalahBatchMoveResponse(response.getId(), response.getUri(), results, response.getStatus(), null);
+    }
+
+    /**
+     * Batch not applied to the game
+     *
+     * @param gameId  game ID
+     * @param message error message
+     * @return batch response
+     */
+    public static KalahBatchMoveResponse error(Long gameId, String message) {
+        return new KalahBatchMoveResponse(gameId, null, null, null, message);
+    }
+
+    @JsonProperty("id")
+    public Long getGameId() {
+        return gameId;
+    }
+
+    @JsonProperty("uri")
+    public String getGameUri() {
+        return gameUri;
+    }
+
+    @JsonProperty("results")
+    public List<MoveResult> getResults() {
+        return results;
+    }
+
+    @JsonProperty("status")
+    public Map<Integer, Integer> getStatus() {
+        return status;
+    }
+
+    @JsonProperty("message")
+    public String getMessage() {
+        return message;
+    }
+}
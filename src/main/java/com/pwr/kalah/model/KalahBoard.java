@@ -16,10 +16,15 @@
 
 package com.pwr.kalah.model;
 
-import java.util.HashMap;
-
 public interface KalahBoard {
 
+    /**
+     * Get the geometry of the board
+     *
+     * @return board geometry
+     */
+    KalahGeometry getGeometry();
+
     /**
      * Fill playing board with a sample values (used in unit tests only)
      *
@@ -73,14 +78,29 @@ public interface KalahBoard {
      * Make next move starting from the given pit number
      *
      * @param pit pit number
+     * @return the outcome of the move
+     */
+    MoveResult makeNextMove(int pit);
+
+    /**
+     * Get the board status
+     *
+     * @return board status
+     */
+    BoardStatus getBoardStatus();
+
+    /**
+     * Set the board status
+     *
+     * @param boardStatus board status to be set
      */
-    void makeNextMove(int pit);
+    void setBoardStatus(BoardStatus boardStatus);
 
     /**
-     * Returns HashMap of the board
-     * @return game board hashmap
+     * Returns immutable snapshot of the board
+     * @return game board snapshot
      */
-    HashMap<Integer, Integer> getStatus();
+    KalahBoardSnapshot getStatus();
 
     /**
      * Change the current player to the opposite
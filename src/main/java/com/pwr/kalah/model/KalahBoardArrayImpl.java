@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.pwr.kalah.exception.KalahGameException;
+
+import static com.pwr.kalah.model.KalahErrorMessages.*;
+
+/**
+ * A game of Kalah board backed by a flat primitive array.
+ * <p>
+ * Follows exactly the same rules as {@link KalahBoardSixStonesImpl}, but a move does not allocate:
+ * the stones are sown by {@link KalahPosition} directly into its array instead of boxing every pit value
+ * into a map.
+ */
+public class KalahBoardArrayImpl extends KalahBoardSixStones {
+
+    private final KalahPosition position;
+
+    // Pit numbers are 1-based, so the element 0 is never used
+    private final int[] board;
+
+    private BoardStatus boardStatus = BoardStatus.INITIAL;
+
+    public KalahBoardArrayImpl() {
+        this(KalahGeometry.STANDARD);
+    }
+
+    public KalahBoardArrayImpl(KalahGeometry geometry) {
+        super(geometry);
+        position = new KalahPosition(geometry);
+        // the position is never copied from a position of another geometry, so it keeps this array
+        board = position.pits;
+    }
+
+    public MoveResult makeNextMove(int pit) {
+        if (boardStatus == BoardStatus.FINISHED) {
+            return MoveResult.GAME_OVER;
+        }
+        if (pit < 1 || pit > board.length - 1) {
+            return MoveResult.INVALID;
+        }
+
+        // Get the first player based on the first move pit
+        defineCurrentPlayer(pit);
+
+        // The player who begins picks up all the stones in any of their own pits
+        if (!position.isLegalMove(pit)) {
+            return MoveResult.INVALID;
+        }
+
+        // The game is over as soon as one of the sides run out of stones.
+        MoveResult moveResult = position.play(pit);
+        if (moveResult == MoveResult.GAME_OVER) {
+            boardStatus = BoardStatus.FINISHED;
+        }
+        return moveResult;
+    }
+
+    private void defineCurrentPlayer(int pit) {
+        if (boardStatus == BoardStatus.INITIAL) {
+            if (pit > geometry.getKalahPit(Player.FIRST)) {
+                position.setCurrentPlayer(Player.SECOND);
+            }
+            boardStatus = BoardStatus.STARTED;
+        }
+    }
+
+    /**
+     * Get the position of the game, the position is changed by the moves made on the board
+     *
+     * @return game position
+     */
+    public KalahPosition getPosition() {
+        return position;
+    }
+
+    public int countPlayerStones(Player player, boolean countKalah) {
+        return position.countPitStones(player) + (countKalah ? position.getKalahStones(player) : 0);
+    }
+
+    public void fillGameFieldWithSample(int... sampleBoard) {
+        boardStatus = BoardStatus.INITIAL;
+        if (sampleBoard.length < 1 || sampleBoard.length > board.length - 1) {
+            throw new IllegalArgumentException(INPUT_ARRAY_LENGTH_SIZE_IS_INVALID);
+        }
+        System.arraycopy(sampleBoard, 0, board, 1, sampleBoard.length);
+    }
+
+    public Player getCurrentPlayer() {
+        return position.getCurrentPlayer();
+    }
+
+    public Player setCurrentPlayer(Player currentPlayer) {
+        position.setCurrentPlayer(currentPlayer);
+        return currentPlayer;
+    }
+
+    public BoardStatus getBoardStatus() {
+        return boardStatus;
+    }
+
+    public void setBoardStatus(BoardStatus boardStatus) {
+        this.boardStatus = boardStatus;
+    }
+
+    public int getPitStones(int pit) {
+        validatePitNumber(pit);
+        return board[pit];
+    }
+
+    public void setPitStones(int pit, int stones) {
+        validatePitNumber(pit);
+        if (stones < 0) {
+            throw new KalahGameException(YOU_CAN_NOT_PUT_LESS_THAN_0_STONES_IN_A_PIT);
+        }
+        board[pit] = stones;
+    }
+
+    public KalahBoardSnapshot getStatus() {
+        return new KalahBoardSnapshot(board.clone());
+    }
+
+    public String toString() {
+        return position.toString();
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Change of a game board made by one move: the pits which changed with their new number of stones,
+ * the player to move next and the board status
+ */
+@JsonPropertyOrder({"id", "pits", "player", "status"})
+public final class KalahBoardDelta {
+
+    private final Long gameId;
+    private final Map<Integer, Integer> pits;
+    private final Player currentPlayer;
+    private final BoardStatus boardStatus;
+
+    private KalahBoardDelta(Long gameId, Map<Integer, Integer> pits, Player currentPlayer, BoardStatus boardStatus) {
+        this.gameId = gameId;
+        this.pits = pits;
+        this.currentPlayer = currentPlayer;
+        this.boardStatus = boardStatus;
+    }
+
+    /**
+     * Compare the board with its snapshot taken before the move
+     *
+     * @param gameId game ID
+     * @param before board snapshot before the move
+     * @param board  board after the move
+     * @return board delta
+     */
+    public static KalahBoardDelta of(Long gameId, KalahBoardSnapshot before, KalahBoard board) {
+        Map<Integer, Integer> pits = new LinkedHashMap<>();
+        for (int pit = 1; pit <= before.getPitsCount(); pit++) {
+            int stones = board.getPitStones(pit);
+            if (stones != before.getPitStones(pit)) {
+                pits.put(pit, stones);
+            }
+        }
+        return new KalahBoardDelta(gameId, Collections.unmodifiableMap(pits), board.getCurrentPlayer(),
+                board.getBoardStatus());
+    }
+
+    @JsonProperty("id")
+    public Long getGameId() {
+        return gameId;
+    }
+
+    @JsonProperty("pits")
+    public Map<Integer, Integer> getPits() {
+        return pits;
+    }
+
+    @JsonProperty("player")
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    @JsonProperty("status")
+    public BoardStatus getBoardStatus() {
+        return boardStatus;
+    }
+}
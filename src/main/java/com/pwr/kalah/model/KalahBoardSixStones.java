@@ -19,28 +19,44 @@ package com.pwr.kalah.model;
 import com.pwr.kalah.exception.KalahGameException;
 
 /**
- * A game of 6-stone Kalah abstract class
+ * A game of Kalah abstract class, the standard 6-stone Kalah unless another {@link KalahGeometry} is given
  */
 abstract class KalahBoardSixStones implements KalahBoard {
 
-    static final int MAX_STONES = 6;                 // The maximum stones in a pit number (pre-defined for a game of 6-stone Kalah)
-    static final int MAX_PITS = MAX_STONES * 2 + 2;  // The sum of all pits on the game field pits (including each player's pits and the two kalah pits)
-    static final String INVALID_PIT_NUMBER = "Invalid pit number. Valid numbers are from 1 to " + MAX_PITS;
+    static final String INVALID_PIT_NUMBER = invalidPitNumberMessage(KalahGeometry.STANDARD);
+
+    protected final KalahGeometry geometry;
+
+    KalahBoardSixStones(KalahGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    public KalahGeometry getGeometry() {
+        return geometry;
+    }
 
     public void initGameField() {
-        // At the start of the game, six stones are put in each pit
-        for (int i = 1; i <= MAX_PITS; i++) {
-            setPitStones(i, MAX_STONES);
+        // At the start of the game, the same number of stones (six in the standard game) are put in each pit
+        for (int i = 1; i <= geometry.getPits(); i++) {
+            setPitStones(i, geometry.getStonesPerPit());
         }
 
         // Empty two Kalah pits
-        setPitStones(MAX_PITS / 2, 0);
-        setPitStones(MAX_PITS, 0);
+        setPitStones(geometry.getKalahPit(Player.FIRST), 0);
+        setPitStones(geometry.getKalahPit(Player.SECOND), 0);
 
         // The first player makes the first move
         setCurrentPlayer(Player.FIRST);
+        setBoardStatus(BoardStatus.INITIAL);
     }
 
+    /**
+     * Set the board status
+     *
+     * @param boardStatus board status
+     */
+    public abstract void setBoardStatus(BoardStatus boardStatus);
+
     public void addPitStones(int pit, int stones) {
         setPitStones(pit, getPitStones(pit) + stones);
     }
@@ -51,11 +67,15 @@ abstract class KalahBoardSixStones implements KalahBoard {
      * @param pit pit number
      */
     public void validatePitNumber(int pit) {
-        if (pit < 1 || pit > MAX_PITS) {
-            throw new KalahGameException(INVALID_PIT_NUMBER);
+        if (pit < 1 || pit > geometry.getPits()) {
+            throw new KalahGameException(geometry == KalahGeometry.STANDARD ? INVALID_PIT_NUMBER : invalidPitNumberMessage(geometry));
         }
     }
 
+    private static String invalidPitNumberMessage(KalahGeometry geometry) {
+        return "Invalid pit number. Valid numbers are from 1 to " + geometry.getPits();
+    }
+
     /**
      * Get opposite player
      *
@@ -72,13 +92,13 @@ abstract class KalahBoardSixStones implements KalahBoard {
      * @return kalah pit number
      */
     public int getPlayersKalahPit(Player player) {
-        return player == Player.FIRST ? MAX_PITS / 2 : MAX_PITS;
+        return geometry.getKalahPit(player);
     }
 
     public int countPlayerStones(Player player, boolean countKalah) {
         int stonesCount = 0;
-        int firstPit = player == Player.FIRST ? 1 : MAX_STONES + 2;
-        for (int i = firstPit; i < firstPit + MAX_STONES + (countKalah ? 1 : 0); i++) {
+        int firstPit = geometry.getFirstPit(player);
+        for (int i = firstPit; i < firstPit + geometry.getPitsPerPlayer() + (countKalah ? 1 : 0); i++) {
             stonesCount += getPitStones(i);
         }
         return stonesCount;
@@ -91,15 +111,15 @@ abstract class KalahBoardSixStones implements KalahBoard {
      * @return opposite pit number
      */
     public int getOppositeSidePitNumber(int pit) {
-        return MAX_PITS - pit;
+        return geometry.getOppositePit(pit);
     }
 
     public boolean isPitMineKalah(int pit) {
-        return getCurrentPlayer() == Player.FIRST && pit == MAX_PITS / 2 || getCurrentPlayer() == Player.SECOND && pit == MAX_PITS;
+        return pit == geometry.getKalahPit(getCurrentPlayer());
     }
 
     public boolean isPitKalah(int pit) {
-        return pit == MAX_PITS / 2 || pit == MAX_PITS;
+        return pit == geometry.getKalahPit(Player.FIRST) || pit == geometry.getKalahPit(Player.SECOND);
     }
 
     public Player changePlayer() {
@@ -107,12 +127,7 @@ abstract class KalahBoardSixStones implements KalahBoard {
     }
 
     public boolean isPitMine(int pit) {
-        if (getCurrentPlayer() == Player.FIRST) {
-            return pit >= 1 && pit < MAX_PITS / 2;
-        }
-        else {
-            return pit > MAX_PITS / 2 && pit < MAX_PITS;
-        }
+        return geometry.isPlayersPit(getCurrentPlayer(), pit);
     }
 
 }
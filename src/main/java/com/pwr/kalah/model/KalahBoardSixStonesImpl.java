@@ -18,7 +18,6 @@ package com.pwr.kalah.model;
 
 import com.pwr.kalah.exception.KalahGameException;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -33,52 +32,70 @@ public class KalahBoardSixStonesImpl extends KalahBoardSixStones {
 
     private int currentPit;
 
-    public void makeNextMove(int pit) {
+    public KalahBoardSixStonesImpl() {
+        this(KalahGeometry.STANDARD);
+    }
+
+    public KalahBoardSixStonesImpl(KalahGeometry geometry) {
+        super(geometry);
+    }
+
+    public MoveResult makeNextMove(int pit) {
         if (boardStatus == BoardStatus.FINISHED) {
-            returnGameOver();
+            return MoveResult.GAME_OVER;
+        }
+        if (pit < 1 || pit > geometry.getPits()) {
+            return MoveResult.INVALID;
         }
-        validatePitNumber(pit);
 
         // Get the first player based on the first move pit
         defineCurrentPlayer(pit);
 
         // The player who begins picks up all the stones in any of their own pits, and sows the stones on
         // to the right, one in each of the following pits, including his own Kalah
-        pickAndSowTheStones(pit);
+        if (!pickAndSowTheStones(pit)) {
+            return MoveResult.INVALID;
+        }
 
         // When the last stone lands in an own empty pit, the player captures this stone and all stones
         // in the opposite pit (the other players' pit) and puts them in his own Kalah
-        captureStones();
+        boolean captured = captureStones();
 
         // After finishing the current player's move
         // if the players last stone lands in his own Kalah, he gets another turn
-        changePlayerOrMakeAnotherMove();
+        boolean anotherMove = changePlayerOrMakeAnotherMove();
 
         // The game is over as soon as one of the sides run out of stones.
-        checkEndOfGame();
+        if (checkEndOfGame()) {
+            return MoveResult.GAME_OVER;
+        }
+        if (captured) {
+            return MoveResult.CAPTURE;
+        }
+        return anotherMove ? MoveResult.EXTRA_TURN : MoveResult.OK;
     }
 
     private void defineCurrentPlayer(int pit) {
         if (boardStatus == BoardStatus.INITIAL) {
-            if (pit > MAX_PITS / 2) {
+            if (pit > geometry.getKalahPit(Player.FIRST)) {
                 setCurrentPlayer(Player.SECOND);
             }
             boardStatus = BoardStatus.STARTED;
         }
     }
 
-    private void pickAndSowTheStones(int pit) {
+    private boolean pickAndSowTheStones(int pit) {
         currentPit = pit;
         int availablePitStones = getPitStones(currentPit);
         if (availablePitStones == 0 || isPitKalah(pit) || !isPitMine(pit)) {
-            throw new KalahGameException(INVALID_MOVE);
+            return false;
         }
         setPitStones(currentPit, 0);
         while (availablePitStones > 0) {
 
             // cycle through the pits
             currentPit++;
-            if (currentPit > MAX_PITS) {
+            if (currentPit > geometry.getPits()) {
                 currentPit = 1;
             }
 
@@ -91,9 +108,10 @@ public class KalahBoardSixStonesImpl extends KalahBoardSixStones {
             addPitStones(currentPit, 1);
             availablePitStones--;
         }
+        return true;
     }
 
-    private void captureStones() {
+    private boolean captureStones() {
         int oppositePitStones = 0;
         if (!isPitKalah(currentPit)) {
             oppositePitStones = getPitStones(getOppositeSidePitNumber(currentPit));
@@ -107,17 +125,21 @@ public class KalahBoardSixStonesImpl extends KalahBoardSixStones {
             // put acquired stones in his own Kalah
             addPitStones(getPlayersKalahPit(getCurrentPlayer()), oppositePitStones + (isPitMineKalah(currentPit) ? 0
                     : 1));
+            return true;
         }
+        return false;
     }
 
-    private void changePlayerOrMakeAnotherMove() {
-        if (!isPitMineKalah(currentPit)) {
-            // otherwise, change the current player
-            changePlayer();
+    private boolean changePlayerOrMakeAnotherMove() {
+        if (isPitMineKalah(currentPit)) {
+            return true;
         }
+        // otherwise, change the current player
+        changePlayer();
+        return false;
     }
 
-    private void checkEndOfGame() {
+    private boolean checkEndOfGame() {
         if (countPlayerStones(getCurrentPlayer(), false) == 0) {
 
             // The player who still has stones in his/her pits keeps
@@ -126,27 +148,22 @@ public class KalahBoardSixStonesImpl extends KalahBoardSixStones {
             int oppositePlayerStones = countPlayerStones(oppositePlayer, false);
 
             // moving winner stones to his kalah
-            int firstPit = oppositePlayer == Player.FIRST ? 1 : MAX_STONES + 2;
-            for (int i = firstPit; i < firstPit + MAX_STONES; i++) {
+            int firstPit = geometry.getFirstPit(oppositePlayer);
+            for (int i = firstPit; i < firstPit + geometry.getPitsPerPlayer(); i++) {
                 setPitStones(i, 0);
             }
             addPitStones(getPlayersKalahPit(oppositePlayer), oppositePlayerStones);
 
             // The winner of the game is the player who has the most stones in his Kalah.
             setBoardStatus(BoardStatus.FINISHED);
-            returnGameOver();
+            return true;
         }
-    }
-
-    private void returnGameOver() {
-        throw new KalahGameException(String.format(GAME_OVER, getPitStones(getPlayersKalahPit(Player.FIRST)),
-                getPitStones(getPlayersKalahPit(Player.SECOND)))
-        );
+        return false;
     }
 
     public void fillGameFieldWithSample(int... sampleBoard) {
         boardStatus = BoardStatus.INITIAL;
-        if (sampleBoard.length < 1 || sampleBoard.length > MAX_PITS) {
+        if (sampleBoard.length < 1 || sampleBoard.length > geometry.getPits()) {
             throw new IllegalArgumentException(INPUT_ARRAY_LENGTH_SIZE_IS_INVALID);
         }
         for (int i = 0; i < sampleBoard.length; i++) {
@@ -184,8 +201,12 @@ public class KalahBoardSixStonesImpl extends KalahBoardSixStones {
         board.put(pit, stones);
     }
 
-    public HashMap<Integer, Integer> getStatus() {
-        return new HashMap<>(board);
+    public KalahBoardSnapshot getStatus() {
+        int[] pits = new int[geometry.getPits() + 1];
+        for (Map.Entry<Integer, Integer> pit : board.entrySet()) {
+            pits[pit.getKey()] = pit.getValue();
+        }
+        return new KalahBoardSnapshot(pits);
     }
 
     public String toString() {
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the game board pits.
+ * <p>
+ * The stones are kept in a primitive array indexed by the pit number. The snapshot is also a read-only
+ * {@link java.util.Map} from the pit number to the number of stones, the map view boxes the values
+ * only when it is used.
+ */
+public final class KalahBoardSnapshot extends AbstractMap<Integer, Integer> {
+
+    // Pit numbers are 1-based, so the element 0 is never used
+    private final int[] pits;
+
+    /**
+     * Create a snapshot which takes the ownership of the given array
+     *
+     * @param pits stones of every pit, indexed by the pit number
+     */
+    KalahBoardSnapshot(int[] pits) {
+        this.pits = pits;
+    }
+
+    /**
+     * Get the number of pits on the board
+     *
+     * @return number of pits
+     */
+    public int getPitsCount() {
+        return pits.length - 1;
+    }
+
+    /**
+     * Return number of stones in a pit
+     *
+     * @param pit pit number
+     * @return number of stones
+     */
+    public int getPitStones(int pit) {
+        return pits[pit];
+    }
+
+    @Override
+    public int size() {
+        return getPitsCount();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && isPit((Integer) key);
+    }
+
+    @Override
+    public Integer get(Object key) {
+        return containsKey(key) ? pits[(Integer) key] : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, Integer>> entrySet() {
+        return new AbstractSet<Entry<Integer, Integer>>() {
+            @Override
+            public Iterator<Entry<Integer, Integer>> iterator() {
+                return new Iterator<Entry<Integer, Integer>>() {
+                    private int pit = 1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return pit < pits.length;
+                    }
+
+                    @Override
+                    public Entry<Integer, Integer> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<Integer, Integer> entry = new SimpleImmutableEntry<>(pit, pits[pit]);
+                        pit++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getPitsCount();
+            }
+        };
+    }
+
+    private boolean isPit(int pit) {
+        return pit >= 1 && pit < pits.length;
+    }
+}
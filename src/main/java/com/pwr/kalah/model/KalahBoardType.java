@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+/**
+ * Available {@link KalahBoard} implementations, selectable with the {@code kalah.board.type} property
+ */
+public enum KalahBoardType {
+
+    /**
+     * The original board which keeps the pits in a concurrent map
+     */
+    MAP {
+        @Override
+        KalahBoard createBoard(KalahGeometry geometry) {
+            return new KalahBoardSixStonesImpl(geometry);
+        }
+    },
+
+    /**
+     * Allocation free board which keeps the pits in a primitive array
+     */
+    ARRAY {
+        @Override
+        KalahBoard createBoard(KalahGeometry geometry) {
+            return new KalahBoardArrayImpl(geometry);
+        }
+    };
+
+    /**
+     * Create the standard 6-stone Kalah board
+     *
+     * @return board
+     */
+    KalahBoard createBoard() {
+        return createBoard(KalahGeometry.STANDARD);
+    }
+
+    /**
+     * Create the board of the given geometry
+     *
+     * @param geometry board geometry
+     * @return board
+     */
+    abstract KalahBoard createBoard(KalahGeometry geometry);
+}
@@ -30,6 +30,12 @@ public final class KalahErrorMessages {
     public static final String INPUT_ARRAY_LENGTH_SIZE_IS_INVALID = "Input array length size is invalid";
     public static final String INVALID_MOVE = "Invalid move";
     public static final String GAME_OVER = "Game over! Score is %s:%s";
+    public static final String TOO_MANY_MOVES = "A batch can not have more than %d moves";
+    public static final String INVALID_PLY = "The game has not reached this ply";
+    public static final String HISTORY_NOT_RECORDED = "The moves of this game were made before they were recorded";
+    public static final String NODE_UNAVAILABLE = "The node which owns this game is not available";
+    public static final String INVALID_GEOMETRY = "Invalid board geometry. Valid numbers of pits are from 1 to "
+            + KalahGeometry.MAX_PITS_PER_PLAYER + " and of stones from 1 to " + KalahGeometry.MAX_STONES_PER_PIT;
 
     private KalahErrorMessages() {
         throw new IllegalStateException("Utility class");
@@ -15,8 +15,14 @@
  */
 package com.pwr.kalah.model;
 
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.pwr.kalah.exception.KalahGameException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * A game of 6-stone Kalah implementation
+ * A game of Kalah implementation, the standard 6-stone Kalah unless another {@link KalahGeometry} is given
  */
 public class KalahGame {
 
@@ -24,21 +30,62 @@ public class KalahGame {
 
     private final String gameUri;
 
+    // The id and the URI never change, so they are JSON encoded once and copied into every response
+    private final SerializedString encodedId;
+    private final SerializedString encodedUri;
+
     private final KalahBoard board;
 
+    // The last time the game was created or moved, in milliseconds
+    private volatile long lastAccessTime = System.currentTimeMillis();
+
+    // Number of the logged moves which changed the board, guarded by the move lock of the game
+    private int moveSequence;
+
+    // Moves which changed the board and their checkpoints, see KalahGameHistory, guarded by the move lock of the game
+    private byte[] history;
+
+    // Number of the recorded moves, -1 if the moves made before the game was restored are not known
+    private int plies;
+
     /**
      * Kalah game constructor
      *
-     * @param gameId  game ID
-     * @param gameUri game URI
+     * @param gameId    game ID
+     * @param gameUri   game URI
+     * @param boardType board implementation to play on
      */
-    public KalahGame(Long gameId, String gameUri) {
+    public KalahGame(Long gameId, String gameUri, KalahBoardType boardType) {
+        this(gameId, gameUri, boardType, KalahGeometry.STANDARD);
+    }
+
+    /**
+     * Kalah game constructor
+     *
+     * @param gameId    game ID
+     * @param gameUri   game URI
+     * @param boardType board implementation to play on
+     * @param geometry  board geometry
+     */
+    public KalahGame(Long gameId, String gameUri, KalahBoardType boardType, KalahGeometry geometry) {
         this.gameId = gameId;
         this.gameUri = gameUri;
-        board = new KalahBoardSixStonesImpl();
+        encodedId = gameId == null ? null : new SerializedString(gameId.toString());
+        encodedUri = gameUri == null ? null : new SerializedString(gameUri);
+        board = boardType.createBoard(geometry);
         board.initGameField();
     }
 
+    /**
+     * Kalah game constructor with the default {@link KalahBoardType#ARRAY} board
+     *
+     * @param gameId  game ID
+     * @param gameUri game URI
+     */
+    public KalahGame(Long gameId, String gameUri) {
+        this(gameId, gameUri, KalahBoardType.ARRAY);
+    }
+
     /**
      * This constructor is used only in unit tests to simplify test class creation
      *
@@ -49,8 +96,17 @@ public class KalahGame {
     }
 
 
-    public void makeNextMove(int pit) {
-        board.makeNextMove(pit);
+    public MoveResult makeNextMove(int pit) {
+        BoardStatus boardStatus = board.getBoardStatus();
+        MoveResult moveResult = board.makeNextMove(pit);
+        // an invalid first move may still choose the player who begins
+        if (plies >= 0 && (moveResult != MoveResult.INVALID && boardStatus != BoardStatus.FINISHED
+                || boardStatus != board.getBoardStatus())) {
+            history = KalahGameHistory.record(history, plies++, pit, board);
+        }
+        // the volatile write after the move makes the new board status visible to the eviction thread
+        lastAccessTime = System.currentTimeMillis();
+        return moveResult;
     }
 
     public KalahBoard getBoard() {
@@ -65,7 +121,105 @@ public class KalahGame {
         return gameId;
     }
 
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public int getMoveSequence() {
+        return moveSequence;
+    }
+
+    /**
+     * Restore the sequence number of the last logged move, when the game is loaded from a snapshot
+     *
+     * @param moveSequence sequence number of the last move
+     */
+    public void setMoveSequence(int moveSequence) {
+        this.moveSequence = moveSequence;
+    }
+
+    /**
+     * Assign the sequence number to a move which changed the board
+     *
+     * @return the sequence number of the move, starting from 1
+     */
+    public int nextMoveSequence() {
+        return ++moveSequence;
+    }
+
+    /**
+     * Copy the recorded moves, must be called under the move lock of the game
+     *
+     * @return game history
+     */
+    public KalahGameHistory getHistory() {
+        if (plies < 0) {
+            throw new KalahGameException(KalahErrorMessages.HISTORY_NOT_RECORDED);
+        }
+        byte[] moves = history == null
+                ? new byte[0] : Arrays.copyOf(history, KalahGameHistory.length(plies, board.getGeometry()));
+        return new KalahGameHistory(gameId, gameUri, board.getGeometry(), moves, plies);
+    }
+
+    /**
+     * Get the size of the recorded moves written by {@link #putHistory(ByteBuffer)}
+     *
+     * @return size in bytes
+     */
+    public int getHistorySize() {
+        return Integer.BYTES + (plies > 0 ? KalahGameHistory.length(plies, board.getGeometry()) : 0);
+    }
+
+    /**
+     * Write the number of the recorded moves followed by the moves and their checkpoints, must be called under
+     * the move lock of the game
+     *
+     * @param buffer buffer with {@link #getHistorySize()} bytes remaining
+     */
+    public void putHistory(ByteBuffer buffer) {
+        buffer.putInt(plies);
+        if (plies > 0) {
+            buffer.put(history, 0, KalahGameHistory.length(plies, board.getGeometry()));
+        }
+    }
+
+    /**
+     * Restore the recorded moves written by {@link #putHistory(ByteBuffer)}, when the game is loaded from a snapshot
+     *
+     * @param buffer buffer positioned at the recorded moves
+     */
+    public void restoreHistory(ByteBuffer buffer) {
+        plies = buffer.getInt();
+        history = null;
+        if (plies > 0) {
+            history = new byte[KalahGameHistory.length(plies, board.getGeometry())];
+            buffer.get(history);
+        }
+    }
+
+    /**
+     * Forget the recorded moves, when the game is restored without the moves which led to its board
+     */
+    public void discardHistory() {
+        plies = -1;
+        history = null;
+    }
+
+    public boolean isFinished() {
+        return board.getBoardStatus() == BoardStatus.FINISHED;
+    }
+
     public KalahGameResponse getResponse() {
-        return new KalahGameResponse(gameId, gameUri, board.getStatus());
+        return new KalahGameResponse(gameId, gameUri, encodedId, encodedUri, board.getStatus(), null);
+    }
+
+    /**
+     * Returns the game state together with the outcome of the last move
+     *
+     * @param moveResult outcome of the last move
+     * @return game response
+     */
+    public KalahGameResponse getResponse(MoveResult moveResult) {
+        return new KalahGameResponse(gameId, gameUri, encodedId, encodedUri, board.getStatus(), moveResult);
     }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.pwr.kalah.exception.KalahGameException;
+
+import java.util.Arrays;
+
+/**
+ * Moves of a game, copied from the move history kept by the {@link KalahGame}.
+ * <p>
+ * A game keeps the pits of the moves which changed its board in one byte array, which grows by doubling. After
+ * every {@link #CHECKPOINT_INTERVAL} moves the board is written into the same array as a checkpoint: a byte with
+ * the player to move and the board status, then the stones of every pit in one byte, or in two bytes when the
+ * geometry has more than 255 stones. The board at any ply is the nearest earlier checkpoint followed by at most
+ * {@link #CHECKPOINT_INTERVAL} - 1 replayed moves. A standard game of about 40 moves takes a 64-byte array.
+ */
+@JsonPropertyOrder({"id", "uri", "moves"})
+public final class KalahGameHistory {
+
+    static final int CHECKPOINT_INTERVAL = 32;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Long gameId;
+    private final String gameUri;
+    private final KalahGeometry geometry;
+    private final byte[] history;
+    private final int plies;
+
+    KalahGameHistory(Long gameId, String gameUri, KalahGeometry geometry, byte[] history, int plies) {
+        this.gameId = gameId;
+        this.gameUri = gameUri;
+        this.geometry = geometry;
+        this.history = history;
+        this.plies = plies;
+    }
+
+    @JsonProperty("id")
+    public Long getGameId() {
+        return gameId;
+    }
+
+    @JsonProperty("uri")
+    public String getGameUri() {
+        return gameUri;
+    }
+
+    /**
+     * Get the pits of the moves which changed the board, the first move of a game is recorded even if it is
+     * invalid, as it chooses the player who begins
+     *
+     * @return pit numbers in the order of the moves
+     */
+    @JsonProperty("moves")
+    public int[] getMoves() {
+        int[] moves = new int[plies];
+        for (int ply = 0; ply < plies; ply++) {
+            moves[ply] = history[offset(ply, geometry)];
+        }
+        return moves;
+    }
+
+    @JsonIgnore
+    public KalahGeometry getGeometry() {
+        return geometry;
+    }
+
+    @JsonIgnore
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Reconstruct the board after the given number of moves
+     *
+     * @param ply number of the moves, from 0 for the initial board to {@link #getPlies()}
+     * @return new board
+     */
+    public KalahBoard getBoard(int ply) {
+        if (ply < 0 || ply > plies) {
+            throw new KalahGameException(KalahErrorMessages.INVALID_PLY);
+        }
+        KalahBoard board = KalahBoardType.ARRAY.createBoard(geometry);
+        board.initGameField();
+        int checkpoint = ply / CHECKPOINT_INTERVAL;
+        if (checkpoint > 0) {
+            getCheckpoint(board, offset(checkpoint * CHECKPOINT_INTERVAL, geometry) - checkpointSize(geometry));
+        }
+        for (int move = checkpoint * CHECKPOINT_INTERVAL; move < ply; move++) {
+            board.makeNextMove(history[offset(move, geometry)]);
+        }
+        return board;
+    }
+
+    /**
+     * Get the game state after the given number of moves
+     *
+     * @param ply number of the moves
+     * @return game response
+     */
+    public KalahGameResponse getResponse(int ply) {
+        return new KalahGameResponse(gameId, gameUri, getBoard(ply).getStatus());
+    }
+
+    /**
+     * Append a move which changed the board, and the checkpoint of the board when the move completes an interval
+     *
+     * @param history recorded moves, null if no move has been recorded
+     * @param plies   number of the recorded moves
+     * @param pit     pit number of the move
+     * @param board   board after the move
+     * @return the given array, or a larger copy of it
+     */
+    static byte[] record(byte[] history, int plies, int pit, KalahBoard board) {
+        KalahGeometry geometry = board.getGeometry();
+        int length = length(plies + 1, geometry);
+        if (history == null) {
+            history = new byte[Math.max(INITIAL_CAPACITY, length)];
+        } else if (length > history.length) {
+            history = Arrays.copyOf(history, Math.max(history.length * 2, length));
+        }
+        history[offset(plies, geometry)] = (byte) pit;
+        if ((plies + 1) % CHECKPOINT_INTERVAL == 0) {
+            putCheckpoint(history, length - checkpointSize(geometry), board);
+        }
+        return history;
+    }
+
+    /**
+     * Get the number of the bytes taken by the moves and their checkpoints
+     *
+     * @param plies    number of the moves
+     * @param geometry board geometry
+     * @return length of the used part of the history array
+     */
+    static int length(int plies, KalahGeometry geometry) {
+        return offset(plies, geometry);
+    }
+
+    private static int offset(int ply, KalahGeometry geometry) {
+        return ply + ply / CHECKPOINT_INTERVAL * checkpointSize(geometry);
+    }
+
+    private static int checkpointSize(KalahGeometry geometry) {
+        return 1 + geometry.getPits() * (isWide(geometry) ? 2 : 1);
+    }
+
+    private static boolean isWide(KalahGeometry geometry) {
+        return geometry.getPitsPerPlayer() * geometry.getStonesPerPit() * 2 > 0xFF;
+    }
+
+    private static void putCheckpoint(byte[] history, int offset, KalahBoard board) {
+        KalahGeometry geometry = board.getGeometry();
+        history[offset++] = (byte) (board.getCurrentPlayer().ordinal() | board.getBoardStatus().ordinal() << 1);
+        boolean wide = isWide(geometry);
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            int stones = board.getPitStones(pit);
+            if (wide) {
+                history[offset++] = (byte) (stones >>> 8);
+            }
+            history[offset++] = (byte) stones;
+        }
+    }
+
+    private void getCheckpoint(KalahBoard board, int offset) {
+        int state = history[offset++];
+        boolean wide = isWide(geometry);
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            int stones = history[offset++] & 0xFF;
+            if (wide) {
+                stones = stones << 8 | history[offset++] & 0xFF;
+            }
+            board.setPitStones(pit, stones);
+        }
+        board.setCurrentPlayer(Player.values()[state & 1]);
+        board.setBoardStatus(BoardStatus.values()[state >>> 1]);
+    }
+}
@@ -16,12 +16,17 @@
 
 package com.pwr.kalah.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.pwr.kalah.view.KalahGameResponseSerializer;
 import com.pwr.kalah.view.KalahView;
 
 import java.util.Map;
 
+@JsonSerialize(using = KalahGameResponseSerializer.class)
 public class KalahGameResponse {
 
     @JsonView({KalahView.GameMove.class, KalahView.NewGame.class})
@@ -36,6 +41,16 @@ public class KalahGameResponse {
     @JsonProperty("status")
     Map<Integer, Integer> status;
 
+    @JsonIgnore
+    MoveResult moveResult;
+
+    // The id and the URI encoded by the game, null if the response has not been made by a game
+    @JsonIgnore
+    SerializableString encodedId;
+
+    @JsonIgnore
+    SerializableString encodedUri;
+
     public KalahGameResponse() {
         // This constructor is intentionally empty.
         // It is used in integration tests for JSON deserialization
@@ -47,7 +62,61 @@ public class KalahGameResponse {
         this.status = status;
     }
 
+    public KalahGameResponse(Long id, String uri, Map<Integer, Integer> status, MoveResult moveResult) {
+        this(id, uri, status);
+        this.moveResult = moveResult;
+    }
+
+    KalahGameResponse(Long id, String uri, SerializableString encodedId, SerializableString encodedUri,
+                      Map<Integer, Integer> status, MoveResult moveResult) {
+        this(id, uri, status, moveResult);
+        this.encodedId = encodedId;
+        this.encodedUri = encodedUri;
+    }
+
     public Long getId() {
         return id;
     }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public Map<Integer, Integer> getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the game id encoded as a JSON string once per game
+     *
+     * @return encoded id, or null if it has to be encoded by the serializer
+     */
+    public SerializableString getEncodedId() {
+        return encodedId;
+    }
+
+    /**
+     * Get the game URI encoded as a JSON string once per game
+     *
+     * @return encoded URI, or null if it has to be encoded by the serializer
+     */
+    public SerializableString getEncodedUri() {
+        return encodedUri;
+    }
+
+    public MoveResult getMoveResult() {
+        return moveResult;
+    }
+
+    /**
+     * Get the number of stones in the Kalah of the given player
+     *
+     * @param player player
+     * @return the player's score
+     */
+    public int getScore(Player player) {
+        // the Kalah of the second player is the last pit, the one of the first player is in the middle
+        int pits = status.size();
+        return status.get(player == Player.FIRST ? pits / 2 : pits);
+    }
 }
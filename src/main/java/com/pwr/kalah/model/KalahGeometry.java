@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.pwr.kalah.exception.KalahGameException;
+
+/**
+ * Geometry of a Kalah board: the number of pits of every player and the number of stones put in every pit
+ * at the start of the game, Kalah(6,6) is the standard game.
+ * <p>
+ * The pits are numbered from 1: the pits of the first player, his Kalah, the pits of the second player
+ * and his Kalah. The order in which the stones of every player are sown and the opposite pit of every pit
+ * are precomputed, so a move on a board of any geometry is as fast as on a fixed one. The instances are
+ * shared and can be compared by identity.
+ */
+public final class KalahGeometry {
+
+    public static final int MAX_PITS_PER_PLAYER = 12;
+    public static final int MAX_STONES_PER_PIT = 12;
+    public static final int MAX_PITS = MAX_PITS_PER_PLAYER * 2 + 2;
+
+    private static final KalahGeometry[][] GEOMETRIES = new KalahGeometry[MAX_PITS_PER_PLAYER + 1][MAX_STONES_PER_PIT + 1];
+
+    static {
+        for (int pitsPerPlayer = 1; pitsPerPlayer <= MAX_PITS_PER_PLAYER; pitsPerPlayer++) {
+            for (int stonesPerPit = 1; stonesPerPit <= MAX_STONES_PER_PIT; stonesPerPit++) {
+                GEOMETRIES[pitsPerPlayer][stonesPerPit] = new KalahGeometry(pitsPerPlayer, stonesPerPit);
+            }
+        }
+    }
+
+    public static final KalahGeometry STANDARD = of(6, 6);
+
+    private final int pitsPerPlayer;
+    private final int stonesPerPit;
+    private final int pits;
+    private final int firstKalah;
+
+    // The pits where the stones of a player are sown, all the pits but the Kalah of the opponent
+    private final int sowingCycle;
+
+    // The pits of the sowing cycle starting from the pit 1, repeated twice, so that the pits which follow
+    // any pit of the cycle are a contiguous part of the array, and the pit where the last of n stones lands
+    // is at the index of the picked up pit plus n modulo the cycle
+    private final int[] firstPlayerSowingOrder;
+    private final int[] secondPlayerSowingOrder;
+
+    // The index of every pit in the sowing order
+    private final int[] firstPlayerSowingIndexes;
+    private final int[] secondPlayerSowingIndexes;
+
+    private final int[] oppositePits;
+
+    private KalahGeometry(int pitsPerPlayer, int stonesPerPit) {
+        this.pitsPerPlayer = pitsPerPlayer;
+        this.stonesPerPit = stonesPerPit;
+        this.pits = pitsPerPlayer * 2 + 2;
+        this.firstKalah = pitsPerPlayer + 1;
+
+        sowingCycle = pits - 1;
+        firstPlayerSowingOrder = new int[sowingCycle * 2];
+        secondPlayerSowingOrder = new int[sowingCycle * 2];
+        firstPlayerSowingIndexes = new int[pits + 1];
+        secondPlayerSowingIndexes = new int[pits + 1];
+        initSowingOrder(firstPlayerSowingOrder, firstPlayerSowingIndexes, pits);
+        initSowingOrder(secondPlayerSowingOrder, secondPlayerSowingIndexes, firstKalah);
+
+        oppositePits = new int[pits + 1];
+        for (int pit = 1; pit <= pits; pit++) {
+            oppositePits[pit] = pit == firstKalah || pit == pits ? 0 : pits - pit;
+        }
+    }
+
+    private void initSowingOrder(int[] sowingOrder, int[] sowingIndexes, int skippedKalah) {
+        int index = 0;
+        for (int pit = 1; pit <= pits; pit++) {
+            if (pit != skippedKalah) {
+                sowingIndexes[pit] = index;
+                sowingOrder[index] = pit;
+                sowingOrder[index + sowingCycle] = pit;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Get the geometry with the given number of pits and stones
+     *
+     * @param pitsPerPlayer number of pits of every player, without his Kalah
+     * @param stonesPerPit  number of stones in every pit at the start of the game
+     * @return geometry
+     */
+    public static KalahGeometry of(int pitsPerPlayer, int stonesPerPit) {
+        if (pitsPerPlayer < 1 || pitsPerPlayer > MAX_PITS_PER_PLAYER || stonesPerPit < 1 || stonesPerPit > MAX_STONES_PER_PIT) {
+            throw new KalahGameException(KalahErrorMessages.INVALID_GEOMETRY);
+        }
+        return GEOMETRIES[pitsPerPlayer][stonesPerPit];
+    }
+
+    public int getPitsPerPlayer() {
+        return pitsPerPlayer;
+    }
+
+    public int getStonesPerPit() {
+        return stonesPerPit;
+    }
+
+    /**
+     * Get the number of all the pits on the board, including the Kalahs
+     *
+     * @return number of pits
+     */
+    public int getPits() {
+        return pits;
+    }
+
+    /**
+     * Get the first (leftmost) pit of the given player
+     *
+     * @param player player
+     * @return pit number
+     */
+    public int getFirstPit(Player player) {
+        return player == Player.FIRST ? 1 : firstKalah + 1;
+    }
+
+    /**
+     * Get Kalah pit for the given player
+     *
+     * @param player player number
+     * @return kalah pit number
+     */
+    public int getKalahPit(Player player) {
+        return player == Player.FIRST ? firstKalah : pits;
+    }
+
+    /**
+     * Checks if the given pit is not Kalah and belongs to the given player
+     *
+     * @param player player
+     * @param pit    pit number
+     * @return result of checking
+     */
+    public boolean isPlayersPit(Player player, int pit) {
+        int firstPit = getFirstPit(player);
+        return pit >= firstPit && pit < firstPit + pitsPerPlayer;
+    }
+
+    /**
+     * Get the number of the opposite pit
+     *
+     * @param pit pit number, not a Kalah
+     * @return opposite pit number
+     */
+    public int getOppositePit(int pit) {
+        return oppositePits[pit];
+    }
+
+    /**
+     * Get the number of the pits where the stones of a player are sown, which is every pit except the Kalah
+     * of the opponent. Every pit of the cycle gets one stone of a full lap.
+     *
+     * @return number of pits
+     */
+    public int getSowingCycle() {
+        return sowingCycle;
+    }
+
+    /**
+     * Get the pits of the sowing cycle of the given player, repeated twice.
+     * The table is shared, it must not be changed.
+     */
+    int[] getSowingOrder(Player player) {
+        return player == Player.FIRST ? firstPlayerSowingOrder : secondPlayerSowingOrder;
+    }
+
+    /**
+     * Get the index of the pit in the sowing order of the given player
+     */
+    int getSowingIndex(Player player, int pit) {
+        return player == Player.FIRST ? firstPlayerSowingIndexes[pit] : secondPlayerSowingIndexes[pit];
+    }
+
+    public String toString() {
+        return "Kalah(" + pitsPerPlayer + "," + stonesPerPit + ")";
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+/**
+ * Mutable position of a game of Kalah kept in a primitive array: the stones of every pit and
+ * the player to move, on a board of the given {@link KalahGeometry}.
+ * <p>
+ * It is the rules engine of {@link KalahBoardArrayImpl} and of the game tree searches. A position does not
+ * allocate when a move is played, and it is copied with a single array copy, so a search can keep one
+ * instance per ply and copy-make the moves instead of undoing them.
+ */
+public final class KalahPosition {
+
+    // Pit numbers are 1-based, so the element 0 is never used
+    int[] pits;
+    private KalahGeometry geometry;
+    private Player currentPlayer = Player.FIRST;
+
+    /**
+     * Create an empty position of the standard 6-stone Kalah
+     */
+    public KalahPosition() {
+        this(KalahGeometry.STANDARD);
+    }
+
+    /**
+     * Create an empty position
+     *
+     * @param geometry board geometry
+     */
+    public KalahPosition(KalahGeometry geometry) {
+        this.geometry = geometry;
+        this.pits = new int[geometry.getPits() + 1];
+    }
+
+    /**
+     * Create the position at the start of the standard 6-stone Kalah
+     *
+     * @return initial position
+     */
+    public static KalahPosition initial() {
+        return initial(KalahGeometry.STANDARD);
+    }
+
+    /**
+     * Create the position at the start of the game
+     *
+     * @param geometry board geometry
+     * @return initial position
+     */
+    public static KalahPosition initial(KalahGeometry geometry) {
+        KalahPosition position = new KalahPosition(geometry);
+        for (Player player : Player.values()) {
+            int firstPit = geometry.getFirstPit(player);
+            for (int pit = firstPit; pit < firstPit + geometry.getPitsPerPlayer(); pit++) {
+                position.pits[pit] = geometry.getStonesPerPit();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Create the position of the given board
+     *
+     * @param board game board
+     * @return position
+     */
+    public static KalahPosition of(KalahBoard board) {
+        KalahPosition position = new KalahPosition(board.getGeometry());
+        for (int pit = 1; pit < position.pits.length; pit++) {
+            position.pits[pit] = board.getPitStones(pit);
+        }
+        position.currentPlayer = board.getCurrentPlayer();
+        return position;
+    }
+
+    /**
+     * Make this position the same as the given one. The array of the pits is only allocated
+     * when the geometry of the positions differs.
+     *
+     * @param other position to copy
+     */
+    public void copyFrom(KalahPosition other) {
+        if (geometry != other.geometry) {
+            geometry = other.geometry;
+            pits = new int[other.pits.length];
+        }
+        System.arraycopy(other.pits, 0, pits, 0, pits.length);
+        currentPlayer = other.currentPlayer;
+    }
+
+    public KalahGeometry getGeometry() {
+        return geometry;
+    }
+
+    public int getPitStones(int pit) {
+        return pits[pit];
+    }
+
+    public void setPitStones(int pit, int stones) {
+        pits[pit] = stones;
+    }
+
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public void setCurrentPlayer(Player currentPlayer) {
+        this.currentPlayer = currentPlayer;
+    }
+
+    public int getKalahStones(Player player) {
+        return pits[geometry.getKalahPit(player)];
+    }
+
+    /**
+     * Count the stones in the pits of the given player, without his Kalah
+     *
+     * @param player player
+     * @return stones count
+     */
+    public int countPitStones(Player player) {
+        int firstPit = geometry.getFirstPit(player);
+        int stonesCount = 0;
+        for (int pit = firstPit; pit < firstPit + geometry.getPitsPerPlayer(); pit++) {
+            stonesCount += pits[pit];
+        }
+        return stonesCount;
+    }
+
+    /**
+     * Checks if the current player can start a move from the given pit
+     *
+     * @param pit pit number
+     * @return result of checking
+     */
+    public boolean isLegalMove(int pit) {
+        return geometry.isPlayersPit(currentPlayer, pit) && pits[pit] > 0;
+    }
+
+    /**
+     * The game is over when the player to move has no stones left in his pits
+     *
+     * @return result of checking
+     */
+    public boolean isGameOver() {
+        return countPitStones(currentPlayer) == 0;
+    }
+
+    /**
+     * Make a move of the current player starting from the given pit. The move must be legal.
+     *
+     * @param pit pit number
+     * @return the outcome of the move
+     */
+    public MoveResult play(int pit) {
+        Player player = currentPlayer;
+        Player opponent = player == Player.FIRST ? Player.SECOND : Player.FIRST;
+        int ownKalah = geometry.getKalahPit(player);
+
+        // The player picks up all the stones of the pit and sows them on to the right,
+        // one in each of the following pits, including his own Kalah, but not the opponent's one.
+        // Every full lap puts one stone in every pit of the cycle, the stones left over are put in the pits
+        // which follow the picked up one, so the move does not depend on the number of the stones.
+        int[] sowingOrder = geometry.getSowingOrder(player);
+        int sowingCycle = geometry.getSowingCycle();
+        int start = geometry.getSowingIndex(player, pit);
+        int stones = pits[pit];
+        pits[pit] = 0;
+        if (stones >= sowingCycle) {
+            int laps = stones / sowingCycle;
+            stones -= laps * sowingCycle;
+            for (int i = 0; i < sowingCycle; i++) {
+                pits[sowingOrder[i]] += laps;
+            }
+        }
+        int end = start + stones;
+        for (int i = start + 1; i <= end; i++) {
+            pits[sowingOrder[i]]++;
+        }
+        int currentPit = sowingOrder[end];
+
+        // When the last stone lands in an own empty pit, the player captures this stone and all stones
+        // in the opposite pit and puts them in his own Kalah
+        boolean captured = false;
+        if (currentPit != ownKalah && geometry.isPlayersPit(player, currentPit) && pits[currentPit] == 1) {
+            int oppositePit = geometry.getOppositePit(currentPit);
+            int oppositePitStones = pits[oppositePit];
+            if (oppositePitStones > 0) {
+                pits[oppositePit] = 0;
+                pits[currentPit] = 0;
+                pits[ownKalah] += oppositePitStones + 1;
+                captured = true;
+            }
+        }
+
+        // If the last stone lands in his own Kalah, he gets another turn
+        boolean anotherMove = currentPit == ownKalah;
+        if (!anotherMove) {
+            currentPlayer = opponent;
+        }
+
+        // The game is over as soon as the player to move runs out of stones,
+        // the other player puts the stones left in his pits in his Kalah
+        if (isGameOver()) {
+            Player otherPlayer = currentPlayer == Player.FIRST ? Player.SECOND : Player.FIRST;
+            int firstPit = geometry.getFirstPit(otherPlayer);
+            int otherPlayerStones = 0;
+            for (int i = firstPit; i < firstPit + geometry.getPitsPerPlayer(); i++) {
+                otherPlayerStones += pits[i];
+                pits[i] = 0;
+            }
+            pits[geometry.getKalahPit(otherPlayer)] += otherPlayerStones;
+            return MoveResult.GAME_OVER;
+        }
+        if (captured) {
+            return MoveResult.CAPTURE;
+        }
+        return anotherMove ? MoveResult.EXTRA_TURN : MoveResult.OK;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 1; i < pits.length; i++) {
+            if (i > 1) {
+                sb.append(", ");
+            }
+            sb.append(i).append('=').append(pits[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+/**
+ * The outcome of a move made on a {@link KalahBoard}
+ */
+public enum MoveResult {
+
+    /**
+     * The stones are sown and the turn goes to the other player
+     */
+    OK,
+
+    /**
+     * The last stone landed in the player's own Kalah, so he gets another turn
+     */
+    EXTRA_TURN,
+
+    /**
+     * The last stone landed in an own empty pit and the opposite pit stones were captured
+     */
+    CAPTURE,
+
+    /**
+     * The game is over, the score is the number of stones in both Kalah pits
+     */
+    GAME_OVER,
+
+    /**
+     * The move is not allowed, no stones are moved
+     */
+    INVALID
+}
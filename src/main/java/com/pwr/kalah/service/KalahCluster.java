@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Membership of the nodes which share the games, enabled with {@code kalah.cluster.nodes}.
+ * <p>
+ * The nodes are listed in the same order on every node, and the index of a node in the list is its node id.
+ * Every node pings the others periodically, and the {@link KalahHashRing} of the answering nodes decides which
+ * node owns a game. When the ring changes, the games are moved to their new owners by the rebalance task of
+ * the game service. A leaving node takes itself off its own ring and answers the pings as unavailable, so the
+ * others drop it while it hands off its games.
+ * <p>
+ * The node id is kept in the low {@link #NODE_BITS} bits of the ids of the games created by the node, so the
+ * ids never collide across the nodes. When the cluster is disabled the ids are the plain sequence numbers
+ * and every game is local.
+ */
+@Component
+public class KalahCluster {
+
+    public static final int NODE_BITS = 10;
+    public static final int MAX_NODES = 1 << NODE_BITS;
+
+    /**
+     * Header of a request forwarded by another node, which is always served locally, so two nodes which see
+     * different rings never forward a request back and forth
+     */
+    public static final String FORWARDED_HEADER = "X-Kalah-Forwarded";
+    public static final String PING_PATH = "/cluster/ping";
+    public static final String GAMES_PATH = "/cluster/games";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahCluster.class);
+
+    private final List<URI> nodes;
+    private final int nodeId;
+    private final int virtualNodes;
+    private final long heartbeatIntervalMillis;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kalah-cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile KalahHashRing ring;
+    private volatile boolean leaving;
+    private Runnable rebalanceTask;
+    private Consumer<ByteBuffer> gamesReceiver;
+    // Only used by the heartbeat thread
+    private boolean rebalancePending;
+
+    public KalahCluster(@Value("${kalah.cluster.nodes:}") String nodes,
+                        @Value("${kalah.cluster.node-id:0}") int nodeId,
+                        @Value("${kalah.cluster.virtual-nodes:128}") int virtualNodes,
+                        @Value("${kalah.cluster.heartbeat-interval:1s}") Duration heartbeatInterval,
+                        @Value("${kalah.cluster.timeout:2s}") Duration timeout) {
+        this.nodes = parseNodes(nodes);
+        if (this.nodes.size() > MAX_NODES) {
+            throw new IllegalArgumentException("A cluster can not have more than " + MAX_NODES + " nodes");
+        }
+        if (!this.nodes.isEmpty() && (nodeId < 0 || nodeId >= this.nodes.size())) {
+            throw new IllegalArgumentException("Node id " + nodeId + " is not an index of kalah.cluster.nodes");
+        }
+        this.nodeId = nodeId;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+        this.timeout = timeout;
+        client = isEnabled() ? HttpClient.newBuilder().connectTimeout(timeout).build() : null;
+        BitSet self = new BitSet();
+        self.set(nodeId);
+        ring = new KalahHashRing(self, virtualNodes);
+    }
+
+    private static List<URI> parseNodes(String nodes) {
+        if (nodes == null || nodes.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<URI> uris = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            String uri = node.trim();
+            uris.add(URI.create(uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri));
+        }
+        return Collections.unmodifiableList(uris);
+    }
+
+    public boolean isEnabled() {
+        return !nodes.isEmpty();
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isLeaving() {
+        return leaving;
+    }
+
+    /**
+     * Get the nodes on the ring of this node
+     *
+     * @return ids of the live nodes
+     */
+    public BitSet getLiveNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Start the heartbeats of the other nodes
+     *
+     * @param rebalance     task which moves the games to their owners after the ring has changed, returns false
+     *                      if some games could not be moved and it has to run again
+     * @param gamesReceiver receiver of the games moved to this node by {@link #sendGames(int, ByteBuffer)}
+     */
+    public void start(BooleanSupplier rebalance, Consumer<ByteBuffer> gamesReceiver) {
+        this.gamesReceiver = gamesReceiver;
+        if (!isEnabled()) {
+            return;
+        }
+        rebalanceTask = () -> rebalancePending = !rebalance.getAsBoolean();
+        heartbeatExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (RuntimeException e) {
+                // keep the scheduled heartbeats running
+                LOGGER.error("Cluster heartbeat failed", e);
+            }
+        }, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take this node off the ring, the games are owned by the other nodes from now on
+     */
+    public void leave() {
+        leaving = true;
+        BitSet others = ring.getNodes();
+        others.clear(nodeId);
+        ring = new KalahHashRing(others, virtualNodes);
+        LOGGER.info("Node {} is leaving the cluster", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeatExecutor.shutdownNow();
+    }
+
+    /**
+     * Ping the other nodes and rebuild the ring when a node has joined or left
+     */
+    void heartbeat() {
+        List<CompletableFuture<Boolean>> pings = new ArrayList<>(nodes.size());
+        for (int node = 0; node < nodes.size(); node++) {
+            pings.add(node == nodeId ? CompletableFuture.completedFuture(!leaving) : ping(node));
+        }
+        BitSet live = new BitSet();
+        for (int node = 0; node < nodes.size(); node++) {
+            if (pings.get(node).join()) {
+                live.set(node);
+            }
+        }
+        if (!live.equals(ring.getNodes())) {
+            ring = new KalahHashRing(live, virtualNodes);
+            LOGGER.info("Cluster nodes {} are live, node {} rebalances its games", live, nodeId);
+            rebalanceTask.run();
+        } else if (rebalancePending) {
+            rebalanceTask.run();
+        }
+    }
+
+    private CompletableFuture<Boolean> ping(int node) {
+        HttpRequest request = HttpRequest.newBuilder(nodes.get(node).resolve(PING_PATH)).timeout(timeout).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> e == null && response.statusCode() == 200);
+    }
+
+    /**
+     * Make a game id of this node
+     *
+     * @param sequence sequence number of the game on this node, starting from 1
+     * @return game ID
+     */
+    public long getGameId(long sequence) {
+        return isEnabled() ? sequence << NODE_BITS | nodeId : sequence;
+    }
+
+    /**
+     * Get the sequence number of a game id made by {@link #getGameId(long)}
+     *
+     * @param gameId game ID
+     * @return sequence number of the game on the node which created it
+     */
+    public long getSequence(long gameId) {
+        return isEnabled() ? gameId >>> NODE_BITS : gameId;
+    }
+
+    /**
+     * Get the node which owns the game
+     *
+     * @param gameId game ID
+     * @return node id, this node if no other node is live
+     */
+    public int getOwner(long gameId) {
+        if (!isEnabled()) {
+            return nodeId;
+        }
+        int owner = ring.getOwner(gameId);
+        return owner < 0 ? nodeId : owner;
+    }
+
+    public boolean isLocal(long gameId) {
+        return getOwner(gameId) == nodeId;
+    }
+
+    public URI getNodeUri(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * Send a request to another node, it is marked as forwarded
+     *
+     * @param node         node id
+     * @param method       HTTP method
+     * @param pathAndQuery path and query of the request
+     * @param contentType  content type of the body, null if there is no body
+     * @param body         request body
+     * @return response of the node
+     * @throws IOException if the node does not answer
+     */
+    public HttpResponse<byte[]> forward(int node, String method, String pathAndQuery, String contentType, byte[] body)
+            throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(nodes.get(node).resolve(pathAndQuery))
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, String.valueOf(nodeId))
+                .method(method, body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        try {
+            return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Forwarding to node " + node + " was interrupted", e);
+        }
+    }
+
+    /**
+     * Move games to another node
+     *
+     * @param node  node id
+     * @param games number of the games followed by their snapshot records, see {@link KalahSnapshotter}
+     * @return true if the node has taken the games
+     */
+    public boolean sendGames(int node, ByteBuffer games) {
+        byte[] body = new byte[games.remaining()];
+        games.get(body);
+        try {
+            return forward(node, "POST", GAMES_PATH, "application/octet-stream", body).statusCode() == 200;
+        } catch (IOException e) {
+            LOGGER.warn("Can not move games to node {}: {}", node, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Take the games moved to this node by another node
+     *
+     * @param games number of the games followed by their snapshot records
+     */
+    public void receiveGames(ByteBuffer games) {
+        gamesReceiver.accept(games);
+    }
+}
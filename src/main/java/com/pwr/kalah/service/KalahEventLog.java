@@ -0,0 +1,703 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahGeometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the game events, which rebuilds the games after a restart.
+ * <p>
+ * Every created game and every move which changed a board is appended as a compact binary record: the event
+ * type, the game id, the move sequence number of the game and the pit (or the board geometry and the game URI
+ * of a created game), followed by the CRC32 of the record. A game moved to this node from another one is
+ * appended as its snapshot record, which the later moves of the game follow. A torn record at the end of the
+ * log is dropped when the log is recovered.
+ * <p>
+ * The records are appended to a memory buffer, and the callers wait until their record is durable with group
+ * commit: the first waiting thread writes and forces all the buffered records at once, while the records
+ * of the other threads are buffered for the next write. So one fsync serves all the concurrent requests.
+ * <p>
+ * A failed write stops the log: the written part of the batch is truncated if possible, the waiters of the batch
+ * and every later append fail, so no event is acknowledged after an event which was not written, and a move
+ * sequence of a game never has a gap.
+ * <p>
+ * The log is split into the segment files of about the given size. The closed segments are periodically
+ * compacted into one, without the events of the games which are not in the {@link KalahGameStore} any more.
+ * The log is disabled when no directory is configured.
+ */
+@Component
+public class KalahEventLog {
+
+    /**
+     * Receiver of the recovered events, in the order they were appended
+     */
+    public interface Listener {
+
+        void onCreate(long gameId, String gameUri, KalahGeometry geometry);
+
+        void onMove(long gameId, int sequence, int pit);
+
+        void onGame(long gameId, int sequence, ByteBuffer record);
+    }
+
+    static final byte CREATE = 1;
+    static final byte MOVE = 2;
+    static final byte GAME = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahEventLog.class);
+
+    // type, game id, sequence number and two bytes of the pit or the geometry
+    private static final int HEADER_SIZE = 1 + Long.BYTES + Integer.BYTES + 2;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final String SEGMENT_PREFIX = "kalah-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTION_FILE = "kalah-compaction.tmp";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean fsync;
+    private final long compactionIntervalMillis;
+    private final KalahGameStore games;
+
+    private final ScheduledExecutorService compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kalah-log-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guards the buffers, the counters of the records and the segments, a virtual thread waiting for a write
+    // does not pin its carrier thread on the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition written = lock.newCondition();
+    private final CRC32 checksum = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long appendedRecords;
+    private long durableRecords;
+    private boolean writing;
+    // The write which stopped the log, null while the log works
+    private IOException failure;
+    private final List<Long> closedSegments = new ArrayList<>();
+
+    // Only used by the writing thread
+    private FileChannel channel;
+    private long activeSegment;
+
+    // Serializes the compaction and the deletion of the segments covered by a snapshot
+    private final Object compactionLock = new Object();
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    public KalahEventLog(@Value("${kalah.log.dir:}") String directory,
+                         @Value("${kalah.log.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${kalah.log.fsync:true}") boolean fsync,
+                         @Value("${kalah.log.compaction-interval:1m}") Duration compactionInterval,
+                         KalahGameStore games) {
+        this.directory = directory == null || directory.isEmpty() ? null : Paths.get(directory);
+        this.segmentSize = segmentSize.toBytes();
+        this.fsync = fsync;
+        this.compactionIntervalMillis = compactionInterval.toMillis();
+        this.games = games;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Replay all the events of the log and open it for appending
+     *
+     * @param listener receiver of the events
+     */
+    public void recover(Listener listener) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(COMPACTION_FILE));
+            List<Long> segments = listSegments();
+            long records = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                records += replaySegment(segments.get(i), i == segments.size() - 1, listener);
+            }
+            lock.lock();
+            try {
+                if (segments.isEmpty()) {
+                    openSegment(1);
+                } else {
+                    closedSegments.addAll(segments.subList(0, segments.size() - 1));
+                    openSegment(segments.get(segments.size() - 1));
+                }
+            } finally {
+                lock.unlock();
+            }
+            LOGGER.info("Recovered {} events from {} log segments in {}", records, segments.size(), directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not recover the event log " + directory, e);
+        }
+        compactionExecutor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        compactionExecutor.shutdownNow();
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (writing) {
+                awaitWrite();
+            }
+            try {
+                if (channel != null && failure == null) {
+                    write(pending);
+                    channel.force(false);
+                    channel.close();
+                    channel = null;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Event log is not closed properly", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append the event of a created game
+     *
+     * @return the ticket to wait for with {@link #awaitDurable(long)}
+     */
+    public long appendCreate(long gameId, String gameUri, KalahGeometry geometry) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        byte[] uri = gameUri.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            checkNotFailed();
+            ByteBuffer buffer = reserve(HEADER_SIZE + Short.BYTES + uri.length + CHECKSUM_SIZE);
+            int start = buffer.position();
+            buffer.put(CREATE).putLong(gameId).putInt(0)
+                    .put((byte) geometry.getPitsPerPlayer()).put((byte) geometry.getStonesPerPit())
+                    .putShort((short) uri.length).put(uri);
+            return appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append the event of a move
+     *
+     * @param gameId   game ID
+     * @param sequence number of the move in the game, starting from 1
+     * @param pit      pit number
+     * @return the ticket to wait for with {@link #awaitDurable(long)}
+     */
+    public long appendMove(long gameId, int sequence, int pit) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            checkNotFailed();
+            ByteBuffer buffer = reserve(HEADER_SIZE + CHECKSUM_SIZE);
+            int start = buffer.position();
+            buffer.put(MOVE).putLong(gameId).putInt(sequence).put((byte) pit).put((byte) 0);
+            return appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append the event of a game moved to this node from another one
+     *
+     * @param gameId   game ID
+     * @param sequence move sequence of the game
+     * @param record   snapshot record of the game
+     * @return the ticket to wait for with {@link #awaitDurable(long)}
+     */
+    public long appendGame(long gameId, int sequence, ByteBuffer record) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            checkNotFailed();
+            ByteBuffer buffer = reserve(HEADER_SIZE + Integer.BYTES + record.remaining() + CHECKSUM_SIZE);
+            int start = buffer.position();
+            buffer.put(GAME).putLong(gameId).putInt(sequence).putShort((short) 0)
+                    .putInt(record.remaining()).put(record.duplicate());
+            return appended(buffer, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the event of the given ticket is written (and forced to the disk, if fsync is enabled)
+     *
+     * @param ticket ticket of the appended event, 0 does not wait
+     * @throws UncheckedIOException if the event can not be written, the log is stopped
+     */
+    public void awaitDurable(long ticket) {
+        while (true) {
+            ByteBuffer batch;
+            long batchRecords;
+            lock.lock();
+            try {
+                while (durableRecords < ticket && writing) {
+                    awaitWrite();
+                }
+                if (durableRecords >= ticket) {
+                    return;
+                }
+                checkNotFailed();
+                // this thread writes all the buffered events, the next events are buffered in the spare buffer
+                writing = true;
+                batch = pending;
+                batchRecords = appendedRecords;
+                pending = spare;
+                spare = null;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException writeFailure = null;
+            long batchStart = -1;
+            boolean durable = false;
+            try {
+                batchStart = channel.position();
+                write(batch);
+                if (fsync) {
+                    channel.force(false);
+                }
+                durable = true;
+                if (channel.position() >= segmentSize) {
+                    rollOver();
+                }
+            } catch (IOException e) {
+                writeFailure = e;
+                if (!durable && batchStart >= 0) {
+                    truncate(batchStart);
+                }
+            }
+
+            lock.lock();
+            try {
+                writing = false;
+                if (durable) {
+                    batch.clear();
+                    spare = batch;
+                    durableRecords = batchRecords;
+                    writes.increment();
+                }
+                if (writeFailure != null) {
+                    // the records which are not written and the ones appended meanwhile are never acknowledged
+                    failure = writeFailure;
+                    LOGGER.error("Event log write failed, the log is stopped", writeFailure);
+                }
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (!durable) {
+                throw new UncheckedIOException("Can not write the event log", writeFailure);
+            }
+        }
+    }
+
+    public long getAppends() {
+        return appends.sum();
+    }
+
+    /**
+     * Get the number of the writes, every write makes a group of events durable
+     *
+     * @return number of writes
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * Get the number of the log segments
+     *
+     * @return number of segments including the active one
+     */
+    public int getSegments() {
+        lock.lock();
+        try {
+            return closedSegments.size() + (channel == null ? 0 : 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of the segment the events are appended to
+     *
+     * @return active segment number, 0 if the log is disabled
+     */
+    public long getActiveSegment() {
+        lock.lock();
+        try {
+            return channel == null ? 0 : activeSegment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete the closed segments before the given one, when their events are covered by a snapshot
+     *
+     * @param segment the segment which was active when the snapshot started
+     */
+    public void deleteSegmentsBefore(long segment) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (compactionLock) {
+            List<Long> segments = new ArrayList<>();
+            lock.lock();
+            try {
+                for (long closedSegment : closedSegments) {
+                    if (closedSegment < segment) {
+                        segments.add(closedSegment);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                for (Long closedSegment : segments) {
+                    Files.deleteIfExists(segmentPath(closedSegment));
+                    lock.lock();
+                    try {
+                        closedSegments.remove(closedSegment);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Log segments covered by a snapshot are not deleted", e);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the closed segments into one, without the events of the games which are not stored any more
+     */
+    void compact() {
+        synchronized (compactionLock) {
+            compactSegments();
+        }
+    }
+
+    private void compactSegments() {
+        List<Long> segments;
+        lock.lock();
+        try {
+            segments = new ArrayList<>(closedSegments);
+        } finally {
+            lock.unlock();
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        try {
+            Path compacted = directory.resolve(COMPACTION_FILE);
+            long kept = 0;
+            long dropped = 0;
+            try (FileChannel output = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                Record record = new Record();
+                CRC32 recordChecksum = new CRC32();
+                for (long segment : segments) {
+                    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+                    while (record.read(buffer, recordChecksum)) {
+                        if (games.get(record.gameId) == null) {
+                            dropped++;
+                            continue;
+                        }
+                        ByteBuffer bytes = buffer.duplicate();
+                        bytes.limit(record.end).position(record.start);
+                        while (bytes.hasRemaining()) {
+                            output.write(bytes);
+                        }
+                        kept++;
+                    }
+                }
+                output.force(false);
+            }
+            if (dropped == 0 && segments.size() == 1) {
+                Files.delete(compacted);
+                return;
+            }
+
+            // the compacted segment replaces the first one, a crash before the others are deleted only leaves
+            // duplicate events, which are skipped by their sequence numbers
+            Files.move(compacted, segmentPath(segments.get(0)), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            for (long segment : segments.subList(1, segments.size())) {
+                Files.delete(segmentPath(segment));
+            }
+            lock.lock();
+            try {
+                closedSegments.removeAll(segments.subList(1, segments.size()));
+            } finally {
+                lock.unlock();
+            }
+            LOGGER.debug("Compacted {} log segments, {} events kept, {} dropped", segments.size(), kept, dropped);
+        } catch (IOException | RuntimeException e) {
+            // keep the scheduled compaction running
+            LOGGER.error("Event log compaction failed", e);
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new UncheckedIOException("The event log is stopped after a failed write", failure);
+        }
+    }
+
+    /**
+     * Drop the part of a failed batch which may have been written, so that a torn record is not followed by
+     * the records of a restarted log
+     */
+    private void truncate(long position) {
+        try {
+            channel.truncate(position);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Log segment {} is not truncated after a failed write: {}", activeSegment, e.getMessage());
+        }
+    }
+
+    /**
+     * Get the channel of the active segment, used by the tests to make the writes fail
+     *
+     * @return segment channel
+     */
+    FileChannel getActiveChannel() {
+        lock.lock();
+        try {
+            return channel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer reserve(int size) {
+        if (pending.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        return pending;
+    }
+
+    private long appended(ByteBuffer buffer, int start) {
+        checksum.reset();
+        checksum.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) checksum.getValue());
+        appends.increment();
+        return ++appendedRecords;
+    }
+
+    private void awaitWrite() {
+        try {
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the event log", e);
+        }
+    }
+
+    private void write(ByteBuffer batch) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+    }
+
+    private void rollOver() throws IOException {
+        channel.force(false);
+        channel.close();
+        lock.lock();
+        try {
+            closedSegments.add(activeSegment);
+            openSegment(activeSegment + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        activeSegment = segment;
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Replay the events of a segment, a torn record at the end of the last segment is truncated
+     *
+     * @return number of the replayed events
+     */
+    private long replaySegment(long segment, boolean last, Listener listener) throws IOException {
+        Path path = segmentPath(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        Record record = new Record();
+        CRC32 recordChecksum = new CRC32();
+        long records = 0;
+        while (record.read(buffer, recordChecksum)) {
+            if (record.type == CREATE) {
+                listener.onCreate(record.gameId, record.gameUri, KalahGeometry.of(record.first, record.second));
+            } else if (record.type == GAME) {
+                listener.onGame(record.gameId, record.sequence, record.game);
+            } else {
+                listener.onMove(record.gameId, record.sequence, record.first);
+            }
+            records++;
+        }
+        if (buffer.hasRemaining()) {
+            LOGGER.warn("Log segment {} has {} invalid bytes at the position {}", path, buffer.remaining(), buffer.position());
+            if (last) {
+                try (FileChannel segmentChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    segmentChannel.truncate(buffer.position());
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * An event record read from a segment
+     */
+    private static final class Record {
+        byte type;
+        long gameId;
+        int sequence;
+        int first;
+        int second;
+        String gameUri;
+        ByteBuffer game;
+        int start;
+        int end;
+
+        /**
+         * Read the next record, the buffer is left at the start of an invalid record
+         *
+         * @return false at the end of the valid records
+         */
+        boolean read(ByteBuffer buffer, CRC32 checksum) {
+            start = buffer.position();
+            if (buffer.remaining() < HEADER_SIZE + CHECKSUM_SIZE) {
+                return false;
+            }
+            type = buffer.get();
+            gameId = buffer.getLong();
+            sequence = buffer.getInt();
+            first = buffer.get() & 0xFF;
+            second = buffer.get() & 0xFF;
+            gameUri = null;
+            game = null;
+            if (type == CREATE) {
+                int length = buffer.remaining() < Short.BYTES ? -1 : buffer.getShort() & 0xFFFF;
+                if (length < 0 || buffer.remaining() < length + CHECKSUM_SIZE) {
+                    buffer.position(start);
+                    return false;
+                }
+                gameUri = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else if (type == GAME) {
+                int length = buffer.remaining() < Integer.BYTES ? -1 : buffer.getInt();
+                if (length < 0 || buffer.remaining() < length + CHECKSUM_SIZE) {
+                    buffer.position(start);
+                    return false;
+                }
+                game = buffer.slice();
+                game.limit(length);
+                buffer.position(buffer.position() + length);
+            } else if (type != MOVE) {
+                buffer.position(start);
+                return false;
+            }
+            checksum.reset();
+            checksum.update(buffer.array(), start, buffer.position() - start);
+            if (buffer.getInt() != (int) checksum.getValue()) {
+                buffer.position(start);
+                return false;
+            }
+            end = buffer.position();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahGameResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watchers of the games, which are notified of every move that changed a board.
+ * <p>
+ * The listeners are called under the move lock of the game, so the updates of a game come in the move order,
+ * and must not block: they only queue the update for sending.
+ */
+@Component
+public class KalahGameEvents {
+
+    /**
+     * Receiver of the updates of a game
+     */
+    public interface Listener {
+
+        /**
+         * Receive the full game state when the game is watched
+         *
+         * @param response game state
+         */
+        void onState(KalahGameResponse response);
+
+        /**
+         * Receive the change made by a move
+         *
+         * @param delta board delta
+         */
+        void onUpdate(KalahBoardDelta delta);
+    }
+
+    private final Map<Long, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    void subscribe(Long gameId, Listener listener) {
+        // the list is changed inside the map operation, so an unsubscribe never removes a list being added to
+        listeners.compute(gameId, (id, gameListeners) -> {
+            List<Listener> result = gameListeners == null ? new CopyOnWriteArrayList<>() : gameListeners;
+            result.add(listener);
+            return result;
+        });
+    }
+
+    public void unsubscribe(Long gameId, Listener listener) {
+        listeners.computeIfPresent(gameId, (id, gameListeners) -> {
+            gameListeners.remove(listener);
+            return gameListeners.isEmpty() ? null : gameListeners;
+        });
+    }
+
+    public boolean hasListeners(Long gameId) {
+        return listeners.containsKey(gameId);
+    }
+
+    void publish(KalahBoardDelta delta) {
+        List<Listener> gameListeners = listeners.get(delta.getGameId());
+        if (gameListeners != null) {
+            for (Listener listener : gameListeners) {
+                listener.onUpdate(delta);
+            }
+        }
+    }
+
+    /**
+     * Get the number of the watched games
+     *
+     * @return number of games with listeners
+     */
+    public int size() {
+        return listeners.size();
+    }
+}
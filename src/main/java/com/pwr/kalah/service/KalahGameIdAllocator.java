@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Allocator of the game sequence numbers, which the {@link KalahCluster} turns into game ids.
+ * <p>
+ * The shared counter is only touched to lease a block of numbers. The blocks are kept in stripes selected by
+ * the thread id, so the threads creating games take the numbers of their own blocks without writing to a shared
+ * cache line, and a virtual thread per request still finds a leased block. A number is taken from a block with
+ * one atomic increment, and a new block replaces the used one with a compare and set, so no thread waits for
+ * another. A thread takes consecutive numbers while nobody else uses its stripe, but the numbers of the concurrent
+ * threads are not ordered, and the rest of a block is dropped when two threads replace it at the same time.
+ * <p>
+ * In the {@link Mode#SEQUENCE} mode the numbers start from 1 and the games restored on startup move the counter
+ * past their ids. In the {@link Mode#SNOWFLAKE} mode a number is the milliseconds since {@link #EPOCH} followed
+ * by {@link #SEQUENCE_BITS} bits of a sequence, and the counter is never behind the clock, so the ids stay unique
+ * across restarts without any stored state. Leasing more than 4096 numbers a millisecond runs the counter ahead
+ * of the clock, which keeps the ids unique as long as a restart takes longer than the lead.
+ */
+@Component
+public class KalahGameIdAllocator {
+
+    /**
+     * Layout of the allocated numbers
+     */
+    public enum Mode {
+        SEQUENCE,
+        SNOWFLAKE
+    }
+
+    /**
+     * 2020-01-01T00:00:00Z, the time part of the snowflake numbers lasts for 2^41 milliseconds from it
+     */
+    public static final long EPOCH = 1_577_836_800_000L;
+    public static final int SEQUENCE_BITS = 12;
+
+    private final Mode mode;
+    private final int blockSize;
+    private final AtomicLong counter = new AtomicLong(1);
+    private final AtomicReference<Block>[] stripes;
+
+    public KalahGameIdAllocator(@Value("${kalah.games.id-mode:SEQUENCE}") Mode mode,
+                                @Value("${kalah.games.id-block:64}") int blockSize) {
+        this.mode = mode;
+        this.blockSize = Math.max(1, blockSize);
+        // round the number of stripes up to a power of two, so that a stripe can be selected with a mask
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+        @SuppressWarnings("unchecked")
+        AtomicReference<Block>[] stripes = new AtomicReference[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AtomicReference<>(new Block(0, 0));
+        }
+        this.stripes = stripes;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Allocate a number, which has never been allocated before
+     *
+     * @return sequence number
+     */
+    public long next() {
+        long threadId = Thread.currentThread().getId();
+        int hash = (int) (threadId ^ (threadId >>> 32)) * 0x9E3779B9;
+        AtomicReference<Block> stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        Block block = stripe.get();
+        long number = block.next.getAndIncrement();
+        if (number < block.end) {
+            return number;
+        }
+        long start = leaseBlock();
+        // the caller keeps the first number whether or not its block is the one which replaces the used block
+        stripe.compareAndSet(block, new Block(start + 1, start + blockSize));
+        return start;
+    }
+
+    /**
+     * Make sure that the numbers up to the given one are never allocated, called before any game is created
+     *
+     * @param sequence number of a restored game
+     */
+    public void advancePast(long sequence) {
+        counter.accumulateAndGet(sequence + 1, Math::max);
+    }
+
+    private long leaseBlock() {
+        if (mode == Mode.SEQUENCE) {
+            return counter.getAndAdd(blockSize);
+        }
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        while (true) {
+            long start = counter.get();
+            long block = Math.max(start, now);
+            if (counter.compareAndSet(start, block + blockSize)) {
+                return block;
+            }
+        }
+    }
+
+    /**
+     * Leased block of numbers, allocated by the thread which leased it, so the counters of the stripes are
+     * not laid out next to each other
+     */
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        Block(long next, long end) {
+            this.next = new AtomicLong(next);
+            this.end = end;
+        }
+    }
+}
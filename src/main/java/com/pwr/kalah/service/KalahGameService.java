@@ -16,11 +16,93 @@
 
 package com.pwr.kalah.service;
 
+import com.pwr.kalah.model.KalahBatchMoveResponse;
 import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGameHistory;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.model.KalahGeometry;
+
+import java.util.List;
+import java.util.Map;
 
 public interface KalahGameService {
 
     KalahGame createGame(String requestUri);
 
-    KalahGame makeMove(Long gameId, int pitId);
+    /**
+     * Create a game on a board of the given geometry
+     *
+     * @param requestUri URI of the games
+     * @param geometry   board geometry
+     * @return new game
+     */
+    KalahGame createGame(String requestUri, KalahGeometry geometry);
+
+    /**
+     * Make a move in an existing game
+     *
+     * @param gameId game ID
+     * @param pitId  pit number
+     * @return the move result and the game state right after the move, taken before any other move of the same game
+     */
+    KalahGameResponse makeMove(Long gameId, int pitId);
+
+    /**
+     * Make a sequence of moves in an existing game, no move of another request is made between them
+     *
+     * @param gameId game ID
+     * @param pits   pit numbers in the order of the moves
+     * @return the result of every move and the game state after the last move
+     */
+    KalahBatchMoveResponse makeMoves(Long gameId, int[] pits);
+
+    /**
+     * Make sequences of moves in many games, the games are moved in parallel
+     *
+     * @param moves pit numbers in the order of the moves by game ID
+     * @return the batch responses in the order of the games, with the error message for a game which does not exist
+     */
+    List<KalahBatchMoveResponse> makeMoves(Map<Long, int[]> moves);
+
+    /**
+     * Make the move of the current player chosen by the computer
+     *
+     * @param gameId game ID
+     * @return the move result and the game state right after the move
+     */
+    KalahGameResponse makeComputerMove(Long gameId);
+
+    /**
+     * Get the moves which changed the board of an existing game
+     *
+     * @param gameId game ID
+     * @return copy of the game history
+     */
+    KalahGameHistory getHistory(Long gameId);
+
+    /**
+     * Reconstruct the state of an existing game after the given number of its moves
+     *
+     * @param gameId game ID
+     * @param ply    number of the moves, from 0 for the initial board
+     * @return the game state at the ply
+     */
+    KalahGameResponse getResponse(Long gameId, int ply);
+
+    /**
+     * Watch the moves of an existing game, the listener gets the current game state first and then the changes
+     * made by every move
+     *
+     * @param gameId   game ID
+     * @param listener receiver of the game updates
+     */
+    void watchGame(Long gameId, KalahGameEvents.Listener listener);
+
+    /**
+     * Stop watching a game
+     *
+     * @param gameId   game ID
+     * @param listener receiver of the game updates
+     */
+    void unwatchGame(Long gameId, KalahGameEvents.Listener listener);
 }
@@ -16,44 +16,580 @@
 
 package com.pwr.kalah.service;
 
+import com.pwr.kalah.engine.KalahComputerPlayer;
 import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.BoardStatus;
+import com.pwr.kalah.model.KalahBatchMoveResponse;
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahBoardSnapshot;
+import com.pwr.kalah.model.KalahBoardType;
 import com.pwr.kalah.model.KalahErrorMessages;
 import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGameHistory;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.MoveResult;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Thread-safe {@link KalahGameService}.
+ * <p>
+ * Games are kept in the {@link KalahGameStore}, and the moves of one game are serialized with a striped lock:
+ * every game id is mapped to one of a fixed number of locks, so moves in different games run in parallel
+ * and the lock memory does not grow with the number of games.
+ * <p>
+ * Created games and the moves which changed a board are appended to the {@link KalahEventLog} under the game lock,
+ * so the log keeps the order of the moves of every game. The request waits until its event is durable after
+ * the lock is released. On startup the games are loaded from the latest {@link KalahSnapshotter} snapshot,
+ * then the newer events are replayed from the log.
+ * <p>
+ * The changes made by the moves are published to the {@link KalahGameEvents} watchers under the game lock too,
+ * the board is only compared with its state before the move when the game is watched. The moves, their latencies
+ * and the requests of unknown games are recorded in the {@link KalahMetrics}.
+ * <p>
+ * A batch of moves of one game is made under one acquisition of the game lock and waits for the event log once,
+ * the watchers get one update with the change made by the whole batch. The batches of many games are split
+ * between the batch threads.
+ * <p>
+ * The history of a game is copied under its move lock, and the board at a ply is replayed from the copy.
+ * <p>
+ * When the {@link KalahCluster} is enabled, a node only creates the game ids it owns, and after the cluster ring
+ * has changed the games owned by other nodes are moved to them in batches of snapshot records. A game is removed
+ * under its move lock before it is sent, and a move looks the game up only after it has taken the lock, so no
+ * move is made in a game which has been sent, replaced by a received copy or evicted. A move of the game is
+ * rejected on the new owner until the game has arrived. The moved games are durable on the new owner when
+ * {@link #receiveGames} returns. A leaving node hands off all its games on shutdown.
+ */
 @Service
 public class KalahGameServiceImpl implements KalahGameService {
 
-    private final Map<Long, KalahGame> games = new HashMap<>();
-    private final AtomicLong gamesCount = new AtomicLong();
+    private final KalahGameStore games;
+    private final KalahComputerPlayer computerPlayer;
+    private final KalahGameIdAllocator idAllocator;
+    private final KalahBoardType boardType;
+    private final ReentrantLock[] moveLocks;
+    private final KalahEventLog eventLog;
+    private final KalahSnapshotter snapshotter;
+    private final KalahGameEvents events;
+    private final KalahMetrics metrics;
+    private final KalahCluster cluster;
+    private final int batchThreads;
+    private final AtomicInteger batchThreadsCount = new AtomicInteger();
+    private final ExecutorService batchExecutor;
+
+    // Maximum number of games moved to another node in one request
+    private static final int REBALANCE_BATCH = 1024;
+
+    public KalahGameServiceImpl(KalahGameStore games,
+                                KalahComputerPlayer computerPlayer,
+                                KalahEventLog eventLog,
+                                KalahSnapshotter snapshotter,
+                                KalahGameEvents events,
+                                KalahMetrics metrics,
+                                KalahCluster cluster,
+                                KalahGameIdAllocator idAllocator,
+                                @Value("${kalah.board.type:ARRAY}") KalahBoardType boardType,
+                                @Value("${kalah.games.lock-stripes:1024}") int lockStripes,
+                                @Value("${kalah.batch.threads:0}") int batchThreads) {
+        this.games = games;
+        this.computerPlayer = computerPlayer;
+        this.eventLog = eventLog;
+        this.snapshotter = snapshotter;
+        this.events = events;
+        this.metrics = metrics;
+        this.cluster = cluster;
+        this.idAllocator = idAllocator;
+        this.boardType = boardType;
+        // round the number of stripes up to a power of two, so that a stripe can be selected with a mask
+        int stripes = Integer.highestOneBit(Math.max(1, lockStripes - 1) << 1);
+        moveLocks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            moveLocks[i] = new ReentrantLock();
+        }
+        this.batchThreads = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        batchExecutor = Executors.newFixedThreadPool(this.batchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "kalah-batch-" + batchThreadsCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-    public KalahGameServiceImpl() {
-        gamesCount.set(1L);
+    @PreDestroy
+    public void shutdown() {
+        if (cluster.isEnabled()) {
+            cluster.leave();
+            rebalance();
+        }
+        batchExecutor.shutdownNow();
+    }
+
+    /**
+     * Restore the games from the latest snapshot and the event log, then start the periodic snapshots
+     */
+    @PostConstruct
+    public void recoverGames() {
+        snapshotter.load(boardType, game -> {
+            games.put(game);
+            idAllocator.advancePast(cluster.getSequence(game.getGameId()));
+        });
+        eventLog.recover(new KalahEventLog.Listener() {
+            @Override
+            public void onCreate(long gameId, String gameUri, KalahGeometry geometry) {
+                if (games.get(gameId) == null) {
+                    games.put(new KalahGame(gameId, gameUri, boardType, geometry));
+                }
+                idAllocator.advancePast(cluster.getSequence(gameId));
+            }
+
+            @Override
+            public void onMove(long gameId, int sequence, int pit) {
+                KalahGame game = games.get(gameId);
+                // skip the moves of the evicted games and the moves duplicated by an interrupted compaction
+                if (game != null && sequence == game.getMoveSequence() + 1) {
+                    game.makeNextMove(pit);
+                    game.nextMoveSequence();
+                }
+            }
+
+            @Override
+            public void onGame(long gameId, int sequence, ByteBuffer record) {
+                KalahGame game = games.get(gameId);
+                // a game moved to this node replaces an older copy, its later moves follow it in the log
+                if (game == null || game.getMoveSequence() < sequence) {
+                    games.put(KalahSnapshotter.getGame(record, boardType));
+                }
+                idAllocator.advancePast(cluster.getSequence(gameId));
+            }
+        });
+        snapshotter.start(this::snapshotGames);
+        cluster.start(this::rebalance, this::receiveGames);
+    }
+
+    /**
+     * Write a snapshot of all the games, then delete the log segments it covers
+     */
+    public void snapshotGames() {
+        // every game with an event in the earlier segments was stored before, so the snapshot copies it
+        long logSegment = eventLog.getActiveSegment();
+        snapshotter.write(games.getGames(), this::getMoveLock, logSegment);
+        eventLog.deleteSegmentsBefore(logSegment);
+    }
+
+    /**
+     * Move the games owned by other nodes to their owners, after the cluster ring has changed
+     *
+     * @return true if all the games were moved, false if some owner did not take its games
+     */
+    public synchronized boolean rebalance() {
+        Map<Integer, List<KalahGame>> movedGames = new HashMap<>();
+        for (KalahGame game : games.getGames()) {
+            int owner = cluster.getOwner(game.getGameId());
+            if (owner != cluster.getNodeId()) {
+                movedGames.computeIfAbsent(owner, node -> new ArrayList<>()).add(game);
+            }
+        }
+        boolean moved = true;
+        for (Map.Entry<Integer, List<KalahGame>> entry : movedGames.entrySet()) {
+            List<KalahGame> owned = entry.getValue();
+            for (int from = 0; from < owned.size(); from += REBALANCE_BATCH) {
+                moved &= moveGames(entry.getKey(), owned.subList(from, Math.min(owned.size(), from + REBALANCE_BATCH)));
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Remove the games and send them to another node, they are put back if the node does not take them
+     *
+     * @param node       node id
+     * @param candidates games owned by the node
+     * @return true if the node has taken the games
+     */
+    private boolean moveGames(int node, List<KalahGame> candidates) {
+        int size = Integer.BYTES;
+        for (KalahGame game : candidates) {
+            size += KalahSnapshotter.recordSize(game);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(0);
+        List<KalahGame> removed = new ArrayList<>(candidates.size());
+        for (KalahGame game : candidates) {
+            ReentrantLock lock = getMoveLock(game.getGameId());
+            lock.lock();
+            try {
+                // skip a game which has been evicted in the meantime
+                if (games.remove(game)) {
+                    int recordSize = KalahSnapshotter.recordSize(game);
+                    if (buffer.remaining() < recordSize) {
+                        // the history of the game has grown since the buffer was sized
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2 + recordSize).put(buffer.flip());
+                    }
+                    KalahSnapshotter.putGame(buffer, game);
+                    removed.add(game);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        buffer.putInt(0, removed.size()).flip();
+        if (removed.isEmpty() || cluster.sendGames(node, buffer)) {
+            return true;
+        }
+        for (KalahGame game : removed) {
+            games.put(game);
+        }
+        return false;
+    }
+
+    /**
+     * Take the games moved to this node, they replace the copies of the same games with fewer moves. The games
+     * are appended to the event log and durable when the method returns, so the sender may forget them.
+     *
+     * @param buffer number of the games followed by their snapshot records
+     */
+    public void receiveGames(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        long ticket = 0;
+        for (int i = 0; i < count; i++) {
+            int start = buffer.position();
+            ByteBuffer record = buffer.slice();
+            KalahGame game = KalahSnapshotter.getGame(buffer, boardType);
+            record.limit(buffer.position() - start);
+            ReentrantLock lock = getMoveLock(game.getGameId());
+            lock.lock();
+            try {
+                KalahGame existingGame = games.get(game.getGameId());
+                // a stale copy sent by a node which missed the later moves
+                if (existingGame != null && existingGame.getMoveSequence() >= game.getMoveSequence()) {
+                    continue;
+                }
+                games.put(game);
+                ticket = eventLog.appendGame(game.getGameId(), game.getMoveSequence(), record);
+            } finally {
+                lock.unlock();
+            }
+        }
+        eventLog.awaitDurable(ticket);
     }
 
     @Override
     public KalahGame createGame(String requestUri) {
-        Long newGameId = gamesCount.getAndIncrement();
-        KalahGame newGame = new KalahGame(newGameId, requestUri + "/" + newGameId);
-        games.put(newGameId, newGame);
+        return createGame(requestUri, KalahGeometry.STANDARD);
+    }
+
+    @Override
+    public KalahGame createGame(String requestUri, KalahGeometry geometry) {
+        Long newGameId = nextGameId();
+        KalahGame newGame = new KalahGame(newGameId, requestUri + "/" + newGameId, boardType, geometry);
+        // the game is stored before its event is appended, so a snapshot which started before the event either
+        // copies the game or does not delete the log segment of the event; the move lock keeps the events of
+        // the moves after it
+        ReentrantLock lock = getMoveLock(newGameId);
+        long ticket;
+        lock.lock();
+        try {
+            games.put(newGame);
+            ticket = eventLog.appendCreate(newGameId, newGame.getGameUri(), geometry);
+        } catch (RuntimeException e) {
+            games.remove(newGame);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        eventLog.awaitDurable(ticket);
+        metrics.countCreatedGame();
         return newGame;
     }
 
     @Override
-    public KalahGame makeMove(Long gameId, int pitId) {
-        validateGameNumber(gameId);
-        KalahGame game = games.get(gameId);
-        game.makeNextMove(pitId);
-        return game;
+    public KalahGameResponse makeMove(Long gameId, int pitId) {
+        long start = System.nanoTime();
+        ReentrantLock lock = getMoveLock(gameId);
+        KalahGameResponse response;
+        long ticket;
+        lock.lock();
+        try {
+            KalahGame game = getExistingGame(gameId);
+            BoardStatus boardStatus = game.getBoard().getBoardStatus();
+            KalahBoardSnapshot before = events.hasListeners(gameId) ? game.getBoard().getStatus() : null;
+            MoveResult moveResult = game.makeNextMove(pitId);
+            ticket = afterMove(game, boardStatus, before, moveResult, pitId);
+            response = game.getResponse(moveResult);
+        } finally {
+            lock.unlock();
+        }
+        eventLog.awaitDurable(ticket);
+        metrics.recordMove(response.getMoveResult(), start);
+        return response;
+    }
+
+    @Override
+    public KalahBatchMoveResponse makeMoves(Long gameId, int[] pits) {
+        KalahBatchMoveResponse[] responses = new KalahBatchMoveResponse[1];
+        long ticket = makeMoves(gameId, pits, responses, 0);
+        if (responses[0].getMessage() != null) {
+            throw new KalahGameException(responses[0].getMessage());
+        }
+        eventLog.awaitDurable(ticket);
+        return responses[0];
+    }
+
+    @Override
+    public List<KalahBatchMoveResponse> makeMoves(Map<Long, int[]> moves) {
+        List<Map.Entry<Long, int[]>> batches = new ArrayList<>(moves.entrySet());
+        KalahBatchMoveResponse[] responses = new KalahBatchMoveResponse[batches.size()];
+        int workers = Math.min(batchThreads, batches.size());
+        List<CompletableFuture<Long>> tickets = new ArrayList<>(workers);
+        for (int worker = 1; worker < workers; worker++) {
+            int first = worker;
+            tickets.add(CompletableFuture.supplyAsync(
+                    () -> makeMoves(batches, first, workers, responses), batchExecutor));
+        }
+        // the calling thread moves the first slice of the games
+        long ticket = makeMoves(batches, 0, Math.max(1, workers), responses);
+        try {
+            for (CompletableFuture<Long> workerTicket : tickets) {
+                ticket = Math.max(ticket, workerTicket.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        // the events are made durable in the order of the tickets
+        eventLog.awaitDurable(ticket);
+        return Arrays.asList(responses);
     }
 
-    private void validateGameNumber(Long pit) {
-        if (!games.containsKey(pit)) {
+    /**
+     * Make the batches of every n-th game
+     *
+     * @param batches   pit numbers by game ID
+     * @param first     index of the first batch
+     * @param step      distance between the batches
+     * @param responses batch responses by index
+     * @return the greatest ticket to wait for, 0 if no move is logged
+     */
+    private long makeMoves(List<Map.Entry<Long, int[]>> batches, int first, int step,
+                           KalahBatchMoveResponse[] responses) {
+        long ticket = 0;
+        for (int i = first; i < batches.size(); i += step) {
+            ticket = Math.max(ticket, makeMoves(batches.get(i).getKey(), batches.get(i).getValue(), responses, i));
+        }
+        return ticket;
+    }
+
+    /**
+     * Make a batch of moves under the move lock of the game, an unknown game gets an error response
+     *
+     * @param gameId    game ID
+     * @param pits      pit numbers in the order of the moves
+     * @param responses batch responses by index
+     * @param index     index of the batch response
+     * @return the ticket of the last logged move, 0 if no move is logged
+     */
+    private long makeMoves(Long gameId, int[] pits, KalahBatchMoveResponse[] responses, int index) {
+        ReentrantLock lock = getMoveLock(gameId);
+        List<MoveResult> results = new ArrayList<>(pits.length);
+        long ticket = 0;
+        lock.lock();
+        try {
+            KalahGame game = games.get(gameId);
+            if (game == null) {
+                metrics.countError(KalahMetrics.ErrorType.INVALID_GAME_NUMBER);
+                responses[index] = KalahBatchMoveResponse.error(gameId, KalahErrorMessages.INVALID_GAME_NUMBER);
+                return 0;
+            }
+            KalahBoardSnapshot before = events.hasListeners(game.getGameId()) ? game.getBoard().getStatus() : null;
+            boolean changed = false;
+            for (int pit : pits) {
+                BoardStatus boardStatus = game.getBoard().getBoardStatus();
+                MoveResult moveResult = game.makeNextMove(pit);
+                results.add(moveResult);
+                metrics.countMove(moveResult);
+                if (isBoardChanged(boardStatus, moveResult)) {
+                    changed = true;
+                    ticket = Math.max(ticket, appendMove(game, pit));
+                }
+            }
+            if (changed && before != null) {
+                events.publish(KalahBoardDelta.of(game.getGameId(), before, game.getBoard()));
+            }
+            responses[index] = KalahBatchMoveResponse.of(game.getResponse(), results);
+        } finally {
+            lock.unlock();
+        }
+        return ticket;
+    }
+
+    @Override
+    public KalahGameResponse makeComputerMove(Long gameId) {
+        long start = System.nanoTime();
+        ReentrantLock lock = getMoveLock(gameId);
+        KalahGameResponse response;
+        long ticket;
+        while (true) {
+            // the position is searched without the lock, the moves of the other games in its stripe are not blocked
+            KalahGame game;
+            KalahPosition position;
+            int moveSequence;
+            lock.lock();
+            try {
+                game = getExistingGame(gameId);
+                if (game.isFinished()) {
+                    metrics.recordComputerMove(MoveResult.GAME_OVER, start);
+                    return game.getResponse(MoveResult.GAME_OVER);
+                }
+                position = KalahPosition.of(game.getBoard());
+                moveSequence = game.getMoveSequence();
+            } finally {
+                lock.unlock();
+            }
+            int pit = computerPlayer.chooseMove(position);
+            lock.lock();
+            try {
+                // another move was made or the game was replaced during the search, the position is searched again
+                if (getExistingGame(gameId) != game || game.getMoveSequence() != moveSequence) {
+                    continue;
+                }
+                BoardStatus boardStatus = game.getBoard().getBoardStatus();
+                KalahBoardSnapshot before = events.hasListeners(gameId) ? game.getBoard().getStatus() : null;
+                MoveResult moveResult = game.makeNextMove(pit);
+                ticket = afterMove(game, boardStatus, before, moveResult, pit);
+                response = game.getResponse(moveResult);
+            } finally {
+                lock.unlock();
+            }
+            break;
+        }
+        eventLog.awaitDurable(ticket);
+        metrics.recordComputerMove(response.getMoveResult(), start);
+        return response;
+    }
+
+    @Override
+    public void watchGame(Long gameId, KalahGameEvents.Listener listener) {
+        ReentrantLock lock = getMoveLock(gameId);
+        lock.lock();
+        try {
+            KalahGame game = getExistingGame(gameId);
+            // no move can be made between the state and the first update
+            events.subscribe(gameId, listener);
+            listener.onState(game.getResponse());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public KalahGameHistory getHistory(Long gameId) {
+        ReentrantLock lock = getMoveLock(gameId);
+        lock.lock();
+        try {
+            return getExistingGame(gameId).getHistory();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public KalahGameResponse getResponse(Long gameId, int ply) {
+        // the board is reconstructed from the copy of the history, without holding the move lock
+        KalahGameHistory history = getHistory(gameId);
+        if (ply < 0 || ply > history.getPlies()) {
+            metrics.countError(KalahMetrics.ErrorType.INVALID_PLY);
+            throw new KalahGameException(KalahErrorMessages.INVALID_PLY);
+        }
+        return history.getResponse(ply);
+    }
+
+    @Override
+    public void unwatchGame(Long gameId, KalahGameEvents.Listener listener) {
+        events.unsubscribe(gameId, listener);
+    }
+
+    /**
+     * Append the move to the event log and publish it to the watchers if it changed the board, must be called
+     * under the move lock of the game
+     *
+     * @param game        game
+     * @param boardStatus board status before the move
+     * @param before      board snapshot before the move, null if the game is not watched
+     * @param moveResult  outcome of the move
+     * @param pit         pit number
+     * @return the ticket to wait for, 0 if the move is not logged
+     */
+    private long afterMove(KalahGame game, BoardStatus boardStatus, KalahBoardSnapshot before, MoveResult moveResult,
+                           int pit) {
+        if (!isBoardChanged(boardStatus, moveResult)) {
+            return 0;
+        }
+        if (before != null) {
+            events.publish(KalahBoardDelta.of(game.getGameId(), before, game.getBoard()));
+        }
+        return appendMove(game, pit);
+    }
+
+    private static boolean isBoardChanged(BoardStatus boardStatus, MoveResult moveResult) {
+        // an invalid first move still starts the game and may choose the second player
+        return boardStatus == BoardStatus.INITIAL
+                || boardStatus != BoardStatus.FINISHED && moveResult != MoveResult.INVALID;
+    }
+
+    /**
+     * Count the move which changed the board and append it to the event log, must be called under the move lock
+     * of the game. The move sequence orders the copies of a game moved between the nodes, even without the log.
+     *
+     * @return the ticket to wait for, 0 if the log is disabled
+     */
+    private long appendMove(KalahGame game, int pit) {
+        int sequence = game.nextMoveSequence();
+        if (!eventLog.isEnabled()) {
+            return 0;
+        }
+        return eventLog.appendMove(game.getGameId(), sequence, pit);
+    }
+
+    private long nextGameId() {
+        long gameId = cluster.getGameId(idAllocator.next());
+        // a node owns about 1/n of the ids, the skipped ids are never used; a leaving node owns none
+        while (!cluster.isLocal(gameId) && !cluster.isLeaving()) {
+            gameId = cluster.getGameId(idAllocator.next());
+        }
+        return gameId;
+    }
+
+    /**
+     * Get the stored game, must be called under its move lock, so the game is not sent to another node or
+     * replaced by a received copy before the lock is released
+     */
+    private KalahGame getExistingGame(Long gameId) {
+        KalahGame game = games.get(gameId);
+        if (game == null) {
+            metrics.countError(KalahMetrics.ErrorType.INVALID_GAME_NUMBER);
             throw new KalahGameException(KalahErrorMessages.INVALID_GAME_NUMBER);
         }
+        return game;
+    }
+
+    private ReentrantLock getMoveLock(long gameId) {
+        // spread the id bits, game ids are sequential
+        int hash = (int) (gameId ^ (gameId >>> 32)) * 0x9E3779B9;
+        return moveLocks[(hash ^ (hash >>> 16)) & (moveLocks.length - 1)];
     }
 }
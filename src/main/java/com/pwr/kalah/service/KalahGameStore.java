@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahGame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory storage of {@link KalahGame} instances.
+ * <p>
+ * A background thread periodically removes the games which were not moved for longer than the idle TTL,
+ * finished games after a shorter TTL and, when there are more games than the maximum size, the least
+ * recently moved ones. The games are never evicted on the request threads.
+ */
+@Component
+public class KalahGameStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahGameStore.class);
+
+    private final Map<Long, KalahGame> games = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+    private final long idleTtlMillis;
+    private final long finishedTtlMillis;
+    private final long evictionIntervalMillis;
+
+    private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kalah-game-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean evictionRequested = new AtomicBoolean();
+
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong finishedEvictions = new AtomicLong();
+    private final AtomicLong capacityEvictions = new AtomicLong();
+
+    // finished games kept after the last eviction run, counted by the scan of the expired games
+    private volatile int finishedGames;
+
+    public KalahGameStore(@Value("${kalah.games.max-size:100000}") int maxSize,
+                          @Value("${kalah.games.idle-ttl:30m}") Duration idleTtl,
+                          @Value("${kalah.games.finished-ttl:1m}") Duration finishedTtl,
+                          @Value("${kalah.games.eviction-interval:10s}") Duration evictionInterval) {
+        this.maxSize = maxSize;
+        this.idleTtlMillis = idleTtl.toMillis();
+        this.finishedTtlMillis = finishedTtl.toMillis();
+        this.evictionIntervalMillis = evictionInterval.toMillis();
+    }
+
+    @PostConstruct
+    public void startEviction() {
+        evictionExecutor.scheduleWithFixedDelay(this::evict, evictionIntervalMillis, evictionIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopEviction() {
+        evictionExecutor.shutdownNow();
+    }
+
+    public KalahGame get(Long gameId) {
+        return games.get(gameId);
+    }
+
+    public void put(KalahGame game) {
+        games.put(game.getGameId(), game);
+        if (games.size() > maxSize && !evictionExecutor.isShutdown() && evictionRequested.compareAndSet(false, true)) {
+            // do not wait for the next scheduled run, but do not block the caller either
+            evictionExecutor.execute(this::evict);
+        }
+    }
+
+    /**
+     * Remove the game, unless it has been replaced or removed already
+     *
+     * @param game game
+     * @return true if the game was removed
+     */
+    public boolean remove(KalahGame game) {
+        return games.remove(game.getGameId(), game);
+    }
+
+    /**
+     * Get the stored games, the view is not blocked by the concurrent changes and may not reflect them
+     *
+     * @return unmodifiable view of the games
+     */
+    public Collection<KalahGame> getGames() {
+        return Collections.unmodifiableCollection(games.values());
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * Get the number of the finished games, as of the last eviction run
+     *
+     * @return finished games
+     */
+    public int getFinishedGames() {
+        return finishedGames;
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions.get();
+    }
+
+    public long getFinishedEvictions() {
+        return finishedEvictions.get();
+    }
+
+    public long getCapacityEvictions() {
+        return capacityEvictions.get();
+    }
+
+    /**
+     * Remove expired games, then the least recently moved games above the maximum size
+     */
+    synchronized void evict() {
+        evictionRequested.set(false);
+        try {
+            evictExpired(System.currentTimeMillis());
+            evictLeastRecentlyUsed();
+        } catch (RuntimeException e) {
+            // keep the scheduled eviction running
+            LOGGER.error("Games eviction failed", e);
+        }
+    }
+
+    private void evictExpired(long now) {
+        int finished = 0;
+        for (Map.Entry<Long, KalahGame> entry : games.entrySet()) {
+            KalahGame game = entry.getValue();
+            long idleTime = now - game.getLastAccessTime();
+            if (game.isFinished() && idleTime > finishedTtlMillis) {
+                if (games.remove(entry.getKey(), game)) {
+                    finishedEvictions.incrementAndGet();
+                }
+            } else if (idleTime > idleTtlMillis && games.remove(entry.getKey(), game)) {
+                idleEvictions.incrementAndGet();
+            } else if (game.isFinished()) {
+                finished++;
+            }
+        }
+        finishedGames = finished;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        int excess = games.size() - maxSize;
+        if (excess <= 0) {
+            return;
+        }
+
+        // find the access time of the excess-th oldest game, all games up to this time are evicted
+        long[] accessTimes = new long[games.size()];
+        int count = 0;
+        for (KalahGame game : games.values()) {
+            if (count == accessTimes.length) {
+                break;
+            }
+            accessTimes[count++] = game.getLastAccessTime();
+        }
+        Arrays.sort(accessTimes, 0, count);
+        long threshold = accessTimes[Math.min(excess, count) - 1];
+
+        Iterator<Map.Entry<Long, KalahGame>> iterator = games.entrySet().iterator();
+        while (iterator.hasNext() && excess > 0) {
+            Map.Entry<Long, KalahGame> entry = iterator.next();
+            if (entry.getValue().getLastAccessTime() <= threshold && games.remove(entry.getKey(), entry.getValue())) {
+                capacityEvictions.incrementAndGet();
+                excess--;
+            }
+        }
+        LOGGER.debug("Evicted least recently used games, {} games left", games.size());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable consistent hash ring, which maps the game ids to the owning nodes.
+ * <p>
+ * Every node is placed on the ring at a number of virtual points, and a game belongs to the node of the first
+ * point at or after the hash of its id. When a node joins or leaves, only the games of the ring arcs it gains
+ * or loses change their owner, about 1/n of all the games. The points are kept in a sorted primitive array,
+ * so a lookup is a binary search without allocation.
+ */
+public final class KalahHashRing {
+
+    private final BitSet nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Ring constructor
+     *
+     * @param nodes        ids of the nodes on the ring
+     * @param virtualNodes number of the points of every node
+     */
+    public KalahHashRing(BitSet nodes, int virtualNodes) {
+        this.nodes = (BitSet) nodes.clone();
+        int count = nodes.cardinality() * virtualNodes;
+        long[] keys = new long[count];
+        int i = 0;
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            for (int point = 0; point < virtualNodes; point++) {
+                // the low bits keep the node, so the sorted keys still know their owners
+                keys[i++] = (mix(((long) node << 32) | point) & ~0xFFFFL) | node;
+            }
+        }
+        Arrays.sort(keys);
+        points = new long[count];
+        owners = new int[count];
+        for (i = 0; i < count; i++) {
+            points[i] = keys[i] & ~0xFFFFL;
+            owners[i] = (int) (keys[i] & 0xFFFFL);
+        }
+    }
+
+    /**
+     * Get the node which owns the game
+     *
+     * @param gameId game ID
+     * @return node id, or -1 if the ring has no nodes
+     */
+    public int getOwner(long gameId) {
+        if (points.length == 0) {
+            return -1;
+        }
+        long hash = mix(gameId) & ~0xFFFFL;
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Get the nodes on the ring
+     *
+     * @return copy of the node ids
+     */
+    public BitSet getNodes() {
+        return (BitSet) nodes.clone();
+    }
+
+    public boolean contains(int node) {
+        return nodes.get(node);
+    }
+
+    // the finalizer of MurmurHash3, game ids are sequential and need all their bits spread
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
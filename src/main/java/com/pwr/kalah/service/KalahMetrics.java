@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.MoveResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game metrics, exported by the application {@link MeterRegistry}.
+ * <p>
+ * All the meters are registered up front and kept in fields and arrays indexed by the enum ordinals, so
+ * recording a request, a move or an error does not look up a meter or allocate. The latencies are recorded
+ * in histograms with fixed buckets for the Prometheus queries, and in HdrHistogram-based percentiles.
+ */
+@Component
+public class KalahMetrics {
+
+    /**
+     * Error outcomes of the requests, named after their {@link com.pwr.kalah.model.KalahErrorMessages}
+     */
+    public enum ErrorType {
+        INVALID_GAME_NUMBER,
+        NON_NUMERIC_VALUE,
+        INVALID_MOVE,
+        GAME_OVER,
+        TOO_MANY_MOVES,
+        INVALID_PLY,
+        INVALID_GEOMETRY,
+        INPUT_ARRAY_LENGTH_SIZE_IS_INVALID
+    }
+
+    /**
+     * Timed requests of the web stacks
+     */
+    public enum Request {
+        CREATE_GAME,
+        MOVE,
+        COMPUTER_MOVE,
+        BATCH_MOVES,
+        HISTORY,
+        REPLAY
+    }
+
+    private final Timer[] requestTimers;
+    private final Timer moveTimer;
+    private final Timer computerMoveTimer;
+    private final Counter[] moveCounters;
+    private final Counter[] errorCounters;
+    private final Counter gamesCreated;
+
+    public KalahMetrics(MeterRegistry registry, KalahGameStore store) {
+        Request[] requests = Request.values();
+        requestTimers = new Timer[requests.length];
+        for (Request request : requests) {
+            requestTimers[request.ordinal()] = latencyTimer("kalah.requests", Duration.ofSeconds(1))
+                    .description("Latency of the game requests, including the JSON mapping of the servlet stack")
+                    .tag("request", tagValue(request))
+                    .register(registry);
+        }
+        moveTimer = latencyTimer("kalah.service.moves", Duration.ofSeconds(1))
+                .description("Latency of the player moves in the game service, including the event log")
+                .register(registry);
+        computerMoveTimer = latencyTimer("kalah.ai.moves", Duration.ofSeconds(10))
+                .description("Latency of the computer moves in the game service, mostly the search")
+                .register(registry);
+
+        MoveResult[] moveResults = MoveResult.values();
+        moveCounters = new Counter[moveResults.length];
+        for (MoveResult moveResult : moveResults) {
+            moveCounters[moveResult.ordinal()] = Counter.builder("kalah.moves")
+                    .description("Moves by their outcome")
+                    .tag("result", tagValue(moveResult))
+                    .register(registry);
+        }
+        ErrorType[] errorTypes = ErrorType.values();
+        errorCounters = new Counter[errorTypes.length];
+        for (ErrorType errorType : errorTypes) {
+            errorCounters[errorType.ordinal()] = Counter.builder("kalah.errors")
+                    .description("Bad requests by their error message")
+                    .tag("error", tagValue(errorType))
+                    .register(registry);
+        }
+        gamesCreated = Counter.builder("kalah.games.created")
+                .description("Created games")
+                .register(registry);
+
+        Gauge.builder("kalah.games", store, KalahGameStore::size)
+                .description("Games kept in the memory")
+                .register(registry);
+        Gauge.builder("kalah.games.finished", store, KalahGameStore::getFinishedGames)
+                .description("Finished games, as of the last eviction run")
+                .register(registry);
+        Gauge.builder("kalah.games.active", store, games -> Math.max(0, games.size() - games.getFinishedGames()))
+                .description("Games which are not finished, as of the last eviction run")
+                .register(registry);
+        FunctionCounter.builder("kalah.games.evicted", store, KalahGameStore::getIdleEvictions)
+                .tag("reason", "idle")
+                .register(registry);
+        FunctionCounter.builder("kalah.games.evicted", store, KalahGameStore::getFinishedEvictions)
+                .tag("reason", "finished")
+                .register(registry);
+        FunctionCounter.builder("kalah.games.evicted", store, KalahGameStore::getCapacityEvictions)
+                .tag("reason", "capacity")
+                .register(registry);
+    }
+
+    private static Timer.Builder latencyTimer(String name, Duration maximum) {
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1_000))
+                .maximumExpectedValue(maximum);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Record a request of the web stacks
+     *
+     * @param request   request type
+     * @param startNanos {@link System#nanoTime()} at the start of the request
+     */
+    public void recordRequest(Request request, long startNanos) {
+        requestTimers[request.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a player move made by the game service
+     *
+     * @param moveResult outcome of the move
+     * @param startNanos {@link System#nanoTime()} at the start of the move
+     */
+    public void recordMove(MoveResult moveResult, long startNanos) {
+        moveTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        countMove(moveResult);
+    }
+
+    /**
+     * Record a computer move made by the game service
+     *
+     * @param moveResult outcome of the move
+     * @param startNanos {@link System#nanoTime()} at the start of the move
+     */
+    public void recordComputerMove(MoveResult moveResult, long startNanos) {
+        computerMoveTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        countMove(moveResult);
+    }
+
+    /**
+     * Count a move, the invalid moves and the moves of the finished games are counted as errors too
+     *
+     * @param moveResult outcome of the move
+     */
+    public void countMove(MoveResult moveResult) {
+        moveCounters[moveResult.ordinal()].increment();
+        if (moveResult == MoveResult.INVALID) {
+            countError(ErrorType.INVALID_MOVE);
+        } else if (moveResult == MoveResult.GAME_OVER) {
+            countError(ErrorType.GAME_OVER);
+        }
+    }
+
+    /**
+     * Count a bad request
+     *
+     * @param errorType error of the request
+     */
+    public void countError(ErrorType errorType) {
+        errorCounters[errorType.ordinal()].increment();
+    }
+
+    /**
+     * Count a game created by the game service
+     */
+    public void countCreatedGame() {
+        gamesCreated.increment();
+    }
+}
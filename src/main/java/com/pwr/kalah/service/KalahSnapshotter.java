@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.BoardStatus;
+import com.pwr.kalah.model.KalahBoard;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Periodic binary snapshots of all the stored games, so a restart does not replay every logged move.
+ * <p>
+ * A snapshot file starts with a header (magic, number of games, the {@link KalahEventLog} segment which was active
+ * when the snapshot started) and ends with the magic again. Every game is written as its id, URI, geometry, current
+ * player, board status, the sequence number of its last logged move, the stones of all the pits and the recorded
+ * moves of its {@link com.pwr.kalah.model.KalahGameHistory}. The snapshots written before the moves were recorded
+ * are still loaded, their games keep no history.
+ * <p>
+ * The games are copied one by one under their own move locks, so the moves are never stopped for the whole
+ * snapshot, and written through a {@link FileChannel} into a temporary file, which replaces the previous snapshot
+ * atomically. The latest snapshot is loaded on startup with memory-mapped reads. Snapshots are disabled when no
+ * directory is configured.
+ */
+@Component
+public class KalahSnapshotter {
+
+    static final int MAGIC = 0x4b534e32;
+
+    // Snapshots without the recorded moves
+    private static final int MAGIC_WITHOUT_HISTORY = 0x4b534e31;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KalahSnapshotter.class);
+
+    // magic, number of games and the log segment
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String SNAPSHOT_PREFIX = "kalah-snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMPORARY_FILE = "kalah-snapshot.tmp";
+
+    private final Path directory;
+    private final long intervalMillis;
+
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kalah-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public KalahSnapshotter(@Value("${kalah.snapshot.dir:}") String directory,
+                            @Value("${kalah.snapshot.interval:5m}") Duration interval) {
+        this.directory = directory == null || directory.isEmpty() ? null : Paths.get(directory);
+        this.intervalMillis = interval.toMillis();
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Run the given snapshot task periodically
+     *
+     * @param task task which takes a snapshot with {@link #write(Iterable, LongFunction, long)}
+     */
+    public void start(Runnable task) {
+        if (!isEnabled()) {
+            return;
+        }
+        snapshotExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // keep the scheduled snapshots running
+                LOGGER.error("Games snapshot failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        snapshotExecutor.shutdownNow();
+    }
+
+    /**
+     * Write a snapshot of the games, it replaces the previous snapshot when it is complete
+     *
+     * @param games      games to write
+     * @param locks      move lock of a game by its id, a game is copied under its lock
+     * @param logSegment the event log segment which was active before the snapshot started
+     * @return number of the written games
+     */
+    public long write(Iterable<KalahGame> games, LongFunction<Lock> locks, long logSegment) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temporary = directory.resolve(TEMPORARY_FILE);
+            long count = 0;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                buffer.putInt(MAGIC).putLong(0).putLong(logSegment);
+                for (KalahGame game : games) {
+                    byte[] uri = game.getGameUri().getBytes(StandardCharsets.UTF_8);
+                    Lock lock = locks.apply(game.getGameId());
+                    lock.lock();
+                    try {
+                        // the history grows with the moves, so the size of the record is only known under the lock
+                        if (buffer.remaining() < recordSize(uri.length, game)) {
+                            write(channel, buffer);
+                        }
+                        putGame(buffer, game, uri);
+                    } finally {
+                        lock.unlock();
+                    }
+                    count++;
+                }
+                if (buffer.remaining() < Integer.BYTES) {
+                    write(channel, buffer);
+                }
+                buffer.putInt(MAGIC);
+                write(channel, buffer);
+
+                buffer.putLong(count).flip();
+                channel.write(buffer, Integer.BYTES);
+                channel.force(false);
+            }
+
+            Path snapshot = directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, System.currentTimeMillis(),
+                    SNAPSHOT_SUFFIX));
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Path previous : listSnapshots()) {
+                if (!previous.equals(snapshot)) {
+                    Files.delete(previous);
+                }
+            }
+            LOGGER.debug("Snapshot {} of {} games written", snapshot, count);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the games snapshot to " + directory, e);
+        }
+    }
+
+    /**
+     * Load the games of the latest snapshot
+     *
+     * @param boardType board implementation of the loaded games
+     * @param consumer  receiver of the loaded games
+     * @return number of the loaded games
+     */
+    public long load(KalahBoardType boardType, Consumer<KalahGame> consumer) {
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return 0;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(TEMPORARY_FILE));
+            List<Path> snapshots = listSnapshots();
+            if (snapshots.isEmpty()) {
+                return 0;
+            }
+            Path snapshot = snapshots.get(snapshots.size() - 1);
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE + Integer.BYTES || size > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid snapshot size " + size);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                int magic = buffer.getInt();
+                if (magic != MAGIC && magic != MAGIC_WITHOUT_HISTORY
+                        || buffer.getInt((int) size - Integer.BYTES) != magic) {
+                    throw new IOException("Snapshot is not complete");
+                }
+                long count = buffer.getLong();
+                buffer.getLong();
+                for (long i = 0; i < count; i++) {
+                    consumer.accept(getGame(buffer, boardType, magic == MAGIC));
+                }
+                LOGGER.info("Loaded {} games from the snapshot {}", count, snapshot);
+                return count;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Can not load the games snapshot from " + directory, e);
+        }
+    }
+
+    /**
+     * Get the size of the record of a game, must be called under the move lock of the game
+     *
+     * @param game game
+     * @return record size in bytes
+     */
+    static int recordSize(KalahGame game) {
+        return recordSize(game.getGameUri().getBytes(StandardCharsets.UTF_8).length, game);
+    }
+
+    private static int recordSize(int uriLength, KalahGame game) {
+        // id, URI, geometry, player, status, move sequence, pits and history
+        return Long.BYTES + Short.BYTES + uriLength + 4 + Integer.BYTES
+                + game.getBoard().getGeometry().getPits() * Short.BYTES + game.getHistorySize();
+    }
+
+    /**
+     * Write the record of a game, must be called under the move lock of the game
+     *
+     * @param buffer buffer with {@link #recordSize(KalahGame)} bytes remaining
+     * @param game   game
+     */
+    static void putGame(ByteBuffer buffer, KalahGame game) {
+        putGame(buffer, game, game.getGameUri().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void putGame(ByteBuffer buffer, KalahGame game, byte[] uri) {
+        KalahBoard board = game.getBoard();
+        KalahGeometry geometry = board.getGeometry();
+        buffer.putLong(game.getGameId())
+                .putShort((short) uri.length).put(uri)
+                .put((byte) geometry.getPitsPerPlayer()).put((byte) geometry.getStonesPerPit())
+                .put((byte) board.getCurrentPlayer().ordinal()).put((byte) board.getBoardStatus().ordinal())
+                .putInt(game.getMoveSequence());
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            buffer.putShort((short) board.getPitStones(pit));
+        }
+        game.putHistory(buffer);
+    }
+
+    /**
+     * Read the record of a game
+     *
+     * @param buffer    buffer positioned at the record
+     * @param boardType board implementation of the game
+     * @return game
+     */
+    static KalahGame getGame(ByteBuffer buffer, KalahBoardType boardType) {
+        return getGame(buffer, boardType, true);
+    }
+
+    private static KalahGame getGame(ByteBuffer buffer, KalahBoardType boardType, boolean withHistory) {
+        long gameId = buffer.getLong();
+        byte[] uri = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(uri);
+        KalahGeometry geometry = KalahGeometry.of(buffer.get(), buffer.get());
+        Player player = Player.values()[buffer.get()];
+        BoardStatus boardStatus = BoardStatus.values()[buffer.get()];
+
+        KalahGame game = new KalahGame(gameId, new String(uri, StandardCharsets.UTF_8), boardType, geometry);
+        game.setMoveSequence(buffer.getInt());
+        KalahBoard board = game.getBoard();
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            board.setPitStones(pit, buffer.getShort() & 0xFFFF);
+        }
+        board.setCurrentPlayer(player);
+        board.setBoardStatus(boardStatus);
+        if (withHistory) {
+            game.restoreHistory(buffer);
+        } else {
+            game.discardHistory();
+        }
+        return game;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            files.forEach(snapshots::add);
+        }
+        // the names are ordered by the zero padded time
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.view;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.pwr.kalah.model.KalahBoardSnapshot;
+import com.pwr.kalah.model.KalahGameResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes {@link KalahGameResponse} straight to the JSON generator.
+ * <p>
+ * The output is the same as the one of the annotated fields, including the {@link KalahView} filtering,
+ * but the field names are pre-encoded and the {@link KalahBoardSnapshot} pits are written without boxing.
+ * The id and the URI of a response made by a game are encoded by the game once, so only the status is encoded
+ * for every move.
+ */
+public class KalahGameResponseSerializer extends StdSerializer<KalahGameResponse> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString URI = new SerializedString("uri");
+    private static final SerializedString STATUS = new SerializedString("status");
+
+    // The generator feature the JSON write feature is mapped to, the generators are configured with either of them
+    private static final JsonGenerator.Feature NUMBERS_AS_STRINGS =
+            JsonWriteFeature.WRITE_NUMBERS_AS_STRINGS.mappedFeature();
+
+    // Pre-encoded pit numbers, used as the status field names
+    private static final SerializedString[] PITS = new SerializedString[64];
+
+    static {
+        for (int i = 0; i < PITS.length; i++) {
+            PITS[i] = new SerializedString(String.valueOf(i));
+        }
+    }
+
+    public KalahGameResponseSerializer() {
+        super(KalahGameResponse.class);
+    }
+
+    @Override
+    public void serialize(KalahGameResponse response, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(response);
+        gen.writeFieldName(ID);
+        if (response.getId() == null) {
+            gen.writeNull();
+        } else if (response.getEncodedId() != null && gen.isEnabled(NUMBERS_AS_STRINGS)) {
+            gen.writeString(response.getEncodedId());
+        } else {
+            gen.writeNumber(response.getId());
+        }
+        gen.writeFieldName(URI);
+        if (response.getEncodedUri() != null) {
+            gen.writeString(response.getEncodedUri());
+        } else {
+            gen.writeString(response.getUri());
+        }
+        if (isStatusInView(provider.getActiveView())) {
+            gen.writeFieldName(STATUS);
+            writeStatus(response.getStatus(), gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private static boolean isStatusInView(Class<?> view) {
+        return view == null || KalahView.GameMove.class.isAssignableFrom(view);
+    }
+
+    private static void writeStatus(Map<Integer, Integer> status, JsonGenerator gen) throws IOException {
+        if (status == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        if (status instanceof KalahBoardSnapshot) {
+            KalahBoardSnapshot snapshot = (KalahBoardSnapshot) status;
+            for (int pit = 1; pit <= snapshot.getPitsCount(); pit++) {
+                writePitName(pit, gen);
+                gen.writeNumber(snapshot.getPitStones(pit));
+            }
+        } else {
+            for (Map.Entry<Integer, Integer> pit : status.entrySet()) {
+                writePitName(pit.getKey(), gen);
+                gen.writeNumber(pit.getValue());
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writePitName(int pit, JsonGenerator gen) throws IOException {
+        if (pit >= 0 && pit < PITS.length) {
+            gen.writeFieldName(PITS[pit]);
+        } else {
+            gen.writeFieldName(String.valueOf(pit));
+        }
+    }
+}
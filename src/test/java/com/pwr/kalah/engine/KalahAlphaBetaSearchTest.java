@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahBoard;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahAlphaBetaSearch} Unit Tests
+ */
+@DisplayName("KalahAlphaBetaSearch Unit Tests")
+class KalahAlphaBetaSearchTest {
+
+    private static final KalahGeometry GEOMETRY = KalahGeometry.STANDARD;
+    private static final long NO_TIME_LIMIT = 60_000;
+
+    @Test
+    void testCaptureIsChosen() {
+        KalahPosition position = position(Player.FIRST, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 20, 0, 0);
+        KalahSearchResult result = new KalahAlphaBetaSearch(4).search(position, NO_TIME_LIMIT);
+        assertEquals(1, result.getBestPit(), "Capturing 20 stones is the best move");
+    }
+
+    @Test
+    void testInitialPositionMoveWithinTimeBudget() {
+        KalahPosition position = KalahPosition.initial();
+        long start = System.currentTimeMillis();
+        KalahSearchResult result = new KalahAlphaBetaSearch(64).search(position, 50);
+        assertTrue(System.currentTimeMillis() - start < 1_000, "Search should stop when the time is over");
+        assertTrue(position.isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        assertTrue(result.getDepth() >= 1, "At least one iteration should be completed");
+    }
+
+    @Test
+    void testSameScoreAsMinimax() {
+        Random random = new Random(7);
+        KalahTranspositionTable table = new KalahTranspositionTable(1 << 12);
+        for (int i = 0; i < 200; i++) {
+            int[] pits = new int[GEOMETRY.getPits()];
+            for (int stone = 0; stone < 7; stone++) {
+                int pit = random.nextInt(GEOMETRY.getPits());
+                if (pit != GEOMETRY.getKalahPit(Player.FIRST) - 1 && pit != GEOMETRY.getKalahPit(Player.SECOND) - 1) {
+                    pits[pit]++;
+                }
+            }
+            KalahPosition position = position(random.nextBoolean() ? Player.FIRST : Player.SECOND, pits);
+            if (position.isGameOver()) {
+                continue;
+            }
+            int expectedScore = minimax(position);
+            KalahSearchResult result = new KalahAlphaBetaSearch(64).search(position, NO_TIME_LIMIT);
+            assertEquals(expectedScore, result.getScore(), "Alpha-beta score differs in " + position);
+
+            // the table is shared by the searches, the results should not depend on the previous ones
+            table.newSearch();
+            result = new KalahAlphaBetaSearch(64, table).search(position, NO_TIME_LIMIT);
+            assertEquals(expectedScore, result.getScore(), "Alpha-beta score with the table differs in " + position);
+        }
+        assertTrue(table.getHitRate() > 0, "Transposition table should be used");
+    }
+
+    @Test
+    void testDepthLimitedSearchWithTable() {
+        KalahTranspositionTable table = new KalahTranspositionTable(1 << 16);
+        KalahPosition position = KalahPosition.initial();
+        for (int depth = 1; depth <= 8; depth++) {
+            table.newSearch();
+            assertEquals(new KalahAlphaBetaSearch(depth).search(position, NO_TIME_LIMIT).getScore(),
+                    new KalahAlphaBetaSearch(depth, table).search(position, NO_TIME_LIMIT).getScore(),
+                    "Score with the table differs at depth " + depth);
+        }
+    }
+
+    @Test
+    void testSameScoreAsMinimaxOnSmallBoards() {
+        KalahTranspositionTable table = new KalahTranspositionTable(1 << 12);
+        for (KalahGeometry geometry : new KalahGeometry[]{KalahGeometry.of(2, 2), KalahGeometry.of(3, 1), KalahGeometry.of(1, 5)}) {
+            KalahPosition position = KalahPosition.initial(geometry);
+            int expectedScore = minimax(position);
+            assertEquals(expectedScore, new KalahAlphaBetaSearch(64).search(position, NO_TIME_LIMIT).getScore(),
+                    "Alpha-beta score differs in " + geometry);
+            table.newSearch();
+            assertEquals(expectedScore, new KalahAlphaBetaSearch(64, table).search(position, NO_TIME_LIMIT).getScore(),
+                    "Alpha-beta score with the table differs in " + geometry);
+        }
+    }
+
+    private static int minimax(KalahPosition position) {
+        if (position.isGameOver()) {
+            return KalahAlphaBetaSearch.evaluate(position);
+        }
+        int bestScore = -KalahAlphaBetaSearch.INFINITY;
+        int firstPit = position.getGeometry().getFirstPit(position.getCurrentPlayer());
+        for (int pit = firstPit; pit < firstPit + position.getGeometry().getPitsPerPlayer(); pit++) {
+            if (position.isLegalMove(pit)) {
+                KalahPosition child = new KalahPosition(position.getGeometry());
+                child.copyFrom(position);
+                child.play(pit);
+                int score = minimax(child);
+                bestScore = Math.max(bestScore, child.getCurrentPlayer() == position.getCurrentPlayer() ? score : -score);
+            }
+        }
+        return bestScore;
+    }
+
+    static KalahPosition position(Player player, int... pits) {
+        KalahBoard board = new KalahGame(1L).getBoard();
+        board.fillGameFieldWithSample(pits);
+        board.setCurrentPlayer(player);
+        return KalahPosition.of(board);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.pwr.kalah.engine.KalahAlphaBetaSearchTest.position;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahMonteCarloSearch} Unit Tests
+ */
+@DisplayName("KalahMonteCarloSearch Unit Tests")
+class KalahMonteCarloSearchTest {
+
+    private static final long MEMORY = 1 << 20;
+    private static final int THREADS = 4;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS - 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCaptureIsChosen() {
+        KalahPosition position = position(Player.FIRST, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 20, 0, 0);
+        KalahSearchResult result = new KalahMonteCarloSearch(1, MEMORY, null).search(position, 200);
+        assertEquals(1, result.getBestPit(), "Capturing 20 stones is the best move");
+        assertTrue(result.getScore() > 500, "The capture should win the game");
+        assertTrue(result.getNodes() > 0, "Playouts should be counted");
+    }
+
+    @Test
+    void testParallelPlayoutsChooseTheCapture() {
+        KalahPosition position = position(Player.FIRST, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 20, 0, 0);
+        KalahMonteCarloSearch search = new KalahMonteCarloSearch(THREADS, MEMORY, executor);
+        KalahSearchResult result = search.search(position, 200);
+        assertEquals(1, result.getBestPit(), "Capturing 20 stones is the best move");
+        assertTrue(search.getSize() <= search.getCapacity(), "The tree should stay within its capacity");
+    }
+
+    @Test
+    void testTreeIsReusedBetweenMoves() {
+        KalahMonteCarloSearch search = new KalahMonteCarloSearch(1, MEMORY, null);
+        KalahPosition position = KalahPosition.initial();
+        position.play(search.search(position, 50).getBestPit());
+        // the opponent moves until it is the first player's turn again
+        while (position.getCurrentPlayer() == Player.SECOND) {
+            int pit = position.getGeometry().getFirstPit(Player.SECOND);
+            while (!position.isLegalMove(pit)) {
+                pit++;
+            }
+            position.play(pit);
+        }
+        assertTrue(search.isReusable(position), "The position follows the root of the tree");
+        int size = search.getSize();
+        KalahSearchResult result = search.search(position, 50);
+        assertEquals(1, search.getReuses(), "The second search should continue the tree");
+        assertTrue(position.isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        assertTrue(search.getSize() > 1 && size > 1, "The subtree should be kept");
+
+        assertFalse(search.isReusable(position(Player.FIRST, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 20, 0, 0)),
+                "Another game should start a new tree");
+    }
+
+    @Test
+    void testNodesAreRecycledWhenTheArenaIsFull() {
+        KalahMonteCarloSearch search = new KalahMonteCarloSearch(THREADS, 256 * KalahMonteCarloSearch.BYTES_PER_NODE,
+                executor);
+        KalahPosition position = KalahPosition.initial();
+        KalahSearchResult result = search.search(position, 100);
+        // the first search of the test JVM may be slowed down by the class loading
+        for (int i = 0; i < 10 && search.getRecycles() == 0; i++) {
+            result = search.search(position, 100);
+        }
+        assertTrue(search.getRecycles() > 0, "The small arena should fill");
+        assertTrue(search.getSize() <= search.getCapacity(), "The tree should stay within its capacity");
+        assertTrue(position.isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        assertThrows(IllegalArgumentException.class, () -> new KalahMonteCarloSearch(1, 1_000, null));
+    }
+
+    @Test
+    void testHelpersWhichDidNotStartAreNotWaitedFor() {
+        ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            busyExecutor.submit(() -> {
+                release.await();
+                return null;
+            });
+            KalahMonteCarloSearch search = new KalahMonteCarloSearch(THREADS, MEMORY, busyExecutor);
+            long start = System.currentTimeMillis();
+            KalahSearchResult result = search.search(KalahPosition.initial(), 50);
+            assertTrue(System.currentTimeMillis() - start < 1_000, "Search should not wait for the queued helpers");
+            assertTrue(KalahPosition.initial().isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        } finally {
+            release.countDown();
+            busyExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.pwr.kalah.engine.KalahAlphaBetaSearchTest.position;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahParallelSearch} Unit Tests
+ */
+@DisplayName("KalahParallelSearch Unit Tests")
+class KalahParallelSearchTest {
+
+    private static final KalahGeometry GEOMETRY = KalahGeometry.STANDARD;
+    private static final long NO_TIME_LIMIT = 60_000;
+    private static final int THREADS = 4;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS - 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSameScoreAsSingleThreadSearch() {
+        Random random = new Random(11);
+        KalahTranspositionTable table = new KalahTranspositionTable(1 << 12);
+        KalahParallelSearch search = new KalahParallelSearch(THREADS, 64, table, null, executor);
+        for (int i = 0; i < 200; i++) {
+            int[] pits = new int[GEOMETRY.getPits()];
+            for (int stone = 0; stone < 7; stone++) {
+                int pit = random.nextInt(GEOMETRY.getPits());
+                if (pit != GEOMETRY.getKalahPit(Player.FIRST) - 1 && pit != GEOMETRY.getKalahPit(Player.SECOND) - 1) {
+                    pits[pit]++;
+                }
+            }
+            KalahPosition position = position(random.nextBoolean() ? Player.FIRST : Player.SECOND, pits);
+            if (position.isGameOver()) {
+                continue;
+            }
+            // both searches solve such small positions, so the scores should be exact
+            table.newSearch();
+            assertEquals(new KalahAlphaBetaSearch(64).search(position, NO_TIME_LIMIT).getScore(),
+                    search.search(position, NO_TIME_LIMIT).getScore(), "Parallel search score differs in " + position);
+        }
+    }
+
+    @Test
+    void testInitialPositionMoveWithinTimeBudget() {
+        KalahParallelSearch search = new KalahParallelSearch(THREADS, 64, new KalahTranspositionTable(1 << 16), null, executor);
+        KalahPosition position = KalahPosition.initial();
+        long start = System.currentTimeMillis();
+        KalahSearchResult result = search.search(position, 50);
+        assertTrue(System.currentTimeMillis() - start < 1_000, "Search should stop when the time is over");
+        assertTrue(position.isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        assertTrue(result.getDepth() >= 1, "At least one iteration should be completed");
+    }
+
+    @Test
+    void testHelpersWhichDidNotStartAreNotWaitedFor() {
+        ExecutorService busyExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            busyExecutor.submit(() -> {
+                release.await();
+                return null;
+            });
+            KalahParallelSearch search = new KalahParallelSearch(THREADS, 64, new KalahTranspositionTable(1 << 16),
+                    null, busyExecutor);
+            long start = System.currentTimeMillis();
+            KalahSearchResult result = search.search(KalahPosition.initial(), 50);
+            assertTrue(System.currentTimeMillis() - start < 1_000, "Search should not wait for the queued helpers");
+            assertTrue(KalahPosition.initial().isLegalMove(result.getBestPit()), "Chosen move should be legal");
+        } finally {
+            release.countDown();
+            busyExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahSelfPlay} Unit Tests
+ */
+@DisplayName("KalahSelfPlay Unit Tests")
+class KalahSelfPlayTest {
+
+    private static final long GAMES = 10_000;
+
+    @Test
+    void testSameSeedGivesSameStatsWithAnyThreads() {
+        KalahSelfPlayStats single = KalahSelfPlay.play(GAMES, KalahGeometry.STANDARD, KalahSelfPlay.RANDOM,
+                KalahSelfPlay.GREEDY, 1, 42);
+        KalahSelfPlayStats parallel = KalahSelfPlay.play(GAMES, KalahGeometry.STANDARD, KalahSelfPlay.RANDOM,
+                KalahSelfPlay.GREEDY, 4, 42);
+        assertEquals(single.toString(), parallel.toString());
+        assertEquals(GAMES, single.getGames());
+        assertEquals(GAMES, single.getFirstMoverWins() + single.getSecondMoverWins() + single.getDraws());
+        assertEquals(single.getMoves(), parallel.getMoves());
+        assertEquals(single.getCaptures(), parallel.getCaptures());
+    }
+
+    @Test
+    void testBetterPolicyWinsMoreGames() {
+        KalahSelfPlayStats randomFirst = KalahSelfPlay.play(GAMES, KalahGeometry.STANDARD, KalahSelfPlay.RANDOM,
+                KalahSelfPlay.GREEDY, 2, 7);
+        KalahSelfPlayStats greedyFirst = KalahSelfPlay.play(GAMES, KalahGeometry.STANDARD, KalahSelfPlay.GREEDY,
+                KalahSelfPlay.RANDOM, 2, 7);
+        assertTrue(randomFirst.getFirstMoverWinRate() < 0.5, randomFirst.toString());
+        assertTrue(greedyFirst.getFirstMoverWinRate() > 0.5, greedyFirst.toString());
+        assertTrue(greedyFirst.getAverageGameLength() > 10, greedyFirst.toString());
+        assertTrue(greedyFirst.getCaptureFrequency() > 0, greedyFirst.toString());
+    }
+
+    @Test
+    void testSearchPolicyAndOtherGeometry() {
+        KalahSelfPlayStats stats = KalahSelfPlay.play(100, KalahGeometry.of(4, 3), KalahSelfPlay.search(4),
+                KalahSelfPlay.RANDOM, 2, 1);
+        assertEquals(100, stats.getGames());
+        assertTrue(stats.getFirstMoverWins() > stats.getSecondMoverWins(), stats.toString());
+        assertThrows(IllegalArgumentException.class, () -> KalahSelfPlay.policy("minimax"));
+    }
+}
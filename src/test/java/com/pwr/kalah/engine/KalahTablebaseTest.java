@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.KalahPosition;
+import com.pwr.kalah.model.Player;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static com.pwr.kalah.engine.KalahAlphaBetaSearchTest.position;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahTablebase} and {@link KalahTablebaseGenerator} Unit Tests
+ */
+@DisplayName("KalahTablebase Unit Tests")
+class KalahTablebaseTest {
+
+    private static final KalahGeometry GEOMETRY = KalahGeometry.STANDARD;
+    private static final long NO_TIME_LIMIT = 60_000;
+    private static final int MAX_STONES = 8;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIndexOfEveryPosition() {
+        KalahPosition position = new KalahPosition();
+        KalahPosition mirrored = new KalahPosition();
+        for (int index = 0; index < KalahTablebase.size(5); index++) {
+            KalahTablebase.fillPosition(index, position);
+            assertEquals(index, KalahTablebase.index(position), "Wrong index of " + position);
+
+            // the positions of the second player share the entries of the first player ones
+            for (int pit = 1; pit < GEOMETRY.getKalahPit(Player.FIRST); pit++) {
+                mirrored.setPitStones(pit, position.getPitStones(pit + GEOMETRY.getKalahPit(Player.FIRST)));
+                mirrored.setPitStones(pit + GEOMETRY.getKalahPit(Player.FIRST), position.getPitStones(pit));
+            }
+            mirrored.setCurrentPlayer(Player.SECOND);
+            assertEquals(index, KalahTablebase.index(mirrored), "Wrong index of " + mirrored);
+        }
+    }
+
+    @Test
+    void testSameScoreAsSearch() throws IOException {
+        KalahTablebase tablebase = generate();
+        Random random = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            int[] pits = new int[GEOMETRY.getPits()];
+            for (int stone = 0; stone < 7; stone++) {
+                int pit = random.nextInt(GEOMETRY.getPits());
+                if (pit != GEOMETRY.getKalahPit(Player.FIRST) - 1 && pit != GEOMETRY.getKalahPit(Player.SECOND) - 1) {
+                    pits[pit]++;
+                }
+            }
+            pits[GEOMETRY.getKalahPit(Player.FIRST) - 1] = random.nextInt(30);
+            pits[GEOMETRY.getKalahPit(Player.SECOND) - 1] = random.nextInt(30);
+            KalahPosition position = position(random.nextBoolean() ? Player.FIRST : Player.SECOND, pits);
+            if (position.isGameOver()) {
+                continue;
+            }
+            assertTrue(tablebase.contains(position), "Tablebase should contain " + position);
+            int expectedScore = new KalahAlphaBetaSearch(64).search(position, NO_TIME_LIMIT).getScore();
+            assertEquals(expectedScore, tablebase.getScore(position), "Tablebase score differs in " + position);
+            assertEquals(expectedScore,
+                    new KalahAlphaBetaSearch(64, null, tablebase, 0).search(position, NO_TIME_LIMIT).getScore(),
+                    "Search score with the tablebase differs in " + position);
+        }
+    }
+
+    @Test
+    void testLargePositionsAreNotContained() throws IOException {
+        KalahTablebase tablebase = generate();
+        assertEquals(MAX_STONES, tablebase.getMaxStones());
+        assertFalse(tablebase.contains(KalahPosition.initial()), "Initial position has too many stones");
+        KalahSearchResult result = new KalahAlphaBetaSearch(4, null, tablebase, 0)
+                .search(KalahPosition.initial(), NO_TIME_LIMIT);
+        assertEquals(new KalahAlphaBetaSearch(4).search(KalahPosition.initial(), NO_TIME_LIMIT).getScore(), result.getScore());
+    }
+
+    @Test
+    void testInvalidFile() throws IOException {
+        Path path = tempDir.resolve("invalid.bin");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> KalahTablebase.open(path));
+    }
+
+    private KalahTablebase generate() throws IOException {
+        Path path = tempDir.resolve("kalah-" + MAX_STONES + ".bin");
+        KalahTablebaseGenerator.generate(path, MAX_STONES);
+        assertEquals(KalahTablebase.HEADER_SIZE + KalahTablebase.size(MAX_STONES), Files.size(path));
+        return KalahTablebase.open(path);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link KalahTranspositionTable} Unit Tests
+ */
+@DisplayName("KalahTranspositionTable Unit Tests")
+class KalahTranspositionTableTest {
+
+    private final KalahTranspositionTable table = new KalahTranspositionTable(16);
+
+    @Test
+    void testStoreAndProbe() {
+        assertEquals(0, table.probe(42L), "Empty table should miss");
+        table.store(42L, 5, KalahTranspositionTable.LOWER_BOUND, -17, 3);
+        long entry = table.probe(42L);
+        assertEquals(-17, KalahTranspositionTable.getScore(entry));
+        assertEquals(5, KalahTranspositionTable.getDepth(entry));
+        assertEquals(KalahTranspositionTable.LOWER_BOUND, KalahTranspositionTable.getBound(entry));
+        assertEquals(3, KalahTranspositionTable.getBestPit(entry));
+        assertEquals(0.5, table.getHitRate());
+    }
+
+    @Test
+    void testDepthPreferredReplacement() {
+        // both hashes map to the same entry of the 16 entries table
+        long deepHash = 1L;
+        long shallowHash = 1L + 16;
+        table.store(deepHash, 8, KalahTranspositionTable.EXACT, 1, 1);
+        table.store(shallowHash, 4, KalahTranspositionTable.EXACT, 2, 2);
+        assertEquals(1, KalahTranspositionTable.getScore(table.probe(deepHash)), "Deeper entry should be kept");
+        assertEquals(0, table.probe(shallowHash));
+
+        // entries of the previous searches are replaced
+        table.newSearch();
+        table.store(shallowHash, 4, KalahTranspositionTable.EXACT, 2, 2);
+        assertEquals(2, KalahTranspositionTable.getScore(table.probe(shallowHash)), "Older entry should be replaced");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link KalahBoardArrayImpl} Unit Tests
+ */
+@DisplayName("KalahBoardArrayImpl Unit Tests")
+class KalahBoardArrayImplTest {
+
+    // The differential tests can be run longer with -Dkalah.test.games=1000000
+    private static final int GAMES = Integer.getInteger("kalah.test.games", 2_000);
+
+    // The stones put in every pit of the boards with many stones, a move makes several laps
+    private static final int MAX_SAMPLE_STONES = 40;
+
+    @Test
+    void testSameRulesAsMapBoard() {
+        testSameRulesAsMapBoard(KalahGeometry.STANDARD);
+    }
+
+    @Test
+    void testSameRulesAsMapBoardOfOtherGeometries() {
+        testSameRulesAsMapBoard(KalahGeometry.of(4, 3));
+        testSameRulesAsMapBoard(KalahGeometry.of(6, 4));
+        testSameRulesAsMapBoard(KalahGeometry.of(1, 1));
+        testSameRulesAsMapBoard(KalahGeometry.of(KalahGeometry.MAX_PITS_PER_PLAYER, KalahGeometry.MAX_STONES_PER_PIT));
+    }
+
+    @Test
+    void testSameRulesAsMapBoardWithManyStones() {
+        testSameRulesAsMapBoard(KalahGeometry.STANDARD, true);
+        testSameRulesAsMapBoard(KalahGeometry.of(1, 1), true);
+        testSameRulesAsMapBoard(KalahGeometry.of(3, 1), true);
+    }
+
+    private static void testSameRulesAsMapBoard(KalahGeometry geometry) {
+        testSameRulesAsMapBoard(geometry, false);
+    }
+
+    private static void testSameRulesAsMapBoard(KalahGeometry geometry, boolean manyStones) {
+        Random random = new Random(42);
+        for (int game = 0; game < GAMES; game++) {
+            KalahBoard expected = KalahBoardType.MAP.createBoard(geometry);
+            KalahBoard actual = KalahBoardType.ARRAY.createBoard(geometry);
+            expected.initGameField();
+            actual.initGameField();
+            if (manyStones) {
+                int[] sample = randomSample(random, geometry);
+                expected.fillGameFieldWithSample(sample);
+                actual.fillGameFieldWithSample(sample);
+            }
+
+            boolean finished = false;
+            while (!finished) {
+                int pit = randomPit(random, geometry, expected.getCurrentPlayer());
+                MoveResult expectedResult = expected.makeNextMove(pit);
+                MoveResult actualResult = actual.makeNextMove(pit);
+
+                assertEquals(expectedResult, actualResult, "Move outcome differs in game " + game + " of " + geometry);
+                assertEquals(expected.getStatus(), actual.getStatus(), "Board differs in game " + game + " of " + geometry);
+                assertEquals(expected.getCurrentPlayer(), actual.getCurrentPlayer(), "Player differs in game " + game + " of " + geometry);
+                finished = expectedResult == MoveResult.GAME_OVER;
+            }
+        }
+    }
+
+    @Test
+    void testStatusMatchesBoard() {
+        KalahBoard board = KalahBoardType.ARRAY.createBoard();
+        board.initGameField();
+        board.makeNextMove(3);
+        assertEquals(board.toString(), board.getStatus().toString(), "Status should contain all pits in order");
+    }
+
+    /**
+     * Puts from 1 to {@link #MAX_SAMPLE_STONES} stones in every pit, the Kalahs are empty
+     */
+    private static int[] randomSample(Random random, KalahGeometry geometry) {
+        int[] sample = new int[geometry.getPits()];
+        for (int pit = 1; pit <= geometry.getPits(); pit++) {
+            boolean kalah = pit == geometry.getKalahPit(Player.FIRST) || pit == geometry.getKalahPit(Player.SECOND);
+            sample[pit - 1] = kalah ? 0 : 1 + random.nextInt(MAX_SAMPLE_STONES);
+        }
+        return sample;
+    }
+
+    /**
+     * Mostly picks one of the current player's pits, but sometimes any pit to also cover invalid moves
+     */
+    private static int randomPit(Random random, KalahGeometry geometry, Player player) {
+        if (random.nextInt(10) == 0) {
+            return 1 + random.nextInt(geometry.getPits());
+        }
+        return geometry.getFirstPit(player) + random.nextInt(geometry.getPitsPerPlayer());
+    }
+}
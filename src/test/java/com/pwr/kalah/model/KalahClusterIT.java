@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pwr.kalah.KalahApplication;
+import com.pwr.kalah.service.KalahCluster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sharded games Integration Tests, with three cluster nodes on localhost
+ */
+@DisplayName("KalahGame Cluster Integration Tests")
+public class KalahClusterIT {
+
+    private static final int NODES = 3;
+    private static final int GAMES = 30;
+
+    private final int[] ports = new int[NODES];
+    private final ConfigurableApplicationContext[] contexts = new ConfigurableApplicationContext[NODES];
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String nodes;
+
+    @AfterEach
+    void tearDown() {
+        for (ConfigurableApplicationContext context : contexts) {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Games should be played through any node, also after a node has joined and left")
+    public void shouldPlayGamesThroughAnyNode() throws Exception {
+        List<String> uris = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            ports[node] = freePort();
+            uris.add("http://localhost:" + ports[node]);
+        }
+        nodes = String.join(",", uris);
+        startNode(0);
+        startNode(1);
+        awaitLiveNodes(2, 0, 1);
+
+        List<Long> gameIds = new ArrayList<>();
+        for (int i = 0; i < GAMES; i++) {
+            int node = i % 2;
+            long gameId = createGame(node);
+            assertEquals(node, gameId & (KalahCluster.MAX_NODES - 1), "Game id should keep its node");
+            assertTrue(!gameIds.contains(gameId), "Game ids should not collide");
+            gameIds.add(gameId);
+        }
+        // every game is moved through the node which did not create it
+        for (int i = 0; i < GAMES; i++) {
+            JsonNode game = move((i + 1) % 2, gameIds.get(i), 1);
+            assertEquals("0", game.get("status").get("1").asText());
+        }
+
+        startNode(2);
+        awaitLiveNodes(3, 0, 1, 2);
+        for (int i = 0; i < GAMES; i++) {
+            // the first move has been kept, the first player still has the extra turn
+            JsonNode game = move(i % NODES, gameIds.get(i), 2);
+            assertEquals("0", game.get("status").get("1").asText());
+            assertEquals("0", game.get("status").get("2").asText());
+        }
+        assertBatchMoves(2, gameIds);
+
+        contexts[2].close();
+        contexts[2] = null;
+        awaitLiveNodes(2, 0, 1);
+        for (int i = 0; i < GAMES; i++) {
+            ResponseEntity<String> response = restTemplate.exchange(uri(i % 2, "/games/" + gameIds.get(i)
+                    + "/pits/1"), HttpMethod.PUT, null, String.class);
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), "The emptied pit should be kept");
+            assertEquals(KalahErrorMessages.INVALID_MOVE, objectMapper.readTree(response.getBody())
+                    .get("message").asText());
+        }
+    }
+
+    private void assertBatchMoves(int node, List<Long> gameIds) throws IOException {
+        Map<String, int[]> moves = new LinkedHashMap<>();
+        for (Long gameId : gameIds) {
+            moves.put(String.valueOf(gameId), new int[]{1});
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.exchange(uri(node, "/games/moves"), HttpMethod.PUT,
+                new HttpEntity<>(objectMapper.writeValueAsString(moves), headers), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode responses = objectMapper.readTree(response.getBody());
+        assertEquals(gameIds.size(), responses.size());
+        for (int i = 0; i < gameIds.size(); i++) {
+            assertEquals(String.valueOf(gameIds.get(i)), responses.get(i).get("id").asText(),
+                    "Batch responses should keep the order of the games");
+            assertEquals("INVALID", responses.get(i).get("results").get(0).asText());
+        }
+    }
+
+    private void startNode(int node) {
+        contexts[node] = new SpringApplicationBuilder(KalahApplication.class).run(
+                "--server.port=" + ports[node],
+                "--kalah.cluster.nodes=" + nodes,
+                "--kalah.cluster.node-id=" + node,
+                "--kalah.cluster.heartbeat-interval=100ms");
+    }
+
+    private void awaitLiveNodes(int count, int... nodes) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            boolean converged = true;
+            for (int node : nodes) {
+                converged &= contexts[node].getBean(KalahCluster.class).getLiveNodes().cardinality() == count;
+            }
+            if (converged) {
+                // let the rebalance which follows the ring change finish
+                Thread.sleep(500);
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("The cluster nodes did not see " + count + " live nodes");
+    }
+
+    private long createGame(int node) throws IOException {
+        ResponseEntity<String> response = restTemplate.postForEntity(uri(node, "/games"), null, String.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return objectMapper.readTree(response.getBody()).get("id").asLong();
+    }
+
+    private JsonNode move(int node, long gameId, int pit) throws IOException {
+        ResponseEntity<String> response = restTemplate.exchange(uri(node, "/games/" + gameId + "/pits/" + pit),
+                HttpMethod.PUT, null, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode(), response.getBody());
+        JsonNode game = objectMapper.readTree(response.getBody());
+        assertEquals(String.valueOf(gameId), game.get("id").asText());
+        return game;
+    }
+
+    private String uri(int node, String path) {
+        return "http://localhost:" + ports[node] + path;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -40,31 +40,23 @@ class KalahErrorMessagesTest {
 
     @Test
     void testEndGameAndScoring_GAME_OVER() {
-        Exception exception;
         // New game, test non-repetitive
         board.fillGameFieldWithSample(new int[]{0, 0, 0, 0, 1, 0, 19, 0, 0, 0, 0, 0, 0, 10});
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(5));
-        assertEquals(String.format(KalahErrorMessages.GAME_OVER, 20, 10), exception.getMessage());
+        assertGameOver(board.makeNextMove(5), 20, 10);
 
         // New game, test repetitive move
         board.setCurrentPlayer(Player.FIRST);
         board.fillGameFieldWithSample(new int[]{0, 0, 0, 0, 0, 1, 19, 0, 0, 0, 0, 0, 0, 10});
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(6));
-        assertEquals(String.format(KalahErrorMessages.GAME_OVER, 20, 10), exception.getMessage());
+        assertGameOver(board.makeNextMove(6), 20, 10);
 
         // New game, make first player's move
         // test second player move
         board.setCurrentPlayer(Player.SECOND);
         board.fillGameFieldWithSample(new int[]{0, 0, 0, 0, 0, 0, 20, 0, 0, 0, 0, 0, 1, 9});
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(13));
-        assertEquals(String.format(KalahErrorMessages.GAME_OVER, 20, 10), exception.getMessage());
+        assertGameOver(board.makeNextMove(13), 20, 10);
 
+        // Any move after the end of the game keeps the final score
+        assertGameOver(board.makeNextMove(1), 20, 10);
     }
 
     @Test
@@ -85,31 +77,24 @@ class KalahErrorMessagesTest {
 
     @Test
     void testException_INVALID_MOVE() {
-        Exception exception;
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(7));
-        assertEquals(KalahErrorMessages.INVALID_MOVE, exception.getMessage());
-
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(14));
-        assertEquals(KalahErrorMessages.INVALID_MOVE, exception.getMessage());
-
-        exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(8));
-        assertEquals(KalahErrorMessages.INVALID_MOVE, exception.getMessage());
+        assertEquals(MoveResult.INVALID, board.makeNextMove(7));
+        assertEquals(MoveResult.INVALID, board.makeNextMove(14));
+        assertEquals(MoveResult.INVALID, board.makeNextMove(8));
+        assertEquals("{1=6, 2=6, 3=6, 4=6, 5=6, 6=6, 7=0, 8=6, 9=6, 10=6, 11=6, 12=6, 13=6, 14=0}", board.toString(),
+                "Invalid moves should not change the game field");
     }
 
     @Test
     void testZeroStonesPlayersPitMove_INVALID_MOVE() {
         // Make first move (with repeat rule applied)
-        board.makeNextMove(1);
+        assertEquals(MoveResult.EXTRA_TURN, board.makeNextMove(1));
         // Make move into the same pit
-        Exception exception = assertThrows(
-                KalahGameException.class,
-                () -> board.makeNextMove(1));
-        assertEquals(KalahErrorMessages.INVALID_MOVE, exception.getMessage());
+        assertEquals(MoveResult.INVALID, board.makeNextMove(1));
+    }
+
+    private void assertGameOver(MoveResult result, int firstPlayerScore, int secondPlayerScore) {
+        assertEquals(MoveResult.GAME_OVER, result);
+        assertEquals(firstPlayerScore, board.getPitStones(7), "Invalid score of player 1");
+        assertEquals(secondPlayerScore, board.getPitStones(14), "Invalid score of player 2");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.pwr.kalah.exception.KalahGameException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link KalahGameHistory} Unit Tests
+ */
+@DisplayName("KalahGameHistory Unit Tests")
+class KalahGameHistoryTest {
+
+    @Test
+    void testOnlyMovesWhichChangedTheBoardAreRecorded() {
+        KalahGame game = new KalahGame(1L);
+        game.makeNextMove(15);
+        game.makeNextMove(1);
+        game.makeNextMove(1);
+        game.makeNextMove(2);
+        assertArrayEquals(new int[]{1, 2}, game.getHistory().getMoves());
+        assertEquals(game.getBoard().getStatus(), game.getHistory().getBoard(2).getStatus());
+    }
+
+    @Test
+    void testInvalidFirstMoveChoosesThePlayer() {
+        KalahGame game = new KalahGame(1L);
+        game.makeNextMove(14);
+        game.makeNextMove(8);
+        assertArrayEquals(new int[]{14, 8}, game.getHistory().getMoves());
+        assertEquals(Player.SECOND, game.getHistory().getBoard(1).getCurrentPlayer());
+        assertEquals(game.getBoard().getStatus(), game.getHistory().getBoard(2).getStatus());
+    }
+
+    @Test
+    void testBoardAtEveryPlyIsReconstructed() {
+        Random random = new Random(1);
+        for (long gameId = 1; gameId <= 200; gameId++) {
+            // the larger geometries store the checkpoint stones in two bytes
+            KalahGeometry geometry = KalahGeometry.of(1 + random.nextInt(12), 1 + random.nextInt(12));
+            KalahGame game = new KalahGame(gameId, "http://localhost:8080/games/" + gameId, KalahBoardType.ARRAY,
+                    geometry);
+            List<KalahBoardSnapshot> boards = new ArrayList<>();
+            List<Player> players = new ArrayList<>();
+            boards.add(game.getBoard().getStatus());
+            players.add(game.getBoard().getCurrentPlayer());
+            while (!game.isFinished()) {
+                int plies = game.getHistory().getPlies();
+                game.makeNextMove(1 + random.nextInt(geometry.getPits()));
+                if (game.getHistory().getPlies() > plies) {
+                    boards.add(game.getBoard().getStatus());
+                    players.add(game.getBoard().getCurrentPlayer());
+                }
+            }
+            KalahGameHistory history = game.getHistory();
+            assertEquals(boards.size() - 1, history.getPlies());
+            for (int ply = 0; ply <= history.getPlies(); ply++) {
+                KalahBoard board = history.getBoard(ply);
+                assertEquals(boards.get(ply), board.getStatus(), "Board of " + geometry + " at ply " + ply);
+                assertEquals(players.get(ply), board.getCurrentPlayer(), "Player of " + geometry + " at ply " + ply);
+            }
+            assertEquals(BoardStatus.FINISHED, history.getBoard(history.getPlies()).getBoardStatus());
+        }
+    }
+
+    @Test
+    void testHistoryIsRestored() {
+        KalahGame game = new KalahGame(1L);
+        Random random = new Random(2);
+        while (!game.isFinished()) {
+            game.makeNextMove(1 + random.nextInt(14));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(game.getHistorySize());
+        game.putHistory(buffer);
+        assertEquals(0, buffer.remaining());
+        KalahGame restored = new KalahGame(1L);
+        restored.restoreHistory(buffer.flip());
+        assertArrayEquals(game.getHistory().getMoves(), restored.getHistory().getMoves());
+
+        restored.discardHistory();
+        Exception exception = assertThrows(KalahGameException.class, restored::getHistory);
+        assertEquals(KalahErrorMessages.HISTORY_NOT_RECORDED, exception.getMessage());
+    }
+
+    @Test
+    void testPlyOutsideTheHistoryIsRejected() {
+        KalahGame game = new KalahGame(1L);
+        game.makeNextMove(1);
+        KalahGameHistory history = game.getHistory();
+        assertThrows(KalahGameException.class, () -> history.getBoard(2));
+        assertThrows(KalahGameException.class, () -> history.getBoard(-1));
+        assertEquals(KalahGeometry.STANDARD.getPits(), history.getBoard(0).getStatus().size());
+    }
+
+    @Test
+    void testHistoryJson() throws Exception {
+        KalahGame game = new KalahGame(1L);
+        game.makeNextMove(1);
+        game.makeNextMove(2);
+        ObjectMapper objectMapper = JsonMapper.builder().enable(JsonWriteFeature.WRITE_NUMBERS_AS_STRINGS).build();
+        assertEquals("{\"id\":\"1\",\"uri\":\"http://localhost:8080/games/1\",\"moves\":[\"1\",\"2\"]}",
+                objectMapper.writeValueAsString(game.getHistory()));
+    }
+}
@@ -21,6 +21,8 @@ import com.pwr.kalah.exception.KalahGameException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.http.MediaType;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
@@ -32,8 +34,10 @@ import java.util.Objects;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -42,6 +46,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureMetrics
 @DisplayName("KalahGame Integration Tests")
 public class KalahGameIT {
 
@@ -58,6 +63,17 @@ public class KalahGameIT {
                 .andExpect(jsonPath("$.id", is(String.valueOf(firstGameId.intValue()+1))));
     }
 
+    @Test
+    @DisplayName("Should export the game metrics on /actuator/prometheus endpoint")
+    public void shouldExportGameMetrics() throws Exception {
+        makeMoveAndCheckResultActions(createOneGame(), 1);
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("kalah_moves_total{result=\"extra_turn\",}")))
+                .andExpect(content().string(containsString("kalah_requests_seconds_bucket{request=\"move\",")))
+                .andExpect(content().string(containsString("kalah_games_created_total")));
+    }
+
     @Test
     @DisplayName("Should be able to Make moves")
     public void shouldBeAbleToMakeMoves() throws Exception {
@@ -80,6 +96,58 @@ public class KalahGameIT {
                 .andExpect(result -> assertEquals(KalahErrorMessages.INVALID_GAME_NUMBER, Objects.requireNonNull(result.getResolvedException()).getMessage()));
     }
 
+    @Test
+    @DisplayName("Test invalid move")
+    public void testInvalidMove() throws Exception {
+        Long gameId = createOneGame();
+        mockMvc.perform(put("/games/" + gameId + "/pits/7"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status", is(400)))
+                .andExpect(jsonPath("$.error", is("Bad Request")))
+                .andExpect(jsonPath("$.message", is(KalahErrorMessages.INVALID_MOVE)))
+                .andExpect(jsonPath("$.path", is("/games/" + gameId + "/pits/7")));
+    }
+
+    @Test
+    @DisplayName("Should be able to make computer moves")
+    public void shouldBeAbleToMakeComputerMoves() throws Exception {
+        Long gameId = createOneGame();
+        mockMvc.perform(put("/games/" + gameId + "/ai-move"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(String.valueOf(gameId))))
+                .andExpect(jsonPath("$.status", aMapWithSize(14)));
+    }
+
+    @Test
+    @DisplayName("Should be able to play on a board of another geometry")
+    public void shouldBeAbleToPlayOnBoardOfAnotherGeometry() throws Exception {
+        MvcResult result = mockMvc.perform(post("/games").param("pits", "4").param("stones", "3"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Long gameId = new ObjectMapper()
+                .readValue(result.getResponse().getContentAsString(), KalahGameResponse.class).getId();
+        mockMvc.perform(put("/games/" + gameId + "/pits/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", aMapWithSize(10)))
+                .andExpect(jsonPath("$.status.5", is("1")))
+                .andExpect(jsonPath("$.status.6", is("3")));
+        mockMvc.perform(put("/games/" + gameId + "/pits/11"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is(KalahErrorMessages.INVALID_MOVE)));
+        mockMvc.perform(put("/games/" + gameId + "/ai-move"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", aMapWithSize(10)));
+    }
+
+    @Test
+    @DisplayName("Test invalid board geometry")
+    public void testInvalidGeometry() throws Exception {
+        mockMvc.perform(post("/games").param("pits", "13"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/games").param("stones", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Test invalid game ID and pit number")
     public void testInvalidGameIdAndPitNumber() throws Exception {
@@ -97,6 +165,65 @@ public class KalahGameIT {
                 .andExpect(status().isBadRequest())
                 .andExpect(status().reason(KalahErrorMessages.NON_NUMERIC_VALUE));    }
 
+    @Test
+    @DisplayName("Should be able to make batches of moves")
+    public void shouldBeAbleToMakeBatchesOfMoves() throws Exception {
+        Long gameId = createOneGame();
+        mockMvc.perform(put("/games/" + gameId + "/moves").contentType(MediaType.APPLICATION_JSON).content("[1, 1, 2]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(String.valueOf(gameId))))
+                .andExpect(jsonPath("$.results", contains("EXTRA_TURN", "INVALID", "OK")))
+                .andExpect(jsonPath("$.status", aMapWithSize(14)))
+                .andExpect(jsonPath("$.status.7", is("2")));
+        Long secondGameId = createOneGame();
+        mockMvc.perform(put("/games/moves").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"" + secondGameId + "\": [8], \"99999999\": [1], \"" + gameId + "\": [8]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].results", contains("EXTRA_TURN")))
+                .andExpect(jsonPath("$[1].message", is(KalahErrorMessages.INVALID_GAME_NUMBER)))
+                .andExpect(jsonPath("$[2].id", is(String.valueOf(gameId))))
+                .andExpect(jsonPath("$[2].status.14", is("1")));
+    }
+
+    @Test
+    @DisplayName("Should be able to replay the moves of a game")
+    public void shouldBeAbleToReplayGames() throws Exception {
+        Long gameId = createOneGame();
+        mockMvc.perform(put("/games/" + gameId + "/moves").contentType(MediaType.APPLICATION_JSON).content("[1, 1, 2]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/games/" + gameId + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(String.valueOf(gameId))))
+                .andExpect(jsonPath("$.moves", contains("1", "2")));
+        mockMvc.perform(get("/games/" + gameId + "/history/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status.1", is("0")))
+                .andExpect(jsonPath("$.status.2", is("7")))
+                .andExpect(jsonPath("$.status.7", is("1")));
+        mockMvc.perform(get("/games/" + gameId + "/history/3"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertEquals(KalahErrorMessages.INVALID_PLY,
+                        Objects.requireNonNull(result.getResolvedException()).getMessage()));
+    }
+
+    @Test
+    @DisplayName("Test invalid batches of moves")
+    public void testInvalidBatchesOfMoves() throws Exception {
+        Long gameId = createOneGame();
+        mockMvc.perform(put("/games/99999999/moves").contentType(MediaType.APPLICATION_JSON).content("[1]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertTrue(result.getResolvedException() instanceof KalahGameException));
+        mockMvc.perform(put("/games/" + gameId + "/moves").contentType(MediaType.APPLICATION_JSON).content("[1, 27]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is(KalahErrorMessages.NON_NUMERIC_VALUE)));
+        mockMvc.perform(put("/games/moves").contentType(MediaType.APPLICATION_JSON).content("{\"1\": null}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is(KalahErrorMessages.NON_NUMERIC_VALUE)));
+        mockMvc.perform(put("/games/" + gameId + "/moves").contentType(MediaType.APPLICATION_JSON).content("[\"a\"]"))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * This helper creates the new game and return it's {@link ResultActions}
      * It verifies the correct response HTTP status (CREATED)
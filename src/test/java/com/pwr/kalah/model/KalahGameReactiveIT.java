@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Kalah game Integration Tests of the reactive stack
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@DisplayName("KalahGame Reactive Integration Tests")
+public class KalahGameReactiveIT {
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Should run on Netty")
+    public void shouldRunOnNetty() {
+        assertTrue(context instanceof ReactiveWebServerApplicationContext);
+        assertEquals("NettyWebServer", ((ReactiveWebServerApplicationContext) context).getWebServer()
+                .getClass().getSimpleName());
+    }
+
+    @Test
+    @DisplayName("Should Return CREATED Response when request sent to /games endpoint")
+    public void shouldReturnCreatedOnGamesEndpoints() {
+        long firstGameId = createOneGame();
+        webClient.post().uri("/games").exchange()
+                .expectStatus().isCreated()
+                .expectHeader().value("Location", startsWith("http://"))
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(String.valueOf(firstGameId + 1))
+                .jsonPath("$.uri").value(startsWith("http://"))
+                .jsonPath("$.status").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should be able to make moves")
+    public void shouldBeAbleToMakeMoves() {
+        long gameId = createOneGame();
+        webClient.put().uri("/games/{gameId}/pits/1", gameId).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(String.valueOf(gameId))
+                .jsonPath("$.uri").isEqualTo(webClientUri("/games/" + gameId))
+                .jsonPath("$.status.1").isEqualTo("0")
+                .jsonPath("$.status.7").isEqualTo("1")
+                .jsonPath("$.status.14").isEqualTo("0");
+        webClient.put().uri("/games/{gameId}/ai-move", gameId).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status.14").exists();
+    }
+
+    @Test
+    @DisplayName("Test invalid moves")
+    public void testInvalidMoves() {
+        long gameId = createOneGame();
+        webClient.put().uri("/games/{gameId}/pits/7", gameId).exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(KalahErrorMessages.INVALID_MOVE);
+        webClient.put().uri("/games/99999999/pits/1").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(KalahErrorMessages.INVALID_GAME_NUMBER);
+        for (String uri : new String[]{"/games/1/pits/0", "/games/1/pits/a", "/games/a/pits/1", "/games/1/pits/1.1"}) {
+            webClient.put().uri(uri).exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody()
+                    .jsonPath("$.message").isEqualTo(KalahErrorMessages.NON_NUMERIC_VALUE);
+        }
+    }
+
+    @Test
+    @DisplayName("Should be able to play on a board of another geometry")
+    public void shouldBeAbleToPlayOnBoardOfAnotherGeometry() {
+        Long gameId = webClient.post().uri("/games?pits=4&stones=3").exchange()
+                .expectStatus().isCreated()
+                .expectBody(KalahGameResponse.class).returnResult().getResponseBody().getId();
+        webClient.put().uri("/games/{gameId}/pits/2", gameId).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status.5").isEqualTo("1")
+                .jsonPath("$.status.10").isEqualTo("0")
+                .jsonPath("$.status.11").doesNotExist();
+        webClient.post().uri("/games?pits=13").exchange().expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").isEqualTo(KalahErrorMessages.INVALID_GEOMETRY);
+        webClient.post().uri("/games?stones=0").exchange().expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.message").isEqualTo(KalahErrorMessages.INVALID_GEOMETRY);
+    }
+
+    @Test
+    @DisplayName("Watchers should get the game state and then the move deltas")
+    public void shouldPushMoveDeltasToWatchers() throws Exception {
+        long gameId = createOneGame();
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        Disposable connection = new ReactorNettyWebSocketClient()
+                .execute(URI.create(webClientUri("/games/" + gameId + "/updates").replace("http:", "ws:")),
+                        session -> session.receive()
+                                .map(WebSocketMessage::getPayloadAsText)
+                                .doOnNext(messages::add)
+                                .then())
+                .subscribe();
+        String stateMessage = messages.poll(10, TimeUnit.SECONDS);
+        webClient.put().uri("/games/{gameId}/pits/1", gameId).exchange().expectStatus().isOk();
+        String deltaMessage = messages.poll(10, TimeUnit.SECONDS);
+        connection.dispose();
+
+        JsonNode state = objectMapper.readTree(stateMessage);
+        assertEquals(14, state.get("status").size());
+        JsonNode delta = objectMapper.readTree(deltaMessage);
+        assertEquals(String.valueOf(gameId), delta.get("id").asText());
+        assertEquals(7, delta.get("pits").size());
+        assertEquals("FIRST", delta.get("player").asText());
+    }
+
+    @Test
+    @DisplayName("Should be able to make batches of moves")
+    public void shouldBeAbleToMakeBatchesOfMoves() {
+        long gameId = createOneGame();
+        webClient.put().uri("/games/{gameId}/moves", gameId).contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[1, 1, 2]").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.results[0]").isEqualTo("EXTRA_TURN")
+                .jsonPath("$.results[2]").isEqualTo("OK")
+                .jsonPath("$.status.7").isEqualTo("2");
+        webClient.put().uri("/games/moves").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"99999999\": [1], \"" + gameId + "\": [8]}").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].message").isEqualTo(KalahErrorMessages.INVALID_GAME_NUMBER)
+                .jsonPath("$[1].status.14").isEqualTo("1");
+        webClient.put().uri("/games/{gameId}/moves", gameId).contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[0]").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(KalahErrorMessages.NON_NUMERIC_VALUE);
+    }
+
+    private long createOneGame() {
+        KalahGameResponse response = webClient.post().uri("/games").exchange()
+                .expectStatus().isCreated()
+                .expectBody(KalahGameResponse.class).returnResult().getResponseBody();
+        assertNotNull(response);
+        return response.getId();
+    }
+
+    private String webClientUri(String path) {
+        int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+        return "http://localhost:" + port + path;
+    }
+}
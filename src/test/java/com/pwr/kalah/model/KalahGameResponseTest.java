@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.pwr.kalah.view.KalahView;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link KalahGameResponse} JSON representation Unit Tests
+ */
+@DisplayName("KalahGameResponse Unit Tests")
+class KalahGameResponseTest {
+
+    private static final String MOVE_RESPONSE = "{\"id\":\"1\",\"uri\":\"http://localhost:8080/games/1\",\"status\":"
+            + "{\"1\":\"6\",\"2\":\"0\",\"3\":\"7\",\"4\":\"7\",\"5\":\"7\",\"6\":\"7\",\"7\":\"1\","
+            + "\"8\":\"7\",\"9\":\"6\",\"10\":\"6\",\"11\":\"6\",\"12\":\"6\",\"13\":\"6\",\"14\":\"0\"}}";
+    private static final String NEW_GAME_RESPONSE = "{\"id\":\"1\",\"uri\":\"http://localhost:8080/games/1\"}";
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .enable(JsonWriteFeature.WRITE_NUMBERS_AS_STRINGS)
+            .disable(MapperFeature.DEFAULT_VIEW_INCLUSION)
+            .build();
+
+    @Test
+    void testGameMoveResponse() throws Exception {
+        KalahGameResponse response = gameAfterFirstMove().getResponse(MoveResult.EXTRA_TURN);
+        assertEquals(MOVE_RESPONSE, objectMapper.writerWithView(KalahView.GameMove.class).writeValueAsString(response));
+    }
+
+    @Test
+    void testNewGameResponse() throws Exception {
+        KalahGameResponse response = gameAfterFirstMove().getResponse();
+        assertEquals(NEW_GAME_RESPONSE, objectMapper.writerWithView(KalahView.NewGame.class).writeValueAsString(response));
+    }
+
+    @Test
+    void testSameJsonAsAnnotatedFields() throws Exception {
+        ObjectMapper annotatedFieldsMapper = objectMapper.copy()
+                .addMixIn(KalahGameResponse.class, DefaultSerialization.class);
+        KalahGameResponse response = gameAfterFirstMove().getResponse();
+        for (Class<?> view : new Class<?>[]{KalahView.GameMove.class, KalahView.NewGame.class}) {
+            assertEquals(annotatedFieldsMapper.writerWithView(view).writeValueAsString(response),
+                    objectMapper.writerWithView(view).writeValueAsString(response), "JSON differs in view " + view);
+        }
+        assertEquals(annotatedFieldsMapper.writeValueAsString(response), objectMapper.writeValueAsString(response));
+    }
+
+    @Test
+    void testSameJsonAsEncodedByGenerator() throws Exception {
+        KalahGame game = new KalahGame(Long.MAX_VALUE, "http://localhost:8080/games/\u00e9t\u00e9\\\"" + Long.MAX_VALUE);
+        KalahGameResponse encodedByGame = game.getResponse(MoveResult.OK);
+        KalahGameResponse notEncoded = new KalahGameResponse(game.getGameId(), game.getGameUri(),
+                encodedByGame.getStatus(), MoveResult.OK);
+        for (ObjectMapper mapper : new ObjectMapper[]{objectMapper, new ObjectMapper()}) {
+            assertEquals(mapper.writeValueAsString(notEncoded), mapper.writeValueAsString(encodedByGame));
+            // the UTF-8 generator writes the other encoding of the game
+            assertArrayEquals(mapper.writeValueAsBytes(notEncoded), mapper.writeValueAsBytes(encodedByGame));
+        }
+        assertEquals("{\"id\":" + Long.MAX_VALUE, new ObjectMapper().writerWithView(KalahView.NewGame.class)
+                .writeValueAsString(encodedByGame).split(",")[0], "Numbers should be written as numbers");
+    }
+
+    @Test
+    void testDeserializedResponse() throws Exception {
+        KalahGameResponse response = objectMapper.readValue(MOVE_RESPONSE, KalahGameResponse.class);
+        assertEquals(1L, response.getId());
+        assertEquals(1, response.getScore(Player.FIRST));
+        assertEquals(MOVE_RESPONSE, objectMapper.writerWithView(KalahView.GameMove.class).writeValueAsString(response));
+    }
+
+    private static KalahGame gameAfterFirstMove() {
+        KalahGame game = new KalahGame(1L);
+        game.makeNextMove(2);
+        return game;
+    }
+
+    @JsonSerialize(using = JsonSerializer.None.class)
+    private interface DefaultSerialization {
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Live game updates WebSocket Integration Tests
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DisplayName("KalahGame WebSocket Integration Tests")
+public class KalahGameWebSocketIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Watchers should get the game state and then the move deltas")
+    public void shouldPushMoveDeltasToWatchers() throws Exception {
+        long gameId = restTemplate.postForObject("/games", null, KalahGameResponse.class).getId();
+        UpdatesHandler firstWatcher = new UpdatesHandler();
+        UpdatesHandler secondWatcher = new UpdatesHandler();
+        WebSocketSession firstSession = connect(gameId, firstWatcher);
+        WebSocketSession secondSession = connect(gameId, secondWatcher);
+
+        for (UpdatesHandler watcher : new UpdatesHandler[]{firstWatcher, secondWatcher}) {
+            JsonNode state = watcher.next();
+            assertEquals(String.valueOf(gameId), state.get("id").asText());
+            assertEquals(14, state.get("status").size());
+        }
+
+        restTemplate.put("/games/" + gameId + "/pits/1", null);
+        for (UpdatesHandler watcher : new UpdatesHandler[]{firstWatcher, secondWatcher}) {
+            JsonNode delta = watcher.next();
+            assertEquals(String.valueOf(gameId), delta.get("id").asText());
+            assertEquals(7, delta.get("pits").size());
+            assertEquals("0", delta.get("pits").get("1").asText());
+            assertEquals("1", delta.get("pits").get("7").asText());
+            assertEquals("FIRST", delta.get("player").asText());
+            assertEquals("STARTED", delta.get("status").asText());
+        }
+
+        // an invalid move is not pushed
+        restTemplate.put("/games/" + gameId + "/pits/1", null);
+        restTemplate.put("/games/" + gameId + "/pits/2", null);
+        assertEquals("SECOND", firstWatcher.next().get("player").asText());
+        assertEquals("SECOND", secondWatcher.next().get("player").asText());
+        firstSession.close();
+        secondSession.close();
+    }
+
+    @Test
+    @DisplayName("Watching a non-existing game should close the session")
+    public void shouldCloseSessionOfNonExistingGame() throws Exception {
+        UpdatesHandler watcher = new UpdatesHandler();
+        connect(99999999L, watcher);
+        CloseStatus status = watcher.closed.get(10, TimeUnit.SECONDS);
+        assertEquals(CloseStatus.BAD_DATA.getCode(), status.getCode());
+        assertEquals(KalahErrorMessages.INVALID_GAME_NUMBER, status.getReason());
+        assertFalse(watcher.messages.iterator().hasNext());
+    }
+
+    private WebSocketSession connect(long gameId, UpdatesHandler handler) throws Exception {
+        return new StandardWebSocketClient()
+                .doHandshake(handler, "ws://localhost:" + port + "/games/" + gameId + "/updates")
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private final class UpdatesHandler extends TextWebSocketHandler {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private final CompletableFuture<CloseStatus> closed = new CompletableFuture<>();
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            messages.add(message.getPayload());
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            closed.complete(status);
+        }
+
+        JsonNode next() throws Exception {
+            String message = messages.poll(10, TimeUnit.SECONDS);
+            if (message == null) {
+                throw new AssertionError("No game update received");
+            }
+            return objectMapper.readTree(message);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGeometry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahEventLog} Unit Tests
+ */
+@DisplayName("KalahEventLog Unit Tests")
+class KalahEventLogTest {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games";
+    private static final Duration LONG_TTL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    private final List<KalahEventLog> logs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        logs.forEach(KalahEventLog::close);
+    }
+
+    @Test
+    void testGamesAreRestoredAfterRestart() {
+        KalahGameStore store = newStore();
+        KalahGameService gameService = newService(store, newLog(store, DataSize.ofMegabytes(1)));
+        List<KalahGame> games = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            KalahGame game = gameService.createGame(REQUEST_URI, KalahGeometry.of(4 + i % 3, 3 + i % 4));
+            int pits = game.getBoard().getGeometry().getPits();
+            for (int move = 0; move < 30; move++) {
+                gameService.makeMove(game.getGameId(), 1 + ThreadLocalRandom.current().nextInt(pits));
+            }
+            gameService.makeComputerMove(game.getGameId());
+            games.add(game);
+        }
+        logs.get(0).close();
+
+        KalahGameStore restoredStore = newStore();
+        KalahGameService restoredService = newService(restoredStore, newLog(restoredStore, DataSize.ofMegabytes(1)));
+        for (KalahGame game : games) {
+            KalahGame restored = restoredStore.get(game.getGameId());
+            assertNotNull(restored, "Game should be restored");
+            assertEquals(game.getGameUri(), restored.getGameUri());
+            assertEquals(game.getBoard().getGeometry(), restored.getBoard().getGeometry());
+            assertEquals(game.getBoard().getStatus(), restored.getBoard().getStatus(), "Board should be restored");
+            assertEquals(game.getBoard().getCurrentPlayer(), restored.getBoard().getCurrentPlayer());
+            assertEquals(game.getBoard().getBoardStatus(), restored.getBoard().getBoardStatus());
+        }
+        assertEquals(games.size() + 1L, restoredService.createGame(REQUEST_URI).getGameId(),
+                "New games should not reuse the restored ids");
+    }
+
+    @Test
+    void testReceivedGamesAreRestoredAfterRestart() {
+        KalahGameStore senderStore = newStore();
+        KalahGameService sender = newService(senderStore, new KalahEventLog("", DataSize.ofMegabytes(1), false,
+                LONG_TTL, senderStore));
+        KalahGame game = sender.createGame(REQUEST_URI);
+        sender.makeMove(game.getGameId(), 1);
+        ByteBuffer stale = gameRecord(game);
+        sender.makeMove(game.getGameId(), 2);
+
+        KalahGameStore store = newStore();
+        KalahGameServiceImpl receiver = (KalahGameServiceImpl) newService(store, newLog(store, DataSize.ofMegabytes(1)));
+        receiver.receiveGames(gameRecord(game));
+        receiver.receiveGames(stale);
+        KalahGame received = store.get(game.getGameId());
+        assertEquals(2, received.getMoveSequence(), "Stale copy should not replace the received game");
+        receiver.makeMove(game.getGameId(), 8);
+        logs.get(0).close();
+
+        KalahGameStore restoredStore = newStore();
+        newService(restoredStore, newLog(restoredStore, DataSize.ofMegabytes(1)));
+        KalahGame restored = restoredStore.get(game.getGameId());
+        assertNotNull(restored, "Received game should be restored");
+        assertEquals(3, restored.getMoveSequence());
+        assertEquals(received.getBoard().getStatus(), restored.getBoard().getStatus());
+        assertEquals(received.getBoard().getCurrentPlayer(), restored.getBoard().getCurrentPlayer());
+    }
+
+    @Test
+    void testTornTailIsTruncated() throws IOException {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store, DataSize.ofMegabytes(1));
+        List<String> events = new ArrayList<>();
+        eventLog.recover(new RecordingListener(events));
+        eventLog.awaitDurable(eventLog.appendCreate(1, REQUEST_URI + "/1", KalahGeometry.STANDARD));
+        eventLog.awaitDurable(eventLog.appendMove(1, 1, 3));
+        eventLog.close();
+        Path segment = Files.list(directory).findFirst().orElseThrow(IllegalStateException::new);
+        long size = Files.size(segment);
+        // a record header written without the rest of the record
+        Files.write(segment, new byte[]{KalahEventLog.MOVE, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        KalahEventLog recoveredLog = newLog(store, DataSize.ofMegabytes(1));
+        recoveredLog.recover(new RecordingListener(events));
+        assertEquals(2, events.size());
+        assertEquals(size, Files.size(segment), "Torn record should be truncated");
+        recoveredLog.awaitDurable(recoveredLog.appendMove(1, 2, 10));
+        recoveredLog.close();
+
+        events.clear();
+        newLog(store, DataSize.ofMegabytes(1)).recover(new RecordingListener(events));
+        assertEquals("create 1 " + REQUEST_URI + "/1 Kalah(6,6)", events.get(0));
+        assertEquals("move 1 1 3", events.get(1));
+        assertEquals("move 1 2 10", events.get(2));
+    }
+
+    @Test
+    void testFailedWriteStopsTheLog() throws IOException {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store, DataSize.ofMegabytes(1));
+        List<String> events = new ArrayList<>();
+        eventLog.recover(new RecordingListener(events));
+        long durable = eventLog.appendCreate(1, REQUEST_URI + "/1", KalahGeometry.STANDARD);
+        eventLog.awaitDurable(durable);
+        // the next write gets a ClosedChannelException
+        eventLog.getActiveChannel().close();
+        long lost = eventLog.appendMove(1, 1, 3);
+        assertThrows(UncheckedIOException.class, () -> eventLog.awaitDurable(lost));
+
+        assertThrows(UncheckedIOException.class, () -> eventLog.appendMove(1, 2, 4),
+                "Appends after a failed write should fail");
+        assertThrows(UncheckedIOException.class, () -> eventLog.awaitDurable(lost),
+                "The lost event should never be acknowledged");
+        eventLog.awaitDurable(durable);
+
+        events.clear();
+        newLog(store, DataSize.ofMegabytes(1)).recover(new RecordingListener(events));
+        assertEquals(Collections.singletonList("create 1 " + REQUEST_URI + "/1 Kalah(6,6)"), events);
+    }
+
+    @Test
+    void testCompactionDropsEvictedGames() {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store, DataSize.ofBytes(256));
+        eventLog.recover(new RecordingListener(new ArrayList<>()));
+        for (long gameId = 1; gameId <= 100; gameId++) {
+            if (gameId % 2 == 0) {
+                store.put(new KalahGame(gameId));
+            }
+            eventLog.awaitDurable(eventLog.appendCreate(gameId, REQUEST_URI + "/" + gameId, KalahGeometry.STANDARD));
+            for (int sequence = 1; sequence <= 5; sequence++) {
+                eventLog.awaitDurable(eventLog.appendMove(gameId, sequence, sequence));
+            }
+        }
+        int segments = eventLog.getSegments();
+        assertTrue(segments > 10, "Log should roll over to new segments");
+        eventLog.compact();
+        assertEquals(2, eventLog.getSegments(), "Closed segments should be compacted into one");
+
+        List<String> events = new ArrayList<>();
+        newLog(store, DataSize.ofBytes(256)).recover(new RecordingListener(events));
+        assertTrue(events.contains("create 2 " + REQUEST_URI + "/2 Kalah(6,6)"));
+        assertTrue(events.contains("move 100 5 5"));
+        assertTrue(events.stream().noneMatch(event -> event.startsWith("create 1 ")), "Evicted game should be dropped");
+        assertTrue(events.size() < 600, "Events of the evicted games should be dropped");
+    }
+
+    @Test
+    void testConcurrentEventsShareWrites() throws Exception {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store, DataSize.ofMegabytes(1));
+        eventLog.recover(new RecordingListener(new ArrayList<>()));
+        int threads = 8;
+        int moves = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long gameId = i + 1;
+            futures.add(executor.submit(() -> {
+                for (int sequence = 1; sequence <= moves; sequence++) {
+                    eventLog.awaitDurable(eventLog.appendMove(gameId, sequence, 1 + sequence % 14));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(threads * moves, eventLog.getAppends());
+        assertTrue(eventLog.getWrites() <= eventLog.getAppends(), "A write should never be needed twice");
+        eventLog.close();
+
+        List<String> events = new ArrayList<>();
+        newLog(store, DataSize.ofMegabytes(1)).recover(new RecordingListener(events));
+        assertEquals(threads * moves, events.size(), "Every durable event should be recovered");
+    }
+
+    private KalahGameStore newStore() {
+        return new KalahGameStore(10_000, LONG_TTL, LONG_TTL, LONG_TTL);
+    }
+
+    private KalahEventLog newLog(KalahGameStore store, DataSize segmentSize) {
+        KalahEventLog eventLog = new KalahEventLog(directory.toString(), segmentSize, false, LONG_TTL, store);
+        logs.add(eventLog);
+        return eventLog;
+    }
+
+    private static KalahGameService newService(KalahGameStore store, KalahEventLog eventLog) {
+        KalahGameServiceImpl gameService = new KalahGameServiceImpl(store,
+                new KalahComputerPlayer(4, Duration.ofMillis(10), 1024, 1, null), eventLog,
+                new KalahSnapshotter("", Duration.ofMinutes(5)), new KalahGameEvents(),
+                new KalahMetrics(new SimpleMeterRegistry(), store),
+                new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+                new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64), KalahBoardType.ARRAY, 16, 2);
+        gameService.recoverGames();
+        return gameService;
+    }
+
+    private static ByteBuffer gameRecord(KalahGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + KalahSnapshotter.recordSize(game));
+        buffer.putInt(1);
+        KalahSnapshotter.putGame(buffer, game);
+        return buffer.flip();
+    }
+
+    private static final class RecordingListener implements KalahEventLog.Listener {
+
+        private final List<String> events;
+
+        RecordingListener(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void onCreate(long gameId, String gameUri, KalahGeometry geometry) {
+            events.add("create " + gameId + " " + gameUri + " " + geometry);
+        }
+
+        @Override
+        public void onMove(long gameId, int sequence, int pit) {
+            events.add("move " + gameId + " " + sequence + " " + pit);
+        }
+
+        @Override
+        public void onGame(long gameId, int sequence, ByteBuffer record) {
+            events.add("game " + gameId + " " + sequence);
+        }
+    }
+}
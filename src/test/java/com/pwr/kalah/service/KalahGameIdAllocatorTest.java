@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+package com.pwr.kalah.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahGameIdAllocator} Unit Tests
+ */
+@DisplayName("KalahGameIdAllocator Unit Tests")
+class KalahGameIdAllocatorTest {
+
+    private static final int THREADS = 16;
+    private static final int NUMBERS = 20_000;
+
+    @Test
+    void testThreadTakesConsecutiveNumbers() {
+        KalahGameIdAllocator allocator = new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 4);
+        for (long expected = 1; expected <= 10; expected++) {
+            assertEquals(expected, allocator.next());
+        }
+    }
+
+    @Test
+    void testRestoredNumbersAreNotAllocated() {
+        KalahGameIdAllocator allocator = new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64);
+        allocator.advancePast(41);
+        allocator.advancePast(7);
+        assertEquals(42, allocator.next());
+    }
+
+    @Test
+    void testConcurrentNumbersAreUnique() {
+        for (KalahGameIdAllocator.Mode mode : KalahGameIdAllocator.Mode.values()) {
+            KalahGameIdAllocator allocator = new KalahGameIdAllocator(mode, 64);
+            Set<Long> numbers = ConcurrentHashMap.newKeySet();
+            List<CompletableFuture<Void>> threads = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                threads.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < NUMBERS; i++) {
+                        assertTrue(numbers.add(allocator.next()), "Number should not be allocated twice");
+                    }
+                }));
+            }
+            threads.forEach(CompletableFuture::join);
+            assertEquals(THREADS * NUMBERS, numbers.size(), mode + " numbers should be unique");
+        }
+    }
+
+    @Test
+    void testSnowflakeNumbersAreUniqueAcrossRestarts() throws InterruptedException {
+        KalahGameIdAllocator allocator = new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SNOWFLAKE, 64);
+        long last = 0;
+        for (int i = 0; i < 1000; i++) {
+            last = Math.max(last, allocator.next());
+        }
+        long millis = (last >>> KalahGameIdAllocator.SEQUENCE_BITS) + KalahGameIdAllocator.EPOCH;
+        assertTrue(Math.abs(System.currentTimeMillis() - millis) < 10_000, "Number should keep the time");
+
+        Thread.sleep(2);
+        KalahGameIdAllocator restarted = new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SNOWFLAKE, 64);
+        assertTrue(restarted.next() > last, "A restarted allocator should not reuse the numbers");
+    }
+}
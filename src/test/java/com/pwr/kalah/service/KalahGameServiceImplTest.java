@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.BoardStatus;
+import com.pwr.kalah.model.KalahBatchMoveResponse;
+import com.pwr.kalah.model.KalahBoardDelta;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahErrorMessages;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGameHistory;
+import com.pwr.kalah.model.KalahGameResponse;
+import com.pwr.kalah.model.KalahGeometry;
+import com.pwr.kalah.model.MoveResult;
+import com.pwr.kalah.model.Player;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahGameServiceImpl} concurrency Unit Tests
+ */
+@DisplayName("KalahGameServiceImpl Unit Tests")
+class KalahGameServiceImplTest {
+
+    private static final int THREADS = 8;
+    private static final int TOTAL_STONES = 72;
+
+    private final KalahGameStore store =
+            new KalahGameStore(100_000, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    private final KalahGameService gameService = new KalahGameServiceImpl(store,
+            new KalahComputerPlayer(8, Duration.ofMillis(10), 1024, 2, null),
+            new KalahEventLog("", DataSize.ofMegabytes(64), true, Duration.ofMinutes(1), store),
+            new KalahSnapshotter("", Duration.ofMinutes(5)), new KalahGameEvents(),
+            new KalahMetrics(new SimpleMeterRegistry(), store),
+            new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+            new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64),
+            KalahBoardType.ARRAY, 16, 4);
+
+    @Test
+    void testConcurrentGameCreationGivesUniqueIds() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        runConcurrently(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                ids.add(gameService.createGame("http://localhost:8080/games").getGameId());
+            }
+        });
+        assertEquals(THREADS * 1_000, ids.size(), "Every created game should get its own id");
+    }
+
+    @Test
+    void testConcurrentMovesNeverCorruptTheBoard() throws Exception {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        runConcurrently(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                KalahGameResponse response = gameService.makeMove(game.getGameId(), 1 + ThreadLocalRandom.current().nextInt(14));
+                assertEquals(TOTAL_STONES, countStones(response), "Stones should never be lost or duplicated");
+            }
+        });
+        assertEquals(TOTAL_STONES, game.getBoard().countPlayerStones(Player.FIRST, true)
+                + game.getBoard().countPlayerStones(Player.SECOND, true), "Stones should never be lost or duplicated");
+    }
+
+    @Test
+    void testComputerMovesAreMadeInTheCurrentPosition() throws Exception {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        runConcurrently(() -> {
+            for (int i = 0; i < 50 && !game.isFinished(); i++) {
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    KalahGameResponse response = gameService.makeComputerMove(game.getGameId());
+                    // the position is searched again if a player has moved during the search
+                    assertTrue(response.getMoveResult() != MoveResult.INVALID, "Computer move should be legal");
+                } else {
+                    gameService.makeMove(game.getGameId(), 1 + ThreadLocalRandom.current().nextInt(14));
+                }
+            }
+        });
+        assertEquals(TOTAL_STONES, game.getBoard().countPlayerStones(Player.FIRST, true)
+                + game.getBoard().countPlayerStones(Player.SECOND, true), "Stones should never be lost or duplicated");
+    }
+
+    @Test
+    void testMovesWaitingForTheLockAreMadeInTheReceivedGame() throws Exception {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        Long gameId = game.getGameId();
+        // a copy received from another node, with more moves than were made here
+        KalahGame copy = new KalahGame(gameId, game.getGameUri(), KalahBoardType.ARRAY, KalahGeometry.STANDARD);
+        copy.setMoveSequence(1_000);
+        FutureTask<KalahGameResponse> waitingMove = new FutureTask<>(() -> gameService.makeMove(gameId, 2));
+        Thread mover = new Thread(waitingMove);
+        AtomicBoolean replaced = new AtomicBoolean();
+        gameService.watchGame(gameId, new KalahGameEvents.Listener() {
+            @Override
+            public void onState(KalahGameResponse response) {
+            }
+
+            @Override
+            public void onUpdate(KalahBoardDelta delta) {
+                // the first move holds the game lock while the second move waits for it and the game is replaced
+                if (replaced.compareAndSet(false, true)) {
+                    mover.start();
+                    while (mover.getState() != Thread.State.WAITING) {
+                        Thread.onSpinWait();
+                    }
+                    ((KalahGameServiceImpl) gameService).receiveGames(gameRecord(copy));
+                }
+            }
+        });
+        gameService.makeMove(gameId, 1);
+        waitingMove.get();
+        assertEquals(1, game.getMoveSequence(), "No move should be made in a game after it has been replaced");
+        assertEquals(1_001, store.get(gameId).getMoveSequence(), "Waiting move should be made in the received game");
+    }
+
+    @Test
+    void testWatchersGetStateThenMoveDeltas() {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        List<Object> updates = new ArrayList<>();
+        KalahGameEvents.Listener listener = new KalahGameEvents.Listener() {
+            @Override
+            public void onState(KalahGameResponse response) {
+                updates.add(response);
+            }
+
+            @Override
+            public void onUpdate(KalahBoardDelta delta) {
+                updates.add(delta);
+            }
+        };
+        gameService.watchGame(game.getGameId(), listener);
+        gameService.makeMove(game.getGameId(), 1);
+        // an invalid move does not change the board
+        gameService.makeMove(game.getGameId(), 1);
+        gameService.makeMove(game.getGameId(), 2);
+        gameService.unwatchGame(game.getGameId(), listener);
+        gameService.makeMove(game.getGameId(), 8);
+
+        assertEquals(3, updates.size());
+        assertEquals(72, countStones((KalahGameResponse) updates.get(0)));
+        KalahBoardDelta delta = (KalahBoardDelta) updates.get(1);
+        assertEquals(game.getGameId(), delta.getGameId());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7), new ArrayList<>(delta.getPits().keySet()));
+        assertEquals(0, delta.getPits().get(1));
+        assertEquals(1, delta.getPits().get(7));
+        assertEquals(Player.FIRST, delta.getCurrentPlayer());
+        assertEquals(BoardStatus.STARTED, delta.getBoardStatus());
+        delta = (KalahBoardDelta) updates.get(2);
+        assertEquals(Arrays.asList(2, 3, 4, 5, 6, 7, 8, 9), new ArrayList<>(delta.getPits().keySet()));
+        assertEquals(Player.SECOND, delta.getCurrentPlayer());
+    }
+
+    @Test
+    void testHistoryReplaysTheMovesOfConcurrentRequests() throws Exception {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        runConcurrently(() -> {
+            for (int i = 0; i < 1_000 && !game.isFinished(); i++) {
+                gameService.makeMove(game.getGameId(), 1 + ThreadLocalRandom.current().nextInt(14));
+            }
+        });
+        KalahGameHistory history = gameService.getHistory(game.getGameId());
+        KalahGame replayed = new KalahGame(game.getGameId());
+        for (int pit : history.getMoves()) {
+            replayed.makeNextMove(pit);
+        }
+        assertEquals(game.getBoard().getStatus(), replayed.getBoard().getStatus());
+        assertEquals(game.getBoard().getStatus(),
+                gameService.getResponse(game.getGameId(), history.getPlies()).getStatus());
+        assertEquals(TOTAL_STONES, countStones(gameService.getResponse(game.getGameId(), 0)));
+
+        KalahGameException exception = assertThrows(KalahGameException.class,
+                () -> gameService.getResponse(game.getGameId(), history.getPlies() + 1));
+        assertEquals(KalahErrorMessages.INVALID_PLY, exception.getMessage());
+    }
+
+    @Test
+    void testBatchesMakeTheSameMovesAsSingleMoves() {
+        Map<Long, int[]> batches = new LinkedHashMap<>();
+        List<KalahGame> replayedGames = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int[] pits = ThreadLocalRandom.current().ints(50, 1, 15).toArray();
+            batches.put(gameService.createGame("http://localhost:8080/games").getGameId(), pits);
+            replayedGames.add(gameService.createGame("http://localhost:8080/games"));
+        }
+        batches.put(99_999_999L, new int[]{1});
+
+        List<KalahBatchMoveResponse> responses = gameService.makeMoves(batches);
+
+        assertEquals(21, responses.size());
+        int game = 0;
+        for (Map.Entry<Long, int[]> batch : batches.entrySet()) {
+            KalahBatchMoveResponse response = responses.get(game);
+            assertEquals(batch.getKey(), response.getGameId(), "Responses should keep the order of the games");
+            if (game == 20) {
+                assertEquals(KalahErrorMessages.INVALID_GAME_NUMBER, response.getMessage());
+                assertNull(response.getStatus());
+                break;
+            }
+            List<MoveResult> results = new ArrayList<>();
+            KalahGameResponse last = null;
+            for (int pit : batch.getValue()) {
+                last = gameService.makeMove(replayedGames.get(game).getGameId(), pit);
+                results.add(last.getMoveResult());
+            }
+            assertEquals(results, response.getResults());
+            assertEquals(last.getStatus(), response.getStatus());
+            game++;
+        }
+    }
+
+    @Test
+    void testWatchersGetOneDeltaForABatch() {
+        KalahGame game = gameService.createGame("http://localhost:8080/games");
+        List<KalahBoardDelta> deltas = new ArrayList<>();
+        gameService.watchGame(game.getGameId(), new KalahGameEvents.Listener() {
+            @Override
+            public void onState(KalahGameResponse response) {
+                // only the updates are checked
+            }
+
+            @Override
+            public void onUpdate(KalahBoardDelta delta) {
+                deltas.add(delta);
+            }
+        });
+        KalahBatchMoveResponse response = gameService.makeMoves(game.getGameId(), new int[]{1, 1, 2});
+
+        assertEquals(Arrays.asList(MoveResult.EXTRA_TURN, MoveResult.INVALID, MoveResult.OK), response.getResults());
+        assertEquals(1, deltas.size());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), new ArrayList<>(deltas.get(0).getPits().keySet()));
+        assertEquals(Player.SECOND, deltas.get(0).getCurrentPlayer());
+        // nothing is published for a batch which does not change the board
+        gameService.makeMoves(game.getGameId(), new int[]{1});
+        assertEquals(1, deltas.size());
+    }
+
+    private static int countStones(KalahGameResponse response) {
+        return response.getStatus().values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private static ByteBuffer gameRecord(KalahGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + KalahSnapshotter.recordSize(game));
+        buffer.putInt(1);
+        KalahSnapshotter.putGame(buffer, game);
+        return buffer.flip();
+    }
+
+    private static void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+}
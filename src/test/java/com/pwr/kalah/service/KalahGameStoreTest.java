@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.model.KalahGame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link KalahGameStore} Unit Tests
+ */
+@DisplayName("KalahGameStore Unit Tests")
+class KalahGameStoreTest {
+
+    private static final Duration LONG_TTL = Duration.ofHours(1);
+
+    private KalahGameStore store;
+
+    @AfterEach
+    void tearDown() {
+        store.stopEviction();
+    }
+
+    @Test
+    void testIdleGamesEviction() throws InterruptedException {
+        store = new KalahGameStore(10, Duration.ZERO, LONG_TTL, LONG_TTL);
+        store.put(new KalahGame(1L));
+        Thread.sleep(5);
+        store.evict();
+        assertNull(store.get(1L), "Idle game should be evicted");
+        assertEquals(1, store.getIdleEvictions());
+    }
+
+    @Test
+    void testFinishedGamesEviction() throws InterruptedException {
+        store = new KalahGameStore(10, LONG_TTL, Duration.ZERO, LONG_TTL);
+        KalahGame finishedGame = new KalahGame(1L);
+        finishedGame.getBoard().fillGameFieldWithSample(0, 0, 0, 0, 0, 1, 19, 0, 0, 0, 0, 0, 0, 10);
+        finishedGame.makeNextMove(6);
+        store.put(finishedGame);
+        store.put(new KalahGame(2L));
+        Thread.sleep(5);
+        store.evict();
+        assertNull(store.get(1L), "Finished game should be evicted");
+        assertNotNull(store.get(2L), "Started game should be kept");
+        assertEquals(1, store.getFinishedEvictions());
+        assertEquals(0, store.getIdleEvictions());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() throws InterruptedException {
+        store = new KalahGameStore(2, LONG_TTL, LONG_TTL, LONG_TTL);
+        // evict only when asked by the test
+        store.stopEviction();
+        KalahGame[] games = new KalahGame[5];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = new KalahGame((long) i);
+            store.put(games[i]);
+            Thread.sleep(2);
+        }
+        // the oldest game is moved, so it becomes the most recently used
+        games[0].makeNextMove(1);
+        store.evict();
+        assertEquals(2, store.size(), "Store should be trimmed to its maximum size");
+        assertNotNull(store.get(0L), "Recently moved game should be kept");
+        assertNotNull(store.get(4L), "Recently created game should be kept");
+        assertEquals(3, store.getCapacityEvictions());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+package com.pwr.kalah.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahHashRing} Unit Tests
+ */
+@DisplayName("KalahHashRing Unit Tests")
+class KalahHashRingTest {
+
+    private static final int GAMES = 100_000;
+    private static final int VIRTUAL_NODES = 128;
+
+    @Test
+    void testGamesAreSpreadOverNodes() {
+        KalahHashRing ring = new KalahHashRing(nodes(0, 1, 2, 3), VIRTUAL_NODES);
+        int[] owned = new int[4];
+        for (long gameId = 1; gameId <= GAMES; gameId++) {
+            owned[ring.getOwner(gameId)]++;
+        }
+        for (int node = 0; node < owned.length; node++) {
+            assertTrue(owned[node] > GAMES / 8 && owned[node] < GAMES * 3 / 8,
+                    "Node " + node + " owns " + owned[node] + " games");
+        }
+    }
+
+    @Test
+    void testJoiningNodeTakesOnlyItsGames() {
+        KalahHashRing before = new KalahHashRing(nodes(0, 1, 2, 3), VIRTUAL_NODES);
+        KalahHashRing after = new KalahHashRing(nodes(0, 1, 2, 3, 4), VIRTUAL_NODES);
+        int moved = 0;
+        for (long gameId = 1; gameId <= GAMES; gameId++) {
+            int owner = after.getOwner(gameId);
+            if (owner != before.getOwner(gameId)) {
+                assertEquals(4, owner, "A game should only move to the joining node");
+                moved++;
+            }
+        }
+        assertTrue(moved > GAMES / 10 && moved < GAMES * 3 / 10, moved + " games moved");
+    }
+
+    @Test
+    void testLeavingNodeHandsOffOnlyItsGames() {
+        KalahHashRing before = new KalahHashRing(nodes(0, 1, 2), VIRTUAL_NODES);
+        KalahHashRing after = new KalahHashRing(nodes(0, 2), VIRTUAL_NODES);
+        for (long gameId = 1; gameId <= GAMES; gameId++) {
+            int owner = before.getOwner(gameId);
+            if (owner != 1) {
+                assertEquals(owner, after.getOwner(gameId), "A game of a staying node should not move");
+            }
+        }
+        assertEquals(-1, new KalahHashRing(new BitSet(), VIRTUAL_NODES).getOwner(1));
+    }
+
+    @Test
+    void testGameIdsOfNodesDoNotCollide() {
+        KalahCluster first = new KalahCluster("http://localhost:8081,http://localhost:8082", 0, VIRTUAL_NODES,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+        KalahCluster second = new KalahCluster("http://localhost:8081,http://localhost:8082", 1, VIRTUAL_NODES,
+                Duration.ofSeconds(1), Duration.ofSeconds(1));
+        for (long sequence = 1; sequence <= 1000; sequence++) {
+            long firstId = first.getGameId(sequence);
+            for (long otherSequence = sequence - 1; otherSequence <= sequence + 1; otherSequence++) {
+                assertTrue(firstId != second.getGameId(otherSequence));
+            }
+            assertEquals(sequence, first.getSequence(firstId));
+        }
+        KalahCluster single = new KalahCluster("", 0, VIRTUAL_NODES, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        assertEquals(7, single.getGameId(7), "A single node should keep the plain sequence");
+        assertTrue(single.isLocal(12345));
+    }
+
+    private static BitSet nodes(int... ids) {
+        BitSet nodes = new BitSet();
+        for (int id : ids) {
+            nodes.set(id);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.exception.KalahGameException;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link KalahMetrics} Unit Tests
+ */
+@DisplayName("KalahMetrics Unit Tests")
+class KalahMetricsTest {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final KalahGameStore store =
+            new KalahGameStore(100_000, Duration.ofHours(1), Duration.ofHours(1), Duration.ofHours(1));
+
+    private final KalahMetrics metrics = new KalahMetrics(registry, store);
+
+    private final KalahGameServiceImpl gameService = new KalahGameServiceImpl(store,
+            new KalahComputerPlayer(4, Duration.ofMillis(10), 1024, 1, null),
+            new KalahEventLog("", DataSize.ofMegabytes(64), true, Duration.ofMinutes(1), store),
+            new KalahSnapshotter("", Duration.ofMinutes(5)), new KalahGameEvents(), metrics,
+            new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+            new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64),
+            KalahBoardType.ARRAY, 16, 1);
+
+    @AfterEach
+    void tearDown() {
+        gameService.shutdown();
+        store.stopEviction();
+    }
+
+    @Test
+    void testMovesAndErrorsAreCounted() {
+        KalahGame game = gameService.createGame(REQUEST_URI);
+        gameService.makeMove(game.getGameId(), 1);
+        gameService.makeMove(game.getGameId(), 1);
+        gameService.makeMove(game.getGameId(), 14);
+        gameService.makeComputerMove(game.getGameId());
+        assertThrows(KalahGameException.class, () -> gameService.makeMove(Long.MAX_VALUE, 1));
+
+        assertEquals(1, registry.get("kalah.games.created").counter().count());
+        assertEquals(1, registry.get("kalah.moves").tag("result", "extra_turn").counter().count());
+        assertEquals(2, registry.get("kalah.moves").tag("result", "invalid").counter().count());
+        assertEquals(2, registry.get("kalah.errors").tag("error", "invalid_move").counter().count());
+        assertEquals(1, registry.get("kalah.errors").tag("error", "invalid_game_number").counter().count());
+        assertEquals(3, registry.get("kalah.service.moves").timer().count());
+        assertEquals(1, registry.get("kalah.ai.moves").timer().count());
+    }
+
+    @Test
+    void testRequestsAreTimed() {
+        metrics.recordRequest(KalahMetrics.Request.MOVE, System.nanoTime() - 1_000_000);
+        metrics.recordRequest(KalahMetrics.Request.MOVE, System.nanoTime());
+        assertEquals(2, registry.get("kalah.requests").tag("request", "move").timer().count());
+        assertEquals(0, registry.get("kalah.requests").tag("request", "create_game").timer().count());
+        assertEquals(1, registry.get("kalah.requests").tag("request", "move").timer().max(TimeUnit.MILLISECONDS),
+                0.5, "Maximum latency should be about a millisecond");
+    }
+
+    @Test
+    void testGameGauges() {
+        KalahGame finishedGame = gameService.createGame(REQUEST_URI);
+        finishedGame.getBoard().fillGameFieldWithSample(0, 0, 0, 0, 0, 1, 19, 0, 0, 0, 0, 0, 0, 10);
+        gameService.makeMove(finishedGame.getGameId(), 6);
+        gameService.createGame(REQUEST_URI);
+        store.evict();
+
+        assertEquals(2, registry.get("kalah.games").gauge().value());
+        assertEquals(1, registry.get("kalah.games.finished").gauge().value());
+        assertEquals(1, registry.get("kalah.games.active").gauge().value());
+        assertEquals(0, registry.get("kalah.games.evicted").tag("reason", "idle").functionCounter().count());
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020 Volodymyr Protsaylo
+ *
+ *                               Licensed under the Apache License, Version 2.0 (the "License");
+ *                               you may not use this file except in compliance with the License.
+ *                               You may obtain a copy of the License at
+ *
+ *                                 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *                               Unless required by applicable law or agreed to in writing, software
+ *                               distributed under the License is distributed on an "AS IS" BASIS,
+ *                               WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *                               See the License for the specific language governing permissions and
+ *                               limitations under the License.
+ */
+
+package com.pwr.kalah.service;
+
+import com.pwr.kalah.engine.KalahComputerPlayer;
+import com.pwr.kalah.model.KalahBoardType;
+import com.pwr.kalah.model.KalahGame;
+import com.pwr.kalah.model.KalahGeometry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KalahSnapshotter} Unit Tests
+ */
+@DisplayName("KalahSnapshotter Unit Tests")
+class KalahSnapshotterTest {
+
+    private static final String REQUEST_URI = "http://localhost:8080/games";
+    private static final Duration LONG_TTL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    private final List<KalahEventLog> logs = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        logs.forEach(KalahEventLog::close);
+    }
+
+    @Test
+    void testSnapshotRoundTrip() {
+        List<KalahGame> games = new ArrayList<>();
+        for (long gameId = 1; gameId <= 1_000; gameId++) {
+            KalahGame game = new KalahGame(gameId, REQUEST_URI + "/" + gameId, KalahBoardType.ARRAY,
+                    KalahGeometry.of(1 + (int) gameId % 12, 1 + (int) gameId % 12));
+            playRandomMoves(game);
+            game.setMoveSequence((int) gameId);
+            games.add(game);
+        }
+        KalahSnapshotter snapshotter = new KalahSnapshotter(directory.toString(), LONG_TTL);
+        ReentrantLock lock = new ReentrantLock();
+        assertEquals(games.size(), snapshotter.write(games, gameId -> lock, 1));
+
+        List<KalahGame> loaded = new ArrayList<>();
+        assertEquals(games.size(), snapshotter.load(KalahBoardType.MAP, loaded::add));
+        for (int i = 0; i < games.size(); i++) {
+            assertSameGame(games.get(i), loaded.get(i));
+            assertEquals(games.get(i).getMoveSequence(), loaded.get(i).getMoveSequence());
+        }
+    }
+
+    @Test
+    void testSnapshotAndLogRestoreGames() {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store);
+        KalahGameServiceImpl gameService = newService(store, eventLog);
+        List<KalahGame> games = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            KalahGame game = gameService.createGame(REQUEST_URI);
+            playRandomMoves(gameService, game);
+            games.add(game);
+        }
+        int segments = eventLog.getSegments();
+        gameService.snapshotGames();
+        assertTrue(eventLog.getSegments() < segments, "Log segments covered by the snapshot should be deleted");
+        for (KalahGame game : games) {
+            playRandomMoves(gameService, game);
+        }
+        eventLog.close();
+
+        KalahGameStore restoredStore = newStore();
+        newService(restoredStore, newLog(restoredStore));
+        for (KalahGame game : games) {
+            KalahGame restored = restoredStore.get(game.getGameId());
+            assertNotNull(restored, "Game should be restored");
+            assertSameGame(game, restored);
+            assertEquals(game.getMoveSequence(), restored.getMoveSequence());
+        }
+    }
+
+    @Test
+    void testGamesCreatedDuringSnapshotsAreRestored() throws Exception {
+        KalahGameStore store = newStore();
+        KalahEventLog eventLog = newLog(store);
+        KalahGameServiceImpl gameService = newService(store, eventLog);
+        List<Long> gameIds = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> creators = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            creators.add(executor.submit(() -> {
+                for (int game = 0; game < 1_000; game++) {
+                    gameIds.add(gameService.createGame(REQUEST_URI).getGameId());
+                }
+            }));
+        }
+        // every snapshot deletes the log segments of the games created before it
+        while (!creators.stream().allMatch(Future::isDone)) {
+            gameService.snapshotGames();
+        }
+        for (Future<?> creator : creators) {
+            creator.get();
+        }
+        executor.shutdown();
+        eventLog.close();
+
+        KalahGameStore restoredStore = newStore();
+        newService(restoredStore, newLog(restoredStore));
+        for (Long gameId : gameIds) {
+            assertNotNull(restoredStore.get(gameId), "Game created during a snapshot should be restored");
+        }
+    }
+
+    @Test
+    void testIncompleteSnapshotIsRejected() throws IOException {
+        KalahSnapshotter snapshotter = new KalahSnapshotter(directory.toString(), LONG_TTL);
+        List<KalahGame> games = new ArrayList<>();
+        games.add(new KalahGame(1L));
+        snapshotter.write(games, gameId -> new ReentrantLock(), 1);
+        Path snapshot = Files.list(directory).findFirst().orElseThrow(IllegalStateException::new);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(snapshot) - 1);
+        }
+        assertThrows(IllegalStateException.class, () -> snapshotter.load(KalahBoardType.ARRAY, game -> {
+        }));
+    }
+
+    private static void playRandomMoves(KalahGame game) {
+        int pits = game.getBoard().getGeometry().getPits();
+        for (int move = 0; move < 20; move++) {
+            game.makeNextMove(1 + ThreadLocalRandom.current().nextInt(pits));
+        }
+    }
+
+    private static void playRandomMoves(KalahGameService gameService, KalahGame game) {
+        for (int move = 0; move < 20; move++) {
+            gameService.makeMove(game.getGameId(), 1 + ThreadLocalRandom.current().nextInt(14));
+        }
+    }
+
+    private static void assertSameGame(KalahGame expected, KalahGame actual) {
+        assertEquals(expected.getGameId(), actual.getGameId());
+        assertEquals(expected.getGameUri(), actual.getGameUri());
+        assertEquals(expected.getBoard().getGeometry(), actual.getBoard().getGeometry());
+        assertEquals(expected.getBoard().getStatus(), actual.getBoard().getStatus(), "Board should be restored");
+        assertEquals(expected.getBoard().getCurrentPlayer(), actual.getBoard().getCurrentPlayer());
+        assertEquals(expected.getBoard().getBoardStatus(), actual.getBoard().getBoardStatus());
+        assertArrayEquals(expected.getHistory().getMoves(), actual.getHistory().getMoves(), "Moves should be restored");
+    }
+
+    private KalahGameStore newStore() {
+        return new KalahGameStore(10_000, LONG_TTL, LONG_TTL, LONG_TTL);
+    }
+
+    private KalahEventLog newLog(KalahGameStore store) {
+        KalahEventLog eventLog = new KalahEventLog(directory.resolve("log").toString(), DataSize.ofBytes(512), false,
+                LONG_TTL, store);
+        logs.add(eventLog);
+        return eventLog;
+    }
+
+    private KalahGameServiceImpl newService(KalahGameStore store, KalahEventLog eventLog) {
+        KalahGameServiceImpl gameService = new KalahGameServiceImpl(store,
+                new KalahComputerPlayer(4, Duration.ofMillis(10), 1024, 1, null), eventLog,
+                new KalahSnapshotter(directory.resolve("snapshots").toString(), LONG_TTL), new KalahGameEvents(),
+                new KalahMetrics(new SimpleMeterRegistry(), store),
+                new KalahCluster("", 0, 128, Duration.ofSeconds(1), Duration.ofSeconds(2)),
+                new KalahGameIdAllocator(KalahGameIdAllocator.Mode.SEQUENCE, 64), KalahBoardType.ARRAY, 16, 2);
+        gameService.recoverGames();
+        return gameService;
+    }
+}